@@ -0,0 +1,97 @@
+package uk.ac.aber.dcs.cs12320.cards.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the TurnoverDeck: reading cards.txt, shuffling and dealing.
+ *
+ * @author Owain Gibson
+ * @version 1.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DeckBenchmark {
+    private Object deck;
+    private byte[] cardFile;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        deck = Patience.newTurnoverDeck();
+        cardFile = Files.readAllBytes(Paths.get("../cards.txt"));
+    }
+
+    /**
+     * Builds a new deck, which copies the cached ../cards.txt template (after checking the file hasn't changed)
+     */
+    @Benchmark
+    public Object construct() throws Throwable {
+        return Patience.newTurnoverDeck();
+    }
+
+    /**
+     * Parses the bytes of ../cards.txt, which is what the first new deck (or one after the file changes) costs
+     */
+    @Benchmark
+    public byte[] parseCardFile() throws Throwable {
+        return Patience.parseCardFile(cardFile, "cards.txt");
+    }
+
+    @Benchmark
+    public Object shuffle() throws Throwable {
+        Patience.shuffle(deck);
+        return deck;
+    }
+
+    /**
+     * A full pack that is dealt out by nextCard() and refilled before every invocation,
+     * so the periodic trimToSize is hit the same number of times as in a real game
+     */
+    @State(Scope.Thread)
+    public static class FullPack {
+        Object deck;
+        List<Object> cards;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Throwable {
+            deck = Patience.newTurnoverDeck();
+            cards = new ArrayList<>(Patience.cards(deck));
+        }
+
+        @Setup(Level.Invocation)
+        public void refill() throws Throwable {
+            List<Object> live = Patience.cards(deck);
+            live.clear(); //the deck starts the trial full, so without this every invocation would deal from 104 cards
+            live.addAll(cards);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(52)
+    public void nextCard(FullPack pack, Blackhole blackhole) throws Throwable {
+        for (int i = pack.cards.size(); i > 0; i--) {
+            blackhole.consume(Patience.nextCard(pack.deck));
+        }
+    }
+}
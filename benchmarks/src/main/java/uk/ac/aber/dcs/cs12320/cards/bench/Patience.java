@@ -0,0 +1,196 @@
+package uk.ac.aber.dcs.cs12320.cards.bench;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.List;
+
+/**
+ * Gives the benchmarks access to the game's classes.
+ * The game lives in the default package, which can't be imported from a named package (and JMH won't
+ * generate benchmarks in the default package), so the classes are reached through method handles.
+ * The handles are static finals, which the JIT treats as constants, so calling through them costs
+ * the same as a direct call once the benchmark has warmed up.
+ *
+ * @author Owain Gibson
+ * @version 1.0
+ */
+final class Patience {
+    static final Class<?> CARD = load("Card");
+    static final Class<?> TURNOVER_DECK = load("TurnoverDeck");
+    static final Class<?> TABLE_DECK = load("TableDeck");
+    static final Class<?> ENGINE = load("Engine");
+    static final Class<?> STRATEGY = load("Strategy");
+    static final Class<?> SCORE = load("Score");
+    static final Class<?> SCORE_STORE = load("ScoreStore");
+    static final Class<?> SCORE_FILE = load("ScoreFile");
+    static final Class<?> SCORE_LOG = load("ScoreLog");
+    static final Class<?> MAPPED_SCORE_LOG = load("MappedScoreLog");
+
+    private static final MethodHandle NEW_TURNOVER_DECK = constructor(TURNOVER_DECK);
+    private static final MethodHandle SHUFFLE = method(TURNOVER_DECK, "shuffle");
+    private static final MethodHandle NEXT_CARD = method(TURNOVER_DECK, "nextCard");
+    private static final MethodHandle GET_CARDS = method(TURNOVER_DECK, "getCards");
+    private static final MethodHandle PARSE_CARD_FILE = method(load("TextDeckSource"), "parse", byte[].class, String.class);
+
+    private static final MethodHandle NEW_TABLE_DECK = constructor(TABLE_DECK);
+    private static final MethodHandle ADD_CARD = method(TABLE_DECK, "addCard", CARD);
+    private static final MethodHandle ADD_PACKED_CARD = method(TABLE_DECK, "addPackedCard", byte.class);
+    private static final MethodHandle POP_MERGE_CARDS = method(TABLE_DECK, "popMergeCards", int.class, int.class);
+    private static final MethodHandle NUM_PILES = method(TABLE_DECK, "numCards");
+    private static final MethodHandle SNAPSHOT = method(TABLE_DECK, "snapshot");
+    private static final MethodHandle RESTORE = method(TABLE_DECK, "restore", byte[].class);
+
+    private static final MethodHandle NEW_ENGINE = constructor(ENGINE);
+    private static final MethodHandle GET_TABLE = method(ENGINE, "getTable");
+    private static final MethodHandle PLAY = method(ENGINE, "play", int.class);
+    private static final MethodHandle NEW_GREEDY_LEFTMOST = constructor(load("GreedyLeftmostStrategy"));
+    private static final MethodHandle CHOOSE_MOVE = method(STRATEGY, "chooseMove", ENGINE);
+
+    private static final MethodHandle NEW_SCORE = constructor(SCORE, int.class, String.class);
+    private static final MethodHandle NEW_SCORE_FILE = constructor(SCORE_FILE, String.class);
+    private static final MethodHandle NEW_SCORE_LOG = constructor(SCORE_LOG, String.class);
+    private static final MethodHandle NEW_MAPPED_SCORE_LOG = constructor(MAPPED_SCORE_LOG, String.class);
+    private static final MethodHandle ADD_SCORE = method(SCORE_STORE, "addScore", SCORE);
+    private static final MethodHandle CLOSE_SCORE_STORE = method(SCORE_STORE, "close");
+
+    private Patience() {
+    }
+
+    static Object newTurnoverDeck() throws Throwable {
+        return (Object) NEW_TURNOVER_DECK.invokeExact();
+    }
+
+    static void shuffle(Object turnoverDeck) throws Throwable {
+        SHUFFLE.invokeExact(turnoverDeck);
+    }
+
+    static Object nextCard(Object turnoverDeck) throws Throwable {
+        return (Object) NEXT_CARD.invokeExact(turnoverDeck);
+    }
+
+    @SuppressWarnings("unchecked")
+    static List<Object> cards(Object turnoverDeck) throws Throwable {
+        return (List<Object>) (Object) GET_CARDS.invokeExact(turnoverDeck);
+    }
+
+    static byte[] parseCardFile(byte[] bytes, String source) throws Throwable {
+        return (byte[]) (Object) PARSE_CARD_FILE.invokeExact((Object) bytes, (Object) source);
+    }
+
+    static Object newTableDeck() throws Throwable {
+        return (Object) NEW_TABLE_DECK.invokeExact();
+    }
+
+    static void addCard(Object tableDeck, Object card) throws Throwable {
+        ADD_CARD.invokeExact(tableDeck, card);
+    }
+
+    static void addPackedCard(Object tableDeck, byte code) throws Throwable {
+        ADD_PACKED_CARD.invokeExact(tableDeck, code);
+    }
+
+    static void popMergeCards(Object tableDeck, int topCardIndex, int cardToReplace) throws Throwable {
+        POP_MERGE_CARDS.invokeExact(tableDeck, topCardIndex, cardToReplace);
+    }
+
+    static int numPiles(Object tableDeck) throws Throwable {
+        return (int) NUM_PILES.invokeExact(tableDeck);
+    }
+
+    static byte[] snapshot(Object tableDeck) throws Throwable {
+        return (byte[]) (Object) SNAPSHOT.invokeExact(tableDeck);
+    }
+
+    static void restore(Object tableDeck, byte[] snapshot) throws Throwable {
+        RESTORE.invokeExact(tableDeck, (Object) snapshot);
+    }
+
+    static Object newEngine() throws Throwable {
+        return (Object) NEW_ENGINE.invokeExact();
+    }
+
+    static Object table(Object engine) throws Throwable {
+        return (Object) GET_TABLE.invokeExact(engine);
+    }
+
+    static void play(Object engine, int move) throws Throwable {
+        PLAY.invokeExact(engine, move);
+    }
+
+    /**
+     * Returns the strategy behind the "play for me" options (the original Game.testAmalgamate() rule)
+     */
+    static Object newGreedyLeftmostStrategy() throws Throwable {
+        return (Object) NEW_GREEDY_LEFTMOST.invokeExact();
+    }
+
+    static int chooseMove(Object strategy, Object engine) throws Throwable {
+        return (int) CHOOSE_MOVE.invokeExact(strategy, engine);
+    }
+
+    static Object newScore(int result, String name) throws Throwable {
+        return (Object) NEW_SCORE.invokeExact(result, (Object) name);
+    }
+
+    static Object newScoreFile(String fileName) throws Throwable {
+        return (Object) NEW_SCORE_FILE.invokeExact((Object) fileName);
+    }
+
+    static Object newScoreLog(String fileName) throws Throwable {
+        return (Object) NEW_SCORE_LOG.invokeExact((Object) fileName);
+    }
+
+    static Object newMappedScoreLog(String fileName) throws Throwable {
+        return (Object) NEW_MAPPED_SCORE_LOG.invokeExact((Object) fileName);
+    }
+
+    static void addScore(Object scoreStore, Object score) throws Throwable {
+        ADD_SCORE.invokeExact(scoreStore, score);
+    }
+
+    static void closeScoreStore(Object scoreStore) throws Throwable {
+        CLOSE_SCORE_STORE.invokeExact(scoreStore);
+    }
+
+    private static Class<?> load(String name) {
+        try {
+            return Class.forName(name);
+        } catch (ClassNotFoundException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private static MethodHandle constructor(Class<?> owner, Class<?>... params) {
+        try {
+            Constructor<?> constructor = owner.getDeclaredConstructor(params);
+            constructor.setAccessible(true);
+            MethodHandle handle = MethodHandles.lookup().unreflectConstructor(constructor);
+            return handle.asType(handle.type().erase());
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private static MethodHandle method(Class<?> owner, String name, Class<?>... params) {
+        try {
+            Method method = findMethod(owner, name, params);
+            method.setAccessible(true);
+            MethodHandle handle = MethodHandles.lookup().unreflect(method);
+            return handle.asType(handle.type().erase());
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private static Method findMethod(Class<?> owner, String name, Class<?>... params) throws NoSuchMethodException {
+        for (Class<?> c = owner; c != null; c = c.getSuperclass()) {
+            try {
+                return c.getDeclaredMethod(name, params); //also looks in the superclasses, since getCards() is declared in Deck
+            } catch (NoSuchMethodException ignored) {
+            }
+        }
+        throw new NoSuchMethodException(owner.getName() + "." + name);
+    }
+}
@@ -0,0 +1,84 @@
+package uk.ac.aber.dcs.cs12320.cards.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for saving and loading the score file.
+ * They use a temporary score file (rewritten before every iteration) so the real scores.txt is never touched
+ *
+ * @author Owain Gibson
+ * @version 1.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ScoreFileBenchmark {
+    @Param({"100", "10000"})
+    public int existingScores;
+
+    private Path scoresPath;
+    private Object scoreFile;
+    private Object score;
+
+    @Setup(Level.Trial)
+    public void createFile() throws Throwable {
+        scoresPath = Files.createTempFile("scores", ".txt");
+        score = Patience.newScore(17, "bench");
+    }
+
+    @Setup(Level.Iteration)
+    public void resetFile() throws Throwable {
+        Random random = new Random(existingScores);
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(scoresPath))) {
+            for (int i = 0; i < existingScores; i++) {
+                if (i > 0) {
+                    out.println();
+                }
+                out.println(1 + random.nextInt(52));
+                out.print("player" + i);
+            }
+        }
+        scoreFile = Patience.newScoreFile(scoresPath.toString());
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFile() throws IOException {
+        Files.deleteIfExists(scoresPath);
+    }
+
+    @Benchmark
+    public Object addScore() throws Throwable {
+        Patience.addScore(scoreFile, score);
+        return scoreFile;
+    }
+
+    /**
+     * Builds a new ScoreFile, which runs loadScores() on the whole file
+     */
+    @Benchmark
+    public Object loadScores() throws Throwable {
+        return Patience.newScoreFile(scoresPath.toString());
+    }
+}
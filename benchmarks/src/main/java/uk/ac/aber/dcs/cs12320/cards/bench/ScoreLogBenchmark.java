@@ -0,0 +1,88 @@
+package uk.ac.aber.dcs.cs12320.cards.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The same saving and loading benchmarks as ScoreFileBenchmark, but for the append-only score log ("log")
+ * and the memory-mapped score log ("mapped"), so the backends can be compared directly
+ *
+ * @author Owain Gibson
+ * @version 1.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ScoreLogBenchmark {
+    @Param({"100", "10000"})
+    public int existingScores;
+
+    @Param({"log", "mapped"})
+    public String backend;
+
+    private Path logPath;
+    private Object scoreLog;
+    private Object score;
+
+    @Setup(Level.Trial)
+    public void createScore() throws Throwable {
+        score = Patience.newScore(17, "bench");
+    }
+
+    @Setup(Level.Iteration)
+    public void resetLog() throws Throwable {
+        logPath = Files.createTempFile("scores", ".log");
+        Files.delete(logPath); //the log writes its own header when the file doesn't exist
+        Random random = new Random(existingScores);
+        scoreLog = open();
+        for (int i = 0; i < existingScores; i++) {
+            Patience.addScore(scoreLog, Patience.newScore(1 + random.nextInt(52), "player" + i));
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void deleteLog() throws Throwable {
+        Patience.closeScoreStore(scoreLog);
+        Files.deleteIfExists(logPath);
+        Files.deleteIfExists(logPath.resolveSibling(logPath.getFileName() + ".tmp"));
+    }
+
+    @Benchmark
+    public Object addScore() throws Throwable {
+        Patience.addScore(scoreLog, score);
+        return scoreLog;
+    }
+
+    /**
+     * Opens the log again, which reads every record into the skip list
+     */
+    @Benchmark
+    public Object loadScores() throws Throwable {
+        Object log = open();
+        Patience.closeScoreStore(log);
+        return log;
+    }
+
+    private Object open() throws Throwable {
+        return backend.equals("mapped") ? Patience.newMappedScoreLog(logPath.toString()) : Patience.newScoreLog(logPath.toString());
+    }
+}
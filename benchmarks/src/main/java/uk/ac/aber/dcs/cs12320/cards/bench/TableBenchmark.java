@@ -0,0 +1,128 @@
+package uk.ac.aber.dcs.cs12320.cards.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the TableDeck (adding and merging piles) and the "play for me" move search
+ * (the greedy-leftmost strategy, which replaced the scan in Game.testAmalgamate()).
+ *
+ * @author Owain Gibson
+ * @version 1.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TableBenchmark {
+    private static final byte[] EMPTY = new byte[0];
+
+    private List<Object> pack;
+    private Object table;
+    private byte[] fullTable;
+    private byte[] shuffledTable;
+
+    private Object strategy;
+    private Object engine;
+    private Object engineTable;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        Object deck = Patience.newTurnoverDeck();
+        pack = new ArrayList<>(Patience.cards(deck));
+
+        table = Patience.newTableDeck();
+        for (Object card : pack) {
+            Patience.addCard(table, card);
+        }
+        fullTable = Patience.snapshot(table);
+
+        Patience.shuffle(deck);
+        Object shuffled = Patience.newTableDeck();
+        for (Object card : Patience.cards(deck)) {
+            Patience.addCard(shuffled, card);
+        }
+        shuffledTable = Patience.snapshot(shuffled);
+
+        strategy = Patience.newGreedyLeftmostStrategy();
+        engine = Patience.newEngine();
+        engineTable = Patience.table(engine);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(52)
+    public Object addCard() throws Throwable {
+        Patience.restore(table, EMPTY);
+        for (int i = 0; i < pack.size(); i++) {
+            Patience.addCard(table, pack.get(i));
+        }
+        return table;
+    }
+
+    /**
+     * Merges the last pile onto the one before it until one pile is left (the restore is counted too)
+     */
+    @Benchmark
+    @OperationsPerInvocation(51)
+    public Object popMergeCards() throws Throwable {
+        Patience.restore(table, fullTable);
+        for (int piles = Patience.numPiles(table); piles > 1; piles--) {
+            Patience.popMergeCards(table, piles - 1, piles - 2);
+        }
+        return table;
+    }
+
+    /**
+     * A table of 52 piles where no pile matches the one 1 or 3 before it, so there is no move to find
+     * (this used to be the worst case for the full scan).
+     * Pile i has value i % 13 and alternates between two suits (a different pair for each half of the pack)
+     */
+    @State(Scope.Thread)
+    public static class NoMoves {
+        Object strategy;
+        Object engine;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Throwable {
+            strategy = Patience.newGreedyLeftmostStrategy();
+            engine = Patience.newEngine();
+            Object table = Patience.table(engine);
+            for (int i = 0; i < 52; i++) {
+                int suit = (i % 2) + 2 * (i / 26);
+                Patience.addPackedCard(table, (byte) ((suit << 4) | (i % 13)));
+            }
+        }
+    }
+
+    @Benchmark
+    public int greedyMoveNoMoves(NoMoves noMoves) throws Throwable {
+        return Patience.chooseMove(noMoves.strategy, noMoves.engine);
+    }
+
+    /**
+     * Finds and makes a move on a shuffled table of 52 piles.
+     * The restore is counted too, which makes the engine rebuild its whole legal move index
+     */
+    @Benchmark
+    public Object greedyMoveWithMove() throws Throwable {
+        Patience.restore(engineTable, shuffledTable);
+        Patience.play(engine, Patience.chooseMove(strategy, engine));
+        return engine;
+    }
+}
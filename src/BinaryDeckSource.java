@@ -0,0 +1,100 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Class to read the pack from a binary deck file, which is just the packed cards (see PackedCard) with a small header.
+ * There is nothing to tokenise, so reading one is only a check of every byte.
+ *
+ * The file is [int magic "PDK1"][byte number of cards][one packed card per byte, in the order they are dealt]
+ *
+ * Running it from the command line turns a text card file into a binary deck file:
+ * java BinaryDeckSource [text card file] [binary deck file]
+ *
+ * @author Owain Gibson
+ * @version 1.0
+ */
+public class BinaryDeckSource extends FileDeckSource {
+    /**
+     * The file extension that marks a deck file as binary
+     */
+    public static final String EXTENSION = ".deck";
+
+    private static final int MAGIC = 0x50444b31; //"PDK1"
+    private static final int HEADER_SIZE = 5;
+
+    /**
+     * Constructor to set up a deck source reading the given binary deck file
+     * @param fileName holds the name of the file
+     */
+    public BinaryDeckSource(String fileName) {
+        super(fileName);
+    }
+
+    @Override
+    protected byte[] parse(byte[] bytes) throws DeckFormatException {
+        List<String> problems = new ArrayList<>();
+        if (bytes.length < HEADER_SIZE || ByteBuffer.wrap(bytes).getInt() != MAGIC) {
+            problems.add("byte 0: the file doesn't start with the binary deck header");
+            throw new DeckFormatException(getName(), problems, 0);
+        }
+        int numCards = bytes[4] & 0xff;
+        if (numCards > TableDeck.MAX_PILES || bytes.length != HEADER_SIZE + numCards) {
+            problems.add("byte 4: the header says there are " + numCards + " cards, but the file holds " + (bytes.length - HEADER_SIZE));
+            throw new DeckFormatException(getName(), problems, 4);
+        }
+
+        boolean[] seen = new boolean[PackedCard.NUM_CODES];
+        int firstProblem = -1;
+        for (int i = HEADER_SIZE; i < bytes.length; i++) {
+            String problem = null;
+            if (!PackedCard.isValid(bytes[i])) {
+                problem = (bytes[i] & 0xff) + " is not a packed card";
+            } else if (seen[bytes[i]]) {
+                problem = PackedCard.toString(bytes[i]) + " is already in the pack";
+            } else {
+                seen[bytes[i]] = true;
+            }
+            if (problem != null) {
+                firstProblem = firstProblem == -1 ? i : firstProblem;
+                problems.add("byte " + i + ": " + problem);
+            }
+        }
+        if (!problems.isEmpty()) {
+            throw new DeckFormatException(getName(), problems, firstProblem);
+        }
+        return Arrays.copyOfRange(bytes, HEADER_SIZE, bytes.length);
+    }
+
+    /**
+     * Method to save a pack as a binary deck file
+     * @param fileName holds the name of the file to write
+     * @param pack holds the packed cards, in the order they are dealt
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(String fileName, byte[] pack) throws IOException {
+        if (pack.length > TableDeck.MAX_PILES) {
+            throw new IllegalArgumentException("A pack cannot hold more than " + TableDeck.MAX_PILES + " cards");
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + pack.length);
+        buffer.putInt(MAGIC).put((byte) pack.length).put(pack);
+        Files.write(Paths.get(fileName), buffer.array());
+    }
+
+    /**
+     * Method to turn a text card file into a binary deck file from the command line
+     * @param args holds the text card file and the binary deck file (both optional)
+     * @throws IOException if either file cannot be read or written
+     */
+    public static void main(String[] args) throws IOException {
+        String from = args.length > 0 ? args[0] : DEFAULT_FILE_NAME;
+        String to = args.length > 1 ? args[1] : "../cards" + EXTENSION;
+        byte[] pack = new TextDeckSource(from).getPack();
+        write(to, pack);
+        System.out.println("Wrote " + pack.length + " cards to " + to);
+    }
+}
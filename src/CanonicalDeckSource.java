@@ -0,0 +1,43 @@
+/**
+ * Class to make the pack in memory, without reading any file: all 52 cards, suit by suit (in the order of the Suit enum),
+ * ace to king within each suit. Useful for simulations and benchmarks, which shuffle the pack anyway
+ *
+ * @author Owain Gibson
+ * @version 1.0
+ */
+public class CanonicalDeckSource extends DeckSource {
+    /**
+     * The name used to pick this deck with DeckSource.DECK_PROPERTY
+     */
+    public static final String NAME = "canonical";
+
+    /**
+     * The pack never changes, so one source is shared by everything
+     */
+    public static final CanonicalDeckSource INSTANCE = new CanonicalDeckSource();
+
+    private final byte[] pack = new byte[TableDeck.MAX_PILES];
+
+    /**
+     * Private because everything shares INSTANCE
+     */
+    private CanonicalDeckSource() {
+        int i = 0;
+        for (Suit suit : Suit.values()) {
+            for (Value value : Value.values()) {
+                pack[i++] = PackedCard.of(value, suit);
+            }
+        }
+    }
+
+    @Override
+    public int packInto(byte[] into) {
+        System.arraycopy(pack, 0, into, 0, pack.length);
+        return pack.length;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+}
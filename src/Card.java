@@ -1,5 +1,3 @@
-import java.util.Objects;
-
 /**
  * Class to blueprint what a card looks like
  *
@@ -23,6 +21,22 @@ public class Card {
         this.suit = suit;
     }
 
+    /**
+     * Method to return the card's suit
+     * @return returns the suit
+     */
+    public Suit getSuit() {
+        return suit;
+    }
+
+    /**
+     * Method to return the card's value (Rank)
+     * @return returns the value
+     */
+    public Value getValue() {
+        return value;
+    }
+
     /**
      * Method to return the card's value and rank as a string (used to reference its GIF image filename)
      * @return returns the string
@@ -45,8 +59,13 @@ public class Card {
         return suit == card.suit || value == card.value; //either statement can be true
     }
 
+    /**
+     * Method to return the card's hash code.
+     * It uses the card's packed byte (see PackedCard), which avoids the boxing and array that Objects.hash creates on every call
+     * @return returns the hash code
+     */
     @Override
     public int hashCode() {
-        return Objects.hash(suit, value);
+        return PackedCard.of(value, suit);
     }
 }
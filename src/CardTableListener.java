@@ -0,0 +1,46 @@
+import uk.ac.aber.dcs.cs12320.cards.gui.javafx.CardTable;
+
+/**
+ * Class to pass the engine's table changes on to the card table in the GUI, turning the packed cards into
+ * the names of their image files
+ *
+ * @author Owain Gibson
+ * @version 1.0
+ */
+public class CardTableListener implements EngineListener {
+    private final CardTable cardTable;
+    private final String cardCover;
+
+    /**
+     * Constructor to set up the listener
+     * @param cardTable holds the card table to update
+     * @param cardCover holds the file name of the face-down card cover
+     */
+    public CardTableListener(CardTable cardTable, String cardCover) {
+        this.cardTable = cardTable;
+        this.cardCover = cardCover;
+    }
+
+    @Override
+    public void cardDealt(int pileIndex, byte card) {
+        cardTable.cardDealt(pileIndex, PackedCard.fileName(card));
+    }
+
+    @Override
+    public void pilesMerged(int pileIndex, int targetIndex, byte card) {
+        cardTable.pilesMerged(pileIndex, targetIndex, PackedCard.fileName(card));
+    }
+
+    @Override
+    public void stockEmptied() {
+        cardTable.allDone();
+    }
+
+    @Override
+    public void tableReset(Engine engine) {
+        cardTable.cardDisplay(engine.getTable().getCardStrings(), cardCover);
+        if (engine.packSize() == 0) {
+            cardTable.allDone();
+        }
+    }
+}
@@ -0,0 +1,568 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Class to solve a whole range of deals exactly, to find out which of them can be won and the fewest piles each one can get down to.
+ * The deals are numbered the same way as the simulator's (see Shuffler.deal()), so deal n of a seed is the same deal everywhere.
+ *
+ * The deals are solved across every core in a ForkJoinPool. Every deal is searched the same way the Solver searches
+ * (depth-first over every move, with a transposition table of Zobrist keys), but without keeping the moves, since only the result is needed.
+ * A hard deal can take millions of times longer than an easy one, so a search that has run for a while splits itself:
+ * the moves it hasn't tried yet are forked as tasks of their own, which idle workers steal, so one slow deal never leaves the other cores waiting.
+ * Every task for a deal shares the deal's transposition table and best result, and they all stop as soon as one of them gets down to 1 pile.
+ *
+ * The deals are done in batches. After every batch the results are added to the end of the output file (one line per deal)
+ * and a checkpoint file next to it records how far the census has got, so a census that is stopped carries on from the last batch when it is run again.
+ * The transposition tables (see TranspositionTable) are the only memory that grows with the search, so they are sized to fit the memory budget
+ * and reused from deal to deal. They are kept outside the heap, so even gigabytes of them don't slow down the GC.
+ *
+ * @author Owain Gibson
+ * @version 1.0
+ */
+public class Census {
+    /**
+     * The file the results are written to by default
+     */
+    public static final String DEFAULT_FILE_NAME = "../census.csv";
+
+    /**
+     * The number of deals between checkpoints
+     */
+    public static final int BATCH_SIZE = 1024;
+
+    /**
+     * A task that has looked at this many positions splits off the moves it hasn't tried yet, if there aren't enough tasks waiting already
+     */
+    private static final int SPLIT_POSITIONS = 1 << 14;
+
+    /**
+     * Tasks are only split off while fewer than this many are waiting in the worker's queue beyond what other workers are likely to steal
+     */
+    private static final int MAX_SURPLUS_TASKS = 2;
+
+    /**
+     * The smallest transposition table the memory budget can shrink a table to (2^12 positions)
+     */
+    private static final long MIN_TABLE_BYTES = 64 * 1024;
+
+    private static final long PROGRESS_NANOS = 5_000_000_000L;
+
+    private final byte[] template;
+    private final long seed;
+    private final long positionLimit;
+    private final ForkJoinPool pool;
+    private final BlockingQueue<TranspositionTable> tables;
+
+    /**
+     * Constructor to set up a census
+     * @param template holds the packed cards (see PackedCard) of the pack before it is shuffled
+     * @param seed holds the seed that the deals are shuffled from
+     * @param memoryBudget holds the most memory (in bytes) the transposition tables can use between them
+     * @param positionLimit holds the number of positions to look at for a deal before giving up on it (0 for no limit, so every deal is solved exactly)
+     * @param parallelism holds the number of worker threads
+     */
+    public Census(byte[] template, long seed, long memoryBudget, long positionLimit, int parallelism) {
+        this.template = template.clone();
+        this.seed = seed;
+        this.positionLimit = positionLimit <= 0 ? Long.MAX_VALUE : positionLimit;
+        pool = new ForkJoinPool(parallelism);
+
+        //one table for every worker, so every worker can be starting a deal of its own, each as big as the budget allows
+        long tableBytes = memoryBudget / parallelism;
+        if (tableBytes < MIN_TABLE_BYTES) {
+            throw new IllegalArgumentException("A memory budget of " + memoryBudget + " bytes is too small for " + parallelism + " workers");
+        }
+        tables = new ArrayBlockingQueue<>(parallelism);
+        for (int i = 0; i < parallelism; i++) {
+            tables.add(new TranspositionTable(tableBytes, TranspositionTable.Policy.DEPTH_PREFERRED));
+        }
+    }
+
+    /**
+     * Method to return how much memory the transposition tables use between them
+     * @return returns the number of bytes
+     */
+    public long getTableBytes() {
+        long total = 0;
+        for (TranspositionTable table : tables) {
+            total += table.sizeBytes();
+        }
+        return total;
+    }
+
+    /**
+     * Method to run the census over a range of deals, carrying on from the checkpoint if there is one
+     * @param firstDeal holds the number of the first deal
+     * @param endDeal holds the number after the last deal
+     * @param output holds the file to write the results to (the checkpoint is the same name with ".checkpoint" on the end)
+     * @return returns a histogram of the fewest piles each deal can get down to, including any deals done before the checkpoint
+     * @throws IOException if the files cannot be written, or the checkpoint is for a different census
+     * @throws InterruptedException if interrupted while waiting for the deals to be solved
+     */
+    public long[] run(long firstDeal, long endDeal, Path output) throws IOException, InterruptedException {
+        Checkpoint checkpoint = Checkpoint.load(output, seed, firstDeal, endDeal, template.length);
+        if (checkpoint.nextDeal > firstDeal) {
+            System.out.println("| Carrying on from deal " + checkpoint.nextDeal + " (" + (checkpoint.nextDeal - firstDeal) + " already done)");
+        }
+
+        //cuts off anything written after the last checkpoint, since those deals will be solved again
+        try (FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            out.truncate(checkpoint.outputBytes);
+        }
+        if (checkpoint.outputBytes == 0) {
+            Files.write(output, "deal,deal seed,fewest piles,can be won,exact,positions\n".getBytes(StandardCharsets.US_ASCII));
+            checkpoint.outputBytes = Files.size(output);
+        }
+
+        Progress progress = new Progress(checkpoint.nextDeal, endDeal);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        DealResult[] batch = new DealResult[BATCH_SIZE];
+
+        for (long batchStart = checkpoint.nextDeal; batchStart < endDeal; batchStart += BATCH_SIZE) {
+            int batchSize = (int) Math.min(BATCH_SIZE, endDeal - batchStart);
+            for (int i = 0; i < batchSize; i++) {
+                TranspositionTable table = takeTable(progress);
+                DealSearch search = new DealSearch(batchStart + i, table);
+                batch[i] = search.result;
+                pool.execute(new DealTask(search, progress, failure));
+            }
+            //every table is back once every deal in the batch is done
+            List<TranspositionTable> returned = new ArrayList<>();
+            while (returned.size() < pool.getParallelism()) {
+                returned.add(takeTable(progress));
+            }
+            tables.addAll(returned);
+            if (failure.get() != null) {
+                throw new IllegalStateException("A deal could not be solved", failure.get());
+            }
+
+            StringBuilder lines = new StringBuilder();
+            for (int i = 0; i < batchSize; i++) {
+                DealResult result = batch[i];
+                lines.append(result.deal).append(',').append(result.dealSeed).append(',').append(result.fewestPiles).append(',')
+                        .append(result.fewestPiles == 1).append(',').append(result.exact).append(',').append(result.positions).append('\n');
+                checkpoint.histogram[result.fewestPiles]++;
+                if (!result.exact) {
+                    checkpoint.notExact++;
+                }
+            }
+            Files.write(output, lines.toString().getBytes(StandardCharsets.US_ASCII), StandardOpenOption.APPEND);
+            checkpoint.nextDeal = batchStart + batchSize;
+            checkpoint.outputBytes = Files.size(output);
+            checkpoint.save(output);
+        }
+        progress.report(true);
+        if (checkpoint.notExact > 0) {
+            System.out.println("| " + checkpoint.notExact + " deals hit the position limit, so their results are only the best found");
+        }
+        return checkpoint.histogram;
+    }
+
+    /**
+     * Method to wait for a free transposition table, reporting the progress while it waits
+     * @param progress holds the progress so far
+     * @return returns the table
+     * @throws InterruptedException if interrupted while waiting
+     */
+    private TranspositionTable takeTable(Progress progress) throws InterruptedException {
+        TranspositionTable table;
+        while ((table = tables.poll(1, TimeUnit.SECONDS)) == null) {
+            progress.report(false);
+        }
+        progress.report(false);
+        return table;
+    }
+
+    /**
+     * Method to stop the worker threads
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * Class to hold the result of a deal
+     */
+    private static class DealResult {
+        private long deal;
+        private long dealSeed;
+        private int fewestPiles;
+        private boolean exact;
+        private long positions;
+    }
+
+    /**
+     * Class to hold everything the tasks searching one deal share: the cards, the transposition table and the best result so far.
+     * The table is written by every task without locking. A task can only be fooled into skipping a position that another task
+     * has already started searching (which it will finish), so the results are the same as a search on one thread
+     */
+    private class DealSearch {
+        private final DealResult result = new DealResult();
+        private final byte[] stock = new byte[template.length];
+        private final TranspositionTable table;
+
+        private final AtomicInteger fewestPiles;
+        private final AtomicLong positions = new AtomicLong();
+        private volatile boolean finished; //set once the deal can't get any better, or the position limit is hit
+        private volatile boolean stopped; //set if the position limit is hit
+
+        private DealSearch(long deal, TranspositionTable table) {
+            result.deal = deal;
+            result.dealSeed = Shuffler.dealSeed(seed, deal);
+            System.arraycopy(template, 0, stock, 0, template.length);
+            Shuffler.shuffle(stock, DeckRandom.create(result.dealSeed));
+            this.table = table;
+            table.newSearch(); //the positions from the table's last deal are forgotten without clearing it
+            fewestPiles = new AtomicInteger(template.length);
+        }
+
+        private void offer(int pilesLeft) {
+            int best;
+            while (pilesLeft < (best = fewestPiles.get())) {
+                if (fewestPiles.compareAndSet(best, pilesLeft)) {
+                    if (pilesLeft == 1) {
+                        finished = true; //nothing can beat 1 pile
+                    }
+                    return;
+                }
+            }
+        }
+
+        private void addPositions(long count) {
+            if (positions.addAndGet(count) > positionLimit) {
+                stopped = true;
+                finished = true;
+            }
+        }
+    }
+
+    /**
+     * Method to return a summary of a census's results (including any deals solved before it carried on from a checkpoint).
+     * The deals are solved rather than played, so the numbers are the fewest piles each deal can get down to
+     * @param histogram holds the number of deals for each fewest number of piles
+     * @return returns the summary as a string
+     */
+    private static String summary(long[] histogram) {
+        SimulationResult result = new SimulationResult(histogram, 0);
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("| Deals solved: %d%n", result.getNumDeals()));
+        sb.append(String.format("| Deals that can be won: %d (%.4f%% +/- %.4f%%)%n",
+                result.getCount(1), result.getWinRate() * 100, result.getWinRateConfidence() * 100));
+        sb.append(String.format("| Mean fewest piles: %.3f +/- %.3f%n", result.getMean(), result.getMeanConfidence()));
+        sb.append("| Fewest piles:\n");
+        sb.append(result.histogramToString());
+        return sb.toString();
+    }
+
+    /**
+     * Task to solve one deal and hand its transposition table back for the next deal
+     */
+    private class DealTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final DealSearch search;
+        private final Progress progress;
+        private final AtomicReference<Throwable> failure;
+
+        private DealTask(DealSearch search, Progress progress, AtomicReference<Throwable> failure) {
+            this.search = search;
+            this.progress = progress;
+            this.failure = failure;
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                new SubtreeTask(search, new byte[template.length], 0, 0, Zobrist.hash(new byte[0], 0, 0)).invoke();
+                DealResult result = search.result;
+                result.fewestPiles = search.fewestPiles.get();
+                result.exact = !search.stopped;
+                result.positions = search.positions.get();
+                progress.dealDone(result.fewestPiles == 1);
+            } catch (Throwable e) {
+                failure.compareAndSet(null, e);
+            } finally {
+                tables.add(search.table);
+            }
+        }
+    }
+
+    /**
+     * Task to search every move from one position of a deal. It searches depth-first on its own copy of the piles,
+     * making and undoing moves in place like the Solver does, and forks the moves it hasn't tried yet as new tasks once it has run for a while
+     */
+    private class SubtreeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final DealSearch search;
+        private final byte[] piles;
+        private final int startPiles;
+        private final int startStockPos;
+        private final long startKey;
+        private List<SubtreeTask> forked;
+        private long positions; //positions looked at since they were last added to the deal's count
+        private long sinceSplit;
+
+        private SubtreeTask(DealSearch search, byte[] piles, int numPiles, int stockPos, long key) {
+            this.search = search;
+            this.piles = piles;
+            this.startPiles = numPiles;
+            this.startStockPos = stockPos;
+            this.startKey = key;
+        }
+
+        @Override
+        protected void compute() {
+            search(startPiles, startStockPos, startKey);
+            search.addPositions(positions);
+            if (forked != null) {
+                for (int i = forked.size() - 1; i >= 0; i--) {
+                    forked.get(i).join();
+                }
+            }
+        }
+
+        private void search(int numPiles, int stockPos, long key) {
+            if (++positions == 1024) {
+                search.addPositions(positions);
+                positions = 0;
+            }
+            sinceSplit++;
+            int pilesLeft = numPiles + template.length - stockPos;
+            if (search.finished || !search.table.markSeen(key, pilesLeft + template.length - stockPos)) {
+                return;
+            }
+            search.offer(pilesLeft);
+
+            for (int j = numPiles - 1; j > 0; j--) { //the same move order as the Solver
+                for (int over = 3; over > 0; over -= 2) {
+                    int i = j - over;
+                    if (i < 0 || !PackedCard.matches(piles[j], piles[i])) {
+                        continue;
+                    }
+
+                    long nextKey = key ^ Zobrist.mergeDelta(piles, numPiles, j, i);
+                    byte covered = piles[i];
+                    piles[i] = piles[j];
+                    System.arraycopy(piles, j + 1, piles, j, numPiles - j - 1);
+
+                    searchOrSplit(numPiles - 1, stockPos, nextKey);
+
+                    System.arraycopy(piles, j, piles, j + 1, numPiles - j - 1);
+                    piles[j] = piles[i];
+                    piles[i] = covered;
+                    if (search.finished) {
+                        return;
+                    }
+                }
+            }
+
+            if (stockPos < template.length) {
+                piles[numPiles] = search.stock[stockPos];
+                searchOrSplit(numPiles + 1, stockPos + 1, key ^ Zobrist.dealDelta(numPiles, search.stock[stockPos], stockPos));
+            }
+        }
+
+        /**
+         * Method to search a position straight away, or if this task has been running a while and the other workers
+         * could do with more work, to fork it as a task of its own
+         */
+        private void searchOrSplit(int numPiles, int stockPos, long key) {
+            if (sinceSplit >= SPLIT_POSITIONS && getSurplusQueuedTaskCount() < MAX_SURPLUS_TASKS) {
+                sinceSplit = 0;
+                byte[] copy = new byte[piles.length];
+                System.arraycopy(piles, 0, copy, 0, numPiles);
+                SubtreeTask task = new SubtreeTask(search, copy, numPiles, stockPos, key);
+                if (forked == null) {
+                    forked = new ArrayList<>();
+                }
+                forked.add(task);
+                task.fork();
+            } else {
+                search(numPiles, stockPos, key);
+            }
+        }
+    }
+
+    /**
+     * Class to count the deals solved and print the progress every few seconds
+     */
+    private static class Progress {
+        private final long startDeal;
+        private final long endDeal;
+        private final long startTime = System.nanoTime();
+        private final AtomicLong done = new AtomicLong();
+        private final AtomicLong won = new AtomicLong();
+        private long lastReport = startTime;
+
+        private Progress(long startDeal, long endDeal) {
+            this.startDeal = startDeal;
+            this.endDeal = endDeal;
+        }
+
+        private void dealDone(boolean canBeWon) {
+            done.incrementAndGet();
+            if (canBeWon) {
+                won.incrementAndGet();
+            }
+        }
+
+        /**
+         * Method to print the progress, if it hasn't been printed for a few seconds
+         * @param always holds whether to print it anyway
+         */
+        private void report(boolean always) {
+            long now = System.nanoTime();
+            if (!always && now - lastReport < PROGRESS_NANOS) {
+                return;
+            }
+            lastReport = now;
+            long numDone = done.get();
+            double seconds = (now - startTime) / 1e9;
+            double rate = numDone / Math.max(seconds, 1e-9);
+            long left = endDeal - startDeal - numDone;
+            System.out.printf("| %d of %d deals solved (%.1f deals/second, %d can be won), about %.0f seconds to go%n",
+                    numDone, endDeal - startDeal, rate, won.get(), rate == 0 ? 0 : left / rate);
+        }
+    }
+
+    /**
+     * Class to save and load how far a census has got. It is a properties file, written to a temporary file and then moved
+     * over the old one, so it is never left half written
+     */
+    private static class Checkpoint {
+        private final long[] histogram;
+        private long nextDeal;
+        private long outputBytes;
+        private long notExact;
+        private long seed;
+        private long firstDeal;
+        private long endDeal;
+
+        private Checkpoint(int numCards) {
+            histogram = new long[numCards + 1];
+        }
+
+        private static Path pathFor(Path output) {
+            return Paths.get(output + ".checkpoint");
+        }
+
+        /**
+         * Method to load the checkpoint for an output file, or start a new one if there isn't one
+         * @throws IOException if the checkpoint cannot be read, or is for a different census
+         */
+        private static Checkpoint load(Path output, long seed, long firstDeal, long endDeal, int numCards) throws IOException {
+            Checkpoint checkpoint = new Checkpoint(numCards);
+            checkpoint.seed = seed;
+            checkpoint.firstDeal = firstDeal;
+            checkpoint.endDeal = endDeal;
+            checkpoint.nextDeal = firstDeal;
+            Path path = pathFor(output);
+            if (!Files.exists(path)) {
+                return checkpoint;
+            }
+
+            Properties properties = new Properties();
+            try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.US_ASCII)) {
+                properties.load(reader);
+            }
+            try {
+                if (Long.parseLong(properties.getProperty("seed")) != seed || Long.parseLong(properties.getProperty("firstDeal")) != firstDeal
+                        || Long.parseLong(properties.getProperty("endDeal")) != endDeal) {
+                    throw new IOException(path + " is the checkpoint of a different census (seed " + properties.getProperty("seed")
+                            + ", deals " + properties.getProperty("firstDeal") + " to " + properties.getProperty("endDeal")
+                            + "), delete it or pick another output file");
+                }
+                checkpoint.nextDeal = Long.parseLong(properties.getProperty("nextDeal"));
+                checkpoint.outputBytes = Long.parseLong(properties.getProperty("outputBytes"));
+                checkpoint.notExact = Long.parseLong(properties.getProperty("notExact"));
+                String[] counts = properties.getProperty("histogram").split(",");
+                for (int i = 0; i < counts.length && i < checkpoint.histogram.length; i++) {
+                    checkpoint.histogram[i] = Long.parseLong(counts[i]);
+                }
+            } catch (NullPointerException | NumberFormatException e) {
+                throw new IOException(path + " isn't a valid checkpoint", e);
+            }
+            if (Files.size(output) < checkpoint.outputBytes) {
+                throw new IOException(output + " is shorter than its checkpoint says it should be");
+            }
+            return checkpoint;
+        }
+
+        private void save(Path output) throws IOException {
+            StringBuilder counts = new StringBuilder();
+            for (int i = 0; i < histogram.length; i++) {
+                counts.append(i == 0 ? "" : ",").append(histogram[i]);
+            }
+            Properties properties = new Properties();
+            properties.setProperty("seed", Long.toString(seed));
+            properties.setProperty("firstDeal", Long.toString(firstDeal));
+            properties.setProperty("endDeal", Long.toString(endDeal));
+            properties.setProperty("nextDeal", Long.toString(nextDeal));
+            properties.setProperty("outputBytes", Long.toString(outputBytes));
+            properties.setProperty("notExact", Long.toString(notExact));
+            properties.setProperty("histogram", counts.toString());
+
+            Path path = pathFor(output);
+            Path temp = Paths.get(path + ".tmp");
+            try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.US_ASCII)) {
+                properties.store(writer, "Census checkpoint");
+            }
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    /**
+     * Method to run a census from the command line
+     * Usage: java Census [first deal] [end deal] [seed] [output file] [memory budget in MB] [position limit per deal, 0 for none]
+     * Running it again with the same arguments carries on from the last checkpoint
+     * @param args holds the command line arguments
+     */
+    public static void main(String[] args) {
+        long firstDeal = args.length > 0 ? Long.parseLong(args[0]) : 0;
+        long endDeal = args.length > 1 ? Long.parseLong(args[1]) : firstDeal + 10_000;
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 42;
+        Path output = Paths.get(args.length > 3 ? args[3] : DEFAULT_FILE_NAME);
+        long memoryBudget = args.length > 4 ? Long.parseLong(args[4]) << 20 : Runtime.getRuntime().maxMemory() / 2;
+        long positionLimit = args.length > 5 ? Long.parseLong(args[5]) : 0;
+        int parallelism = Runtime.getRuntime().availableProcessors();
+
+        try {
+            Census census = new Census(DeckSource.open().getPack(), seed, memoryBudget, positionLimit, parallelism);
+            System.out.printf("| Census of deals %d to %d (seed %d) on %d threads, with %d MB of transposition tables, %s%n",
+                    firstDeal, endDeal - 1, seed, parallelism, census.getTableBytes() >> 20,
+                    positionLimit > 0 ? "giving up on a deal after " + positionLimit + " positions" : "solving every deal exactly");
+            try {
+                long[] histogram = census.run(firstDeal, endDeal, output);
+                System.out.println("| Results written to " + output);
+                System.out.print(summary(histogram));
+            } finally {
+                census.shutdown();
+            }
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+            System.err.println("The census could not be run.");
+        } catch (InterruptedException e) {
+            System.err.println("The census was interrupted, run it again to carry on from the last checkpoint.");
+        }
+    }
+}
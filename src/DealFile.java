@@ -0,0 +1,456 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Class to read a batch of pre-shuffled deals (e.g. for a tournament, where every player and every simulation plays the same deals).
+ * The deals are kept in a binary file of fixed-size records, which is memory-mapped rather than read into the heap,
+ * so a file with millions of deals only costs the pages that are actually used, and any deal can be found straight away by its number.
+ * Reading a deal never changes the mapping's position, so one deal file can be shared by any number of threads.
+ *
+ * The binary file is [int magic "PDL1"][int cards per deal][long number of deals], followed by one record per deal
+ * of the packed cards (see PackedCard) in the order they are dealt.
+ * A text deal file has one deal per line, each card written the same way as Card.toString() (e.g. "ah 2h ts", spaces are optional).
+ * It is imported into a binary file next to it the first time it is opened (and again if it changes), streaming it through
+ * NIO channels a buffer at a time, and any bad lines are reported with their line numbers.
+ *
+ * Running it from the command line makes or imports deal files:
+ * java DealFile generate [file] [number of deals] [seed] [generator]
+ * java DealFile import [text file] [binary file]
+ *
+ * @author Owain Gibson
+ * @version 1.0
+ */
+public class DealFile {
+    /**
+     * The file extension of a binary deal file
+     */
+    public static final String EXTENSION = ".deals";
+
+    private static final int MAGIC = 0x50444c31; //"PDL1"
+    private static final int HEADER_SIZE = 16;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_PROBLEMS = 10;
+
+    /**
+     * A single mapping can't be bigger than 2GB, so big files are mapped in chunks of whole deals of up to 1GB each
+     */
+    private static final int CHUNK_BYTES = 1 << 30;
+
+    private final Path path;
+    private final int cardsPerDeal;
+    private final long numDeals;
+    private final int dealsPerChunk;
+    private final MappedByteBuffer[] chunks;
+
+    /**
+     * Constructor to map a binary deal file
+     * @param path holds the file
+     * @throws IOException if the file cannot be read or isn't a deal file
+     */
+    private DealFile(Path path) throws IOException {
+        this.path = path;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining() && channel.read(header, header.position()) >= 0) {
+                //keeps reading until the whole header is in the buffer
+            }
+            header.flip();
+            if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC) {
+                throw new IOException(path + " is not a deal file.");
+            }
+            cardsPerDeal = header.getInt();
+            numDeals = header.getLong();
+            if (cardsPerDeal < 1 || cardsPerDeal > TableDeck.MAX_PILES || numDeals < 0
+                    || channel.size() != HEADER_SIZE + numDeals * cardsPerDeal) {
+                throw new IOException(path + " is not a complete deal file.");
+            }
+
+            //the mappings stay valid after the channel is closed
+            dealsPerChunk = CHUNK_BYTES / cardsPerDeal;
+            chunks = new MappedByteBuffer[(int) ((numDeals + dealsPerChunk - 1) / dealsPerChunk)];
+            for (int i = 0; i < chunks.length; i++) {
+                long firstDeal = (long) i * dealsPerChunk;
+                long size = Math.min(dealsPerChunk, numDeals - firstDeal) * cardsPerDeal;
+                chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + firstDeal * cardsPerDeal, size);
+            }
+        }
+    }
+
+    /**
+     * Method to open a deal file. A text deal file is imported into a binary deal file next to it first
+     * (with EXTENSION added to its name), unless that has already been done since the text file last changed
+     * @param fileName holds the name of the deal file
+     * @return returns the deal file
+     * @throws IOException if the file cannot be read, or isn't a valid deal file (a DeckFormatException lists the bad lines)
+     */
+    public static DealFile open(String fileName) throws IOException {
+        Path path = Paths.get(fileName);
+        if (fileName.endsWith(EXTENSION)) {
+            return new DealFile(path);
+        }
+        Path binary = Paths.get(fileName + EXTENSION);
+        if (!Files.exists(binary) || Files.getLastModifiedTime(binary).compareTo(Files.getLastModifiedTime(path)) < 0) {
+            importText(path, binary);
+        }
+        return new DealFile(binary);
+    }
+
+    /**
+     * Method to copy a deal into an array
+     * @param dealNumber holds the number of the deal (0 is the first)
+     * @param into holds the array to copy into (must have room for cardsPerDeal() cards)
+     * @return returns the number of cards in the deal
+     * @throws IndexOutOfBoundsException if there is no deal with that number
+     * @throws UncheckedIOException if the deal has been damaged (holds a DeckFormatException)
+     */
+    public int dealInto(long dealNumber, byte[] into) {
+        if (dealNumber < 0 || dealNumber >= numDeals) {
+            throw new IndexOutOfBoundsException("There is no deal " + dealNumber + " in " + path + " (it has " + numDeals + " deals)");
+        }
+        MappedByteBuffer chunk = chunks[(int) (dealNumber / dealsPerChunk)];
+        int offset = (int) (dealNumber % dealsPerChunk) * cardsPerDeal;
+        for (int i = 0; i < cardsPerDeal; i++) {
+            byte card = chunk.get(offset + i); //absolute gets don't touch the buffer's position, so threads can share it
+            if (!PackedCard.isValid(card)) {
+                throw new UncheckedIOException(new DeckFormatException(path.toString(), Collections.singletonList(
+                        "deal " + dealNumber + ": " + (card & 0xff) + " is not a packed card"), (int) dealNumber));
+            }
+            into[i] = card;
+        }
+        return cardsPerDeal;
+    }
+
+    /**
+     * Method to return one of the deals as a deck source, so it can be played as a game (see TurnoverDeck)
+     * @param dealNumber holds the number of the deal
+     * @return returns the deck source
+     * @throws IndexOutOfBoundsException if there is no deal with that number
+     */
+    public DeckSource deal(long dealNumber) {
+        if (dealNumber < 0 || dealNumber >= numDeals) {
+            throw new IndexOutOfBoundsException("There is no deal " + dealNumber + " in " + path + " (it has " + numDeals + " deals)");
+        }
+        return new DealSource(this, dealNumber);
+    }
+
+    /**
+     * Method to return the number of deals in the file
+     * @return returns the number
+     */
+    public long numDeals() {
+        return numDeals;
+    }
+
+    /**
+     * Method to return the number of cards in every deal
+     * @return returns the number
+     */
+    public int cardsPerDeal() {
+        return cardsPerDeal;
+    }
+
+    /**
+     * Method to return the binary deal file
+     * @return returns the path
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    @Override
+    public String toString() {
+        return path + " (" + numDeals + " deals of " + cardsPerDeal + " cards)";
+    }
+
+    /**
+     * Class for a single deal from a deal file, as a deck source.
+     * The deal is already shuffled, so it is played in the order it is in the file
+     */
+    private static class DealSource extends DeckSource {
+        private final DealFile file;
+        private final long dealNumber;
+
+        private DealSource(DealFile file, long dealNumber) {
+            this.file = file;
+            this.dealNumber = dealNumber;
+        }
+
+        @Override
+        public int packInto(byte[] into) throws IOException {
+            try {
+                return file.dealInto(dealNumber, into);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+
+        @Override
+        public boolean isShuffled() {
+            return true;
+        }
+
+        @Override
+        public String getName() {
+            return file.path + "#" + dealNumber;
+        }
+    }
+
+    /**
+     * Class to write a binary deal file one deal at a time, through a buffer, so that millions of deals can be written
+     * without holding them all in memory
+     */
+    public static class Writer implements AutoCloseable {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private final int cardsPerDeal;
+        private long numDeals;
+
+        /**
+         * Constructor to start a new binary deal file (any file already there is replaced)
+         * @param path holds the file to write
+         * @param cardsPerDeal holds the number of cards in every deal
+         * @throws IOException if the file cannot be written
+         */
+        public Writer(Path path, int cardsPerDeal) throws IOException {
+            if (cardsPerDeal < 1 || cardsPerDeal > TableDeck.MAX_PILES) {
+                throw new IllegalArgumentException("A deal must have between 1 and " + TableDeck.MAX_PILES + " cards");
+            }
+            this.cardsPerDeal = cardsPerDeal;
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            buffer.putInt(MAGIC).putInt(cardsPerDeal).putLong(0L); //the number of deals is filled in when the file is closed
+        }
+
+        /**
+         * Method to add a deal to the end of the file
+         * @param deal holds the packed cards, in the order they are dealt (only the first cardsPerDeal are written)
+         * @throws IOException if there is an IO error
+         */
+        public void write(byte[] deal) throws IOException {
+            if (buffer.remaining() < cardsPerDeal) {
+                flush();
+            }
+            buffer.put(deal, 0, cardsPerDeal);
+            numDeals++;
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        /**
+         * Method to finish the file, writing the number of deals into the header
+         * @throws IOException if there is an IO error
+         */
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+                ByteBuffer count = ByteBuffer.allocate(8).putLong(0, numDeals);
+                channel.write(count, 8);
+                channel.force(true);
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * Method to import a text deal file into a binary deal file, reading it through a channel a buffer at a time.
+     * Every deal must have the same number of cards as the first one, and no card can be in a deal twice
+     * @param text holds the text deal file
+     * @param binary holds the binary deal file to write
+     * @throws IOException if either file cannot be read or written, or the text isn't a valid deal file (a DeckFormatException)
+     */
+    public static void importText(Path text, Path binary) throws IOException {
+        Path temp = Paths.get(binary + ".tmp");
+        TextImporter importer = new TextImporter(temp);
+        try {
+            try (FileChannel in = FileChannel.open(text, StandardOpenOption.READ)) {
+                ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+                boolean lastWasCr = false;
+                while (importer.problems.size() < MAX_PROBLEMS && in.read(buffer) >= 0) {
+                    buffer.flip();
+                    while (buffer.hasRemaining()) {
+                        byte b = buffer.get();
+                        if (b == '\n' || b == '\r') {
+                            if (b == '\r' || !lastWasCr) { //the \n of a \r\n has already ended the line
+                                importer.endLine();
+                            }
+                        } else {
+                            importer.add(b);
+                        }
+                        lastWasCr = b == '\r';
+                    }
+                    buffer.clear();
+                }
+                importer.endLine(); //the last line might not end with a new line
+            } finally {
+                importer.close();
+            }
+
+            if (!importer.problems.isEmpty()) {
+                throw new DeckFormatException(text.toString(), importer.problems, importer.firstProblemLine);
+            }
+            Files.move(temp, binary, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException | RuntimeException e) { //a half written binary file is never left behind, whatever went wrong
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException deleteError) {
+                e.addSuppressed(deleteError);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Class to turn the lines of a text deal file into deals as they are read, and write them to a binary deal file
+     */
+    private static class TextImporter {
+        private final Path binary;
+        private final byte[] line = new byte[BUFFER_SIZE];
+        private final byte[] deal = new byte[TableDeck.MAX_PILES];
+        private final List<String> problems = new ArrayList<>();
+        private int lineLength;
+        private boolean lineTooLong;
+        private int numCards;
+        private int lineNumber;
+        private int firstProblemLine;
+        private Writer writer;
+
+        private TextImporter(Path binary) {
+            this.binary = binary;
+        }
+
+        /**
+         * Method to add a byte to the current line.
+         * Once a line is too long to be a deal, the rest of it is skipped, and endLine() notes it as a problem
+         * @param b holds the byte
+         */
+        private void add(byte b) {
+            if (lineLength == line.length) {
+                lineTooLong = true;
+                return;
+            }
+            line[lineLength++] = b;
+        }
+
+        /**
+         * Method to read the current line as a deal and write it to the binary file (blank lines are skipped)
+         * @throws IOException if the binary file cannot be written
+         */
+        private void endLine() throws IOException {
+            lineNumber++;
+            String problem = lineTooLong ? "the line is too long to be a deal" : parseDeal();
+            if (problem == null && numCards > 0) {
+                if (writer == null) {
+                    writer = new Writer(binary, numCards);
+                }
+                if (numCards != writer.cardsPerDeal) {
+                    problem = "the deal has " + numCards + " cards, but the first deal has " + writer.cardsPerDeal;
+                } else {
+                    writer.write(deal);
+                }
+            }
+            if (problem != null && problems.size() < MAX_PROBLEMS) {
+                firstProblemLine = problems.isEmpty() ? lineNumber : firstProblemLine;
+                problems.add("line " + lineNumber + ": " + problem);
+            }
+            lineLength = 0;
+            lineTooLong = false;
+        }
+
+        /**
+         * Method to read the current line into the deal array
+         * @return returns a description of what is wrong with the line, or null if it is a deal (or blank)
+         */
+        private String parseDeal() {
+            long seen = 0;
+            numCards = 0;
+            int i = 0;
+            while (i < lineLength) {
+                if (TextDeckSource.isSpace(line[i]) || line[i] == ',') {
+                    i++;
+                    continue;
+                }
+                int card = i + 1 < lineLength ? TextDeckSource.cardOf(line[i], line[i + 1]) : -1;
+                if (card == -1) {
+                    return "\"" + new String(line, i, Math.min(2, lineLength - i), StandardCharsets.UTF_8) + "\" is not a card";
+                }
+                if ((seen & (1L << card)) != 0) {
+                    return PackedCard.toString((byte) card) + " is in the deal twice";
+                }
+                if (numCards == TableDeck.MAX_PILES) {
+                    return "there are more than " + TableDeck.MAX_PILES + " cards in the deal";
+                }
+                seen |= 1L << card;
+                deal[numCards++] = (byte) card;
+                i += 2;
+            }
+            return null;
+        }
+
+        /**
+         * Method to finish the binary file, noting a problem if there were no deals at all
+         * @throws IOException if the binary file cannot be written
+         */
+        private void close() throws IOException {
+            if (writer == null) {
+                problems.add("line 1: there are no deals in the file");
+            } else {
+                writer.close();
+            }
+        }
+    }
+
+    /**
+     * Method to make or import deal files from the command line
+     * @param args holds "generate", the file, the number of deals, the seed and the generator (see DeckRandom.NAMES),
+     *             or "import", the text file and the binary file
+     * @throws IOException if a file cannot be read or written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length > 0 && args[0].equalsIgnoreCase("import")) {
+            String text = args.length > 1 ? args[1] : "../deals.txt";
+            String binary = args.length > 2 ? args[2] : text + EXTENSION;
+            importText(Paths.get(text), Paths.get(binary));
+            System.out.println("Imported " + new DealFile(Paths.get(binary)));
+            return;
+        }
+
+        String fileName = args.length > 1 ? args[1] : "../tournament" + EXTENSION;
+        long numDeals = args.length > 2 ? Long.parseLong(args[2]) : 1_000_000L;
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : System.nanoTime();
+        String randomName = args.length > 4 ? args[4] : DeckRandom.getDefaultName();
+
+        //the deals are shuffled the same way the simulator shuffles them, so deal n matches the simulator's deal n
+        // for the same seed and generator
+        byte[] template = DeckSource.open().getPack();
+        byte[] deal = new byte[template.length];
+        DeckRandom random = DeckRandom.forName(randomName, 0);
+        long start = System.nanoTime();
+        try (Writer writer = new Writer(Paths.get(fileName), template.length)) {
+            for (long n = 0; n < numDeals; n++) {
+                Shuffler.deal(template, seed, n, random, deal);
+                writer.write(deal);
+            }
+        }
+        System.out.println(String.format("Wrote %d deals (seed %d, %s shuffles) to %s in %.2f seconds",
+                numDeals, seed, randomName, fileName, (System.nanoTime() - start) / 1e9));
+    }
+}
@@ -0,0 +1,35 @@
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Class to create a new exception called DeckFormatException
+ * This will be thrown when a deck file can be read, but what is in it isn't a valid pack of cards.
+ * Every problem found in the file is listed in the message, with the line (or byte, for a binary deck) it is on
+ *
+ * @author Owain Gibson
+ * @version 1.0
+ */
+public class DeckFormatException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    private final int lineNumber;
+
+    /**
+     * Constructor to create the exception from the problems found in a deck file
+     * @param source holds the name of the deck file
+     * @param problems holds a description of every problem found, each starting with where it is in the file
+     * @param lineNumber holds the line (or byte) of the first problem
+     */
+    public DeckFormatException(String source, List<String> problems, int lineNumber) {
+        super(source + " is not a valid deck:\n" + String.join("\n", problems));
+        this.lineNumber = lineNumber;
+    }
+
+    /**
+     * Method to return where the first problem is in the file
+     * @return returns the line number (or byte offset, for a binary deck)
+     */
+    public int getLineNumber() {
+        return lineNumber;
+    }
+}
@@ -0,0 +1,104 @@
+import java.util.SplittableRandom;
+
+/**
+ * Interface to specify the random number generators the shuffles can use.
+ * java.util.random.RandomGenerator would do the same job, but it needs Java 17 and the game is built for Java 8,
+ * so this is the small part of it that a shuffle needs, with a few generators to pick from by name:
+ * - "splitmix": SplitMix64, the generator the simulator has always used (so its results don't change)
+ * - "splittable": java.util.SplittableRandom
+ * - "l64x128": L64X128MixRandom from the LXM family (the default RandomGenerator in Java 17), written out here
+ *
+ * Generators are not thread-safe. Each thread (or each deal) should have its own, which is what lets shuffling scale across cores
+ *
+ * @author Owain Gibson
+ * @version 1.0
+ */
+public interface DeckRandom {
+    /**
+     * The system property used to pick the generator the game and the simulator shuffle with (see NAMES)
+     */
+    String RANDOM_PROPERTY = "patience.random";
+
+    /**
+     * The names of the built-in generators, as accepted by forName()
+     */
+    String[] NAMES = {SplitMixRandom.NAME, "splittable", LxmRandom.NAME};
+
+    /**
+     * Method to return the next random 64 bit number
+     * @return returns the number
+     */
+    long nextLong();
+
+    /**
+     * Method to return a random number from 0 up to (but not including) the bound.
+     * The top 32 bits of a random long are scaled into the range with a multiply, rather than using %, which is quicker
+     * (the bias this leaves is below 1 in 2^26 for a 52 card pack)
+     * @param bound holds the bound (must be positive)
+     * @return returns the number
+     */
+    default int nextInt(int bound) {
+        return (int) (((nextLong() >>> 32) * bound) >>> 32);
+    }
+
+    /**
+     * Method to start the generator again from a seed, so one generator can be reused for many deals without creating anything
+     * @param seed holds the seed
+     */
+    void setSeed(long seed);
+
+    /**
+     * Method to return the name of the generator picked with RANDOM_PROPERTY (SplitMix64 by default)
+     * @return returns the name
+     */
+    static String getDefaultName() {
+        return System.getProperty(RANDOM_PROPERTY, SplitMixRandom.NAME);
+    }
+
+    /**
+     * Method to create the generator picked with RANDOM_PROPERTY
+     * @param seed holds the seed to start it from
+     * @return returns the generator
+     * @throws IllegalArgumentException if there is no generator with the picked name
+     */
+    static DeckRandom create(long seed) {
+        return forName(getDefaultName(), seed);
+    }
+
+    /**
+     * Method to create one of the built-in generators from its name
+     * @param name holds the name of the generator (see NAMES)
+     * @param seed holds the seed to start it from
+     * @return returns the generator
+     * @throws IllegalArgumentException if there is no generator with that name
+     */
+    static DeckRandom forName(String name, long seed) {
+        switch (name.toLowerCase()) {
+            case SplitMixRandom.NAME:
+                return new SplitMixRandom(seed);
+            case "splittable":
+                return new DeckRandom() {
+                    private SplittableRandom random = new SplittableRandom(seed);
+
+                    @Override
+                    public long nextLong() {
+                        return random.nextLong();
+                    }
+
+                    @Override
+                    public int nextInt(int bound) {
+                        return random.nextInt(bound);
+                    }
+
+                    @Override
+                    public void setSeed(long newSeed) {
+                        random = new SplittableRandom(newSeed);
+                    }
+                };
+            case LxmRandom.NAME:
+                return new LxmRandom(seed);
+            default:
+                throw new IllegalArgumentException("There is no random number generator called \"" + name + "\"");
+        }
+    }
+}
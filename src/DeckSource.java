@@ -0,0 +1,93 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+/**
+ * Abstract class to specify where the pack for a new game comes from, so that the game doesn't need to know
+ * whether the cards are read from the text card file, a binary deck file, or just made in memory.
+ * The text card file (TextDeckSource), the binary deck file (BinaryDeckSource), the canonical deck (CanonicalDeckSource)
+ * and a single deal from a deal file (see DealFile) are all kinds of deck source
+ *
+ * @author Owain Gibson
+ * @version 1.0
+ */
+public abstract class DeckSource {
+    /**
+     * The system property used to pick the deck the game uses ("canonical", the name of a text or binary deck file,
+     * or a deal from a deal file, e.g. "tournament.deals#42")
+     */
+    public static final String DECK_PROPERTY = "patience.deck";
+
+    /**
+     * The card file that the game uses by default
+     */
+    public static final String DEFAULT_FILE_NAME = "../cards.txt";
+
+    /**
+     * The copy of the card file that is used if the card file is missing
+     */
+    public static final String COPY_FILE_NAME = "../cardscopy.txt";
+
+    /**
+     * Method to open the deck source that the game should use.
+     * By default this is the text card file (or its copy if the card file is missing), see DECK_PROPERTY for the others
+     * @return returns the deck source
+     * @throws IOException if a deal file is picked and cannot be opened
+     */
+    public static DeckSource open() throws IOException {
+        String deck = System.getProperty(DECK_PROPERTY);
+        if (deck == null) {
+            return new TextDeckSource(Files.exists(Paths.get(DEFAULT_FILE_NAME)) ? DEFAULT_FILE_NAME : COPY_FILE_NAME);
+        }
+        if (deck.equalsIgnoreCase(CanonicalDeckSource.NAME)) {
+            return CanonicalDeckSource.INSTANCE;
+        }
+        int hash = deck.lastIndexOf('#');
+        if (hash != -1) {
+            return DealFile.open(deck.substring(0, hash)).deal(Long.parseLong(deck.substring(hash + 1)));
+        }
+        if (deck.endsWith(BinaryDeckSource.EXTENSION)) {
+            return new BinaryDeckSource(deck);
+        }
+        return new TextDeckSource(deck);
+    }
+
+    /**
+     * Method to copy the pack into an array, as packed cards (see PackedCard) in the order they are dealt.
+     * Nothing is created, so a new game can be set up as often as needed
+     * @param into holds the array to copy into (must have room for TableDeck.MAX_PILES cards)
+     * @return returns the number of cards in the pack
+     * @throws IOException if the pack cannot be read, or isn't a valid pack (a DeckFormatException)
+     */
+    public abstract int packInto(byte[] into) throws IOException;
+
+    /**
+     * Method to check if the pack is already shuffled (a pre-shuffled deal that should be played as it is)
+     * @return returns false unless a deck source says otherwise
+     */
+    public boolean isShuffled() {
+        return false;
+    }
+
+    /**
+     * Method to return the name of the deck source, for error messages
+     * @return returns the name
+     */
+    public abstract String getName();
+
+    /**
+     * Method to return a copy of the pack
+     * @return returns the packed cards, in the order they are dealt
+     * @throws IOException if the pack cannot be read, or isn't a valid pack (a DeckFormatException)
+     */
+    public byte[] getPack() throws IOException {
+        byte[] pack = new byte[TableDeck.MAX_PILES];
+        return Arrays.copyOf(pack, packInto(pack));
+    }
+
+    @Override
+    public String toString() {
+        return getName();
+    }
+}
@@ -0,0 +1,716 @@
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Class to hold the rules of the game, without any menus, console input or GUI.
+ * It keeps the piles on the table and the cards left in the pack, and checks every move the same way the menu always has,
+ * throwing an IllegalMoveException with the same messages if a move breaks the rules.
+ * The pack is held as packed cards (see PackedCard) in a fixed array, so an engine can be reset and replayed
+ * as many times as needed by the simulator and solver without creating any objects.
+ * The engine also keeps an index of every legal merge, which is updated around the piles that changed after each move,
+ * so checking or finding a move never needs to scan the whole table.
+ * Every move is also written to a small move log (one int per move), so moves can be undone and redone in O(1)
+ * without keeping a copy of the table for every move, and the position's Zobrist key (see the Zobrist class) is updated as each move is made
+ *
+ * @author Owain Gibson
+ * @version 1.0
+ */
+public class Engine {
+    /**
+     * The most moves that can be legal at once: a 1-over and a 3-over move for every pile but the first, plus a deal
+     */
+    public static final int MAX_LEGAL_MOVES = 2 * (TableDeck.MAX_PILES - 1) + 1;
+
+    /**
+     * Every move either deals a card or removes a pile, so a game can never have more moves than this
+     */
+    public static final int MAX_HISTORY = 2 * TableDeck.MAX_PILES;
+
+    private final TableDeck table;
+    private final byte[] pack;
+    private int packSize;
+    private int nextCard;
+    private boolean shuffled;
+
+    /**
+     * The seed of the last shuffle if it was shuffled from a seed (see shuffle(long)), so the deal can be made again, or 0 if not
+     */
+    private long shuffleSeed;
+
+    /**
+     * The legal move index: bit d of oneOverMoves is set if pile d+1 can be moved onto pile d,
+     * and bit d of threeOverMoves is set if pile d+3 can be moved onto pile d.
+     * There are never more than 52 piles, so each one fits in a long
+     */
+    private long oneOverMoves;
+    private long threeOverMoves;
+
+    /**
+     * The Zobrist key of the current position, which is kept up to date along with the legal move index
+     */
+    private long positionKey;
+
+    /**
+     * The table's modCount when the index was last updated. If the table has been changed from outside the engine
+     * (e.g. restored from a snapshot), the counts won't match and the index is rebuilt
+     */
+    private int indexedModCount = -1;
+
+    /**
+     * Told about every change to the table (e.g. so the GUI only redraws what changed), or null if nothing is listening
+     */
+    private EngineListener listener;
+
+    /**
+     * The move log: each entry is the packed move (see the Move class) in the low 16 bits, and for a merge,
+     * the packed card it covered in the next 8 bits (which is all that is needed to undo it).
+     * Entries before historyPos have been played, and entries from historyPos up to historySize have been undone and can be redone
+     */
+    private final int[] history = new int[MAX_HISTORY];
+    private int historyPos;
+    private int historySize;
+
+    /**
+     * The table's modCount after the engine last changed it. If the table has been changed from outside the engine,
+     * the move log no longer describes it, so it is cleared rather than undoing the wrong moves
+     */
+    private int historyModCount;
+
+    /**
+     * Counts published for other threads, e.g. the metrics gauges, which must never call the engine's own getters
+     * (movesPlayed() can clear the move log if it is called part way through a move).
+     * publishedCounts holds the piles, the cards left in the pack and the moves played (piles << 32 | cards left << 16 | moves played),
+     * and is set again after every change. movesTested counts the moves canMove() has been asked about.
+     * Only the engine's own thread writes them, so they are set with lazySet, which is just an ordered store, and the hot paths
+     * don't pay for a full volatile write
+     */
+    private final AtomicLong publishedCounts = new AtomicLong();
+    private final AtomicLong movesTested = new AtomicLong();
+
+    /**
+     * Constructor to set up an engine with no cards, ready for newGame() to be called
+     */
+    public Engine() {
+        table = new TableDeck();
+        pack = new byte[TableDeck.MAX_PILES];
+    }
+
+    /**
+     * Constructor to set up an engine from a turnover deck (the cards are copied, so the deck itself isn't changed)
+     * @param deck holds the deck to take the pack from
+     */
+    public Engine(TurnoverDeck deck) {
+        this();
+        for (int i = 0; i < deck.numCards(); i++) {
+            pack[i] = PackedCard.fromCard(deck.getCard(i));
+        }
+        packSize = deck.numCards();
+        shuffled = deck.isShuffled();
+        publishCounts();
+    }
+
+    /**
+     * Method to start a new game with the given pack, which is treated as already shuffled (it is the deal to play)
+     * @param cards holds the packed cards, in the order they will be dealt
+     * @param numCards holds the number of cards in the pack
+     */
+    public void newGame(byte[] cards, int numCards) {
+        if (numCards > pack.length) {
+            throw new IllegalArgumentException("A pack cannot hold more than " + pack.length + " cards");
+        }
+        System.arraycopy(cards, 0, pack, 0, numCards);
+        packSize = numCards;
+        nextCard = 0;
+        shuffled = true;
+        shuffleSeed = 0;
+        table.restore(pack, 0);
+        clearHistory();
+        if (listener != null) {
+            listener.tableReset(this);
+        }
+    }
+
+    /**
+     * Method to make this engine an exact copy of another engine's game, including its legal move index.
+     * Nothing is created, so strategies can use a spare engine to try out moves without changing the real game
+     * @param other holds the engine to copy
+     */
+    public void copyFrom(Engine other) {
+        System.arraycopy(other.pack, 0, pack, 0, other.packSize);
+        packSize = other.packSize;
+        nextCard = other.nextCard;
+        shuffled = other.shuffled;
+        shuffleSeed = other.shuffleSeed;
+        table.copyFrom(other.table);
+
+        oneOverMoves = other.oneOverMoves;
+        threeOverMoves = other.threeOverMoves;
+        positionKey = other.positionKey;
+        indexedModCount = other.indexedModCount == other.table.getModCount() ? table.getModCount() : -1;
+
+        if (other.historyModCount == other.table.getModCount()) {
+            System.arraycopy(other.history, 0, history, 0, other.historySize);
+            historyPos = other.historyPos;
+            historySize = other.historySize;
+            historyModCount = table.getModCount();
+        } else {
+            clearHistory();
+        }
+        publishCounts();
+        if (listener != null) {
+            listener.tableReset(this);
+        }
+    }
+
+    /**
+     * Method to set the listener that is told about every change to the table
+     * @param listener holds the listener (or null to stop telling anything)
+     */
+    public void setListener(EngineListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Method for shuffling the cards left in the pack from a new random seed
+     */
+    public void shuffle() {
+        shuffle(ThreadLocalRandom.current().nextLong());
+    }
+
+    /**
+     * Method for shuffling the cards left in the pack from a seed, with the generator picked by DeckRandom.RANDOM_PROPERTY.
+     * The seed is kept (see getShuffleSeed()) so that the shuffle can be made again
+     * @param seed holds the seed
+     */
+    public void shuffle(long seed) {
+        shuffle(DeckRandom.create(seed));
+        shuffleSeed = seed;
+    }
+
+    /**
+     * Method for shuffling the cards left in the pack with a Fisher-Yates shuffle, using the given random number generator
+     * @param random holds the generator to use
+     */
+    public void shuffle(DeckRandom random) {
+        Shuffler.shuffle(pack, nextCard, packSize, random);
+        shuffled = true;
+        shuffleSeed = 0;
+        historySize = historyPos; //the undone deals would now deal different cards, so they can't be redone
+    }
+
+    /**
+     * Method to deal the next card from the pack onto the end of the table
+     * @throws IllegalMoveException if a) the cards haven't been shuffled yet or b) there are no more cards to deal
+     */
+    public void deal() throws IllegalMoveException {
+        if (!shuffled) {
+            throw new IllegalMoveException("The cards must be shuffled at least once before starting.");
+        }
+        if (nextCard == packSize) {
+            throw new IllegalMoveException("There are no more cards in the pack.");
+        }
+        syncIndex();
+        checkHistory();
+        positionKey ^= Zobrist.dealDelta(table.numCards(), pack[nextCard], nextCard);
+        table.addPackedCard(pack[nextCard++]);
+
+        int newPile = table.numCards() - 1;
+        updateIndex(newPile - 3, newPile - 1); //only the piles 1 and 3 before the new card can have gained a move
+        recordMove(Move.DEAL, (byte) 0);
+        publishCounts();
+
+        if (listener != null) {
+            listener.cardDealt(newPile, pack[nextCard - 1]);
+            if (nextCard == packSize) {
+                listener.stockEmptied();
+            }
+        }
+    }
+
+    /**
+     * Method to check if a pile can be moved onto another pile, without throwing anything
+     * @param pileLocation holds the index of the pile to move
+     * @param moveLocation holds the index of the pile to merge onto
+     * @return returns true if the move is legal
+     */
+    public boolean canMove(int pileLocation, int moveLocation) {
+        movesTested.lazySet(movesTested.get() + 1);
+        if (pileLocation >= table.numCards() || moveLocation < 0) {
+            return false;
+        }
+        syncIndex();
+
+        int numPilesOver = pileLocation - moveLocation;
+        if (numPilesOver == 1) {
+            return (oneOverMoves & (1L << moveLocation)) != 0;
+        }
+        if (numPilesOver == 3) {
+            return (threeOverMoves & (1L << moveLocation)) != 0;
+        }
+        return false;
+    }
+
+    /**
+     * Method to move a pile onto another pile.
+     * Before moving, it performs a series of checks to make sure the move is valid
+     * @param pileLocation holds the index of the pile to move
+     * @param moveLocation holds the index of the pile to merge onto
+     * @throws IllegalMoveException if the indexes are outside the range of pile indexes, the move stacks backwards,
+     *      the distance between the piles means the move is illegal, or the cards aren't of the same suit or value
+     */
+    public void move(int pileLocation, int moveLocation) throws IllegalMoveException {
+        if (pileLocation >= table.numCards() || moveLocation < 0) {
+            throw new IllegalMoveException("Illegal move: Pile numbers cannot be outside the range of piles on the table.");
+        }
+
+        int numPilesOver = pileLocation - moveLocation;
+
+        if (numPilesOver < 0) {
+            throw new IllegalMoveException("Illegal move: You cannot stack an earlier pile onto a later pile.");
+        }
+        if (numPilesOver != 1 && numPilesOver != 3) {
+            throw new IllegalMoveException("Cannot move piles: must be either 1 apart or 3 apart");
+        }
+        if (!canMove(pileLocation, moveLocation)) {
+            throw new IllegalMoveException("Illegal move: The cards aren't of the same suit or value, so cannot be stacked");
+        }
+        checkHistory();
+        positionKey ^= Zobrist.mergeDelta(table, pileLocation, moveLocation);
+        byte covered = table.getPackedCard(moveLocation);
+        table.popMergeCards(pileLocation, moveLocation);
+
+        //every pile after the moved one shifts down one place, so their moves do too,
+        // and then only the moves within 3 piles of the change need to be checked again
+        oneOverMoves = removeBit(oneOverMoves, pileLocation);
+        threeOverMoves = removeBit(threeOverMoves, pileLocation);
+        updateIndex(moveLocation - 3, pileLocation - 1);
+        recordMove(Move.merge(pileLocation, numPilesOver), covered);
+        publishCounts();
+
+        if (listener != null) {
+            listener.pilesMerged(pileLocation, moveLocation, table.getPackedCard(moveLocation));
+        }
+    }
+
+    /**
+     * Method to move the last pile onto the pile before it
+     * @throws IllegalMoveException if there aren't enough piles on the table or the cards don't match
+     */
+    public void moveOntoPrevious() throws IllegalMoveException {
+        if (table.numCards() < 2) {
+            throw new IllegalMoveException("There needs to be at least 2 piles on the table to make this move.");
+        }
+        move(table.numCards() - 1, table.numCards() - 2);
+    }
+
+    /**
+     * Method to move the last pile onto the pile that is 2 across from it (3 piles before it)
+     * @throws IllegalMoveException if there aren't enough piles on the table or the cards don't match
+     */
+    public void moveOverTwo() throws IllegalMoveException {
+        if (table.numCards() < 4) {
+            throw new IllegalMoveException("There needs to be at least 4 piles on the table to make this move.");
+        }
+        move(table.numCards() - 1, table.numCards() - 4);
+    }
+
+    /**
+     * Method to play a packed move (see the Move class)
+     * @param move holds the packed move
+     * @throws IllegalMoveException if the move breaks the rules
+     */
+    public void play(int move) throws IllegalMoveException {
+        if (Move.isDeal(move)) {
+            deal();
+        } else {
+            move(Move.pileIndex(move), Move.targetIndex(move));
+        }
+    }
+
+    /**
+     * Method to undo the last move played (a deal puts the card back on the pack, a merge puts the covered card back
+     * and the moved pile back in its old place).
+     * Only the piles next to the change are checked again for the legal move index, the same as when the move was played
+     * @throws IllegalMoveException if there are no moves to undo
+     */
+    public void undo() throws IllegalMoveException {
+        if (!canUndo()) {
+            throw new IllegalMoveException("There are no moves to undo.");
+        }
+        syncIndex();
+        int entry = history[--historyPos];
+        int move = entry & 0xffff;
+
+        if (Move.isDeal(move)) {
+            table.popCard(table.numCards() - 1);
+            nextCard--;
+            positionKey ^= Zobrist.dealDelta(table.numCards(), pack[nextCard], nextCard);
+            int numPiles = table.numCards();
+            updateIndex(numPiles - 3, numPiles - 1); //the moves onto the removed card go
+        } else {
+            int pileLocation = Move.pileIndex(move);
+            int moveLocation = Move.targetIndex(move);
+            table.unmergeCards(pileLocation, moveLocation, (byte) (entry >>> 16));
+            positionKey ^= Zobrist.mergeDelta(table, pileLocation, moveLocation); //the same change takes the key back again
+
+            //the opposite of move(): every pile after the put back pile shifts up one place, so their moves do too
+            oneOverMoves = insertBit(oneOverMoves, pileLocation);
+            threeOverMoves = insertBit(threeOverMoves, pileLocation);
+            updateIndex(moveLocation - 3, pileLocation);
+        }
+        historyModCount = table.getModCount();
+        publishCounts();
+
+        if (listener != null) {
+            listener.tableReset(this);
+        }
+    }
+
+    /**
+     * Method to play the last move that was undone again
+     * @throws IllegalMoveException if there are no moves to redo
+     */
+    public void redo() throws IllegalMoveException {
+        if (!canRedo()) {
+            throw new IllegalMoveException("There are no moves to redo.");
+        }
+        int size = historySize;
+        play(history[historyPos] & 0xffff);
+        historySize = size; //playing the move writes the same entry back, so the moves after it can still be redone
+    }
+
+    /**
+     * Method to check if there is a move to undo
+     * @return returns the result
+     */
+    public boolean canUndo() {
+        checkHistory();
+        return historyPos > 0;
+    }
+
+    /**
+     * Method to check if there is an undone move to redo
+     * @return returns the result
+     */
+    public boolean canRedo() {
+        checkHistory();
+        return historyPos < historySize;
+    }
+
+    /**
+     * Method to return the number of moves played so far (not counting any that have been undone)
+     * @return returns the number
+     */
+    public int movesPlayed() {
+        checkHistory();
+        return historyPos;
+    }
+
+    /**
+     * Method to return a move from the move log
+     * @param index holds the index of the move, where 0 is the first move of the game
+     * @return returns the packed move
+     */
+    public int getMove(int index) {
+        return history[index] & 0xffff;
+    }
+
+    /**
+     * Method to write a move to the move log, which throws away any undone moves that were waiting to be redone
+     * @param move holds the packed move
+     * @param covered holds the packed card the move covered (or 0 for a deal)
+     */
+    private void recordMove(int move, byte covered) {
+        history[historyPos++] = move | ((covered & 0xff) << 16);
+        historySize = historyPos;
+        historyModCount = table.getModCount();
+    }
+
+    /**
+     * Method to clear the move log if the table has been changed from outside the engine since the last move
+     */
+    private void checkHistory() {
+        if (historyModCount != table.getModCount()) {
+            clearHistory();
+        }
+    }
+
+    /**
+     * Method to empty the move log
+     */
+    private void clearHistory() {
+        historyPos = 0;
+        historySize = 0;
+        historyModCount = table.getModCount();
+        publishCounts();
+    }
+
+    /**
+     * Method to find every legal move, as packed moves (see the Move class).
+     * The merges come first, ordered by the pile they move (3 over before 1 over), and then a deal if there are cards left
+     * @param into holds the array to fill, which needs room for MAX_LEGAL_MOVES moves
+     * @return returns the number of legal moves found
+     */
+    public int legalMoves(int[] into) {
+        syncIndex();
+        int count = 0;
+
+        long movablePiles = (threeOverMoves << 3) | (oneOverMoves << 1);
+        while (movablePiles != 0) {
+            int pile = Long.numberOfTrailingZeros(movablePiles);
+            if (pile >= 3 && (threeOverMoves & (1L << (pile - 3))) != 0) {
+                into[count++] = Move.merge(pile, 3);
+            }
+            if ((oneOverMoves & (1L << (pile - 1))) != 0) {
+                into[count++] = Move.merge(pile, 1);
+            }
+            movablePiles &= movablePiles - 1; //clears the lowest bit, moving on to the next pile
+        }
+
+        if (canDeal()) {
+            into[count++] = Move.DEAL;
+        }
+        return count;
+    }
+
+    /**
+     * Method to find the move that "play for me" makes: the leftmost pile that another pile can be moved onto,
+     * preferring the "furthest move" (3 over) if both are possible
+     * @return returns the packed move, or Move.NONE if no piles can be merged
+     */
+    public int leftmostMove() {
+        syncIndex();
+        long targets = oneOverMoves | threeOverMoves;
+        if (targets == 0) {
+            return Move.NONE;
+        }
+
+        int target = Long.numberOfTrailingZeros(targets);
+        if ((threeOverMoves & (1L << target)) != 0) {
+            return Move.merge(target + 3, 3);
+        }
+        return Move.merge(target + 1, 1);
+    }
+
+    /**
+     * Method to return the legal move index for one kind of move, so strategies can pick moves without scanning the table
+     * @param numPilesOver holds the kind of move (1 or 3 over)
+     * @return returns a bitset where bit d is set if pile d + numPilesOver can be moved onto pile d
+     */
+    public long moveTargets(int numPilesOver) {
+        syncIndex();
+        return numPilesOver == 3 ? threeOverMoves : oneOverMoves;
+    }
+
+    /**
+     * Method to check if there are any legal moves left (a merge or a deal)
+     * @return returns true if the game can carry on
+     */
+    public boolean hasMoves() {
+        if (canDeal()) {
+            return true;
+        }
+        syncIndex();
+        return (oneOverMoves | threeOverMoves) != 0;
+    }
+
+    /**
+     * Method to return the Zobrist key of the current position (the piles on the table and how many cards have been dealt)
+     * @return returns the key
+     */
+    public long getPositionKey() {
+        syncIndex();
+        return positionKey;
+    }
+
+    /**
+     * Method to rebuild the legal move index (and the position key) if the table has been changed from outside the engine
+     */
+    private void syncIndex() {
+        if (indexedModCount != table.getModCount()) {
+            positionKey = Zobrist.hash(table, nextCard);
+            oneOverMoves = 0;
+            threeOverMoves = 0;
+            updateIndex(0, table.numCards() - 1);
+        }
+    }
+
+    /**
+     * Method to check the moves onto a range of piles again, and update their bits in the index
+     * @param firstTarget holds the first pile to check moves onto (can be below 0, which is skipped)
+     * @param lastTarget holds the last pile to check moves onto
+     */
+    private void updateIndex(int firstTarget, int lastTarget) {
+        int numPiles = table.numCards();
+        for (int target = Math.max(0, firstTarget); target <= lastTarget; target++) {
+            long bit = 1L << target;
+            byte card = table.getPackedCard(target);
+
+            if (target + 1 < numPiles && PackedCard.matches(card, table.getPackedCard(target + 1))) {
+                oneOverMoves |= bit;
+            } else {
+                oneOverMoves &= ~bit;
+            }
+            if (target + 3 < numPiles && PackedCard.matches(card, table.getPackedCard(target + 3))) {
+                threeOverMoves |= bit;
+            } else {
+                threeOverMoves &= ~bit;
+            }
+        }
+        indexedModCount = table.getModCount();
+    }
+
+    /**
+     * Method to remove a bit from a bitset, shifting every higher bit down one place (the same as removing a pile from the table)
+     * @param bits holds the bitset
+     * @param index holds the bit to remove
+     * @return returns the new bitset
+     */
+    private static long removeBit(long bits, int index) {
+        long below = (1L << index) - 1;
+        return (bits & below) | ((bits >>> 1) & ~below);
+    }
+
+    /**
+     * Method to add a clear bit to a bitset, shifting every bit from the index up one place (the same as putting a pile back on the table)
+     * @param bits holds the bitset
+     * @param index holds the bit to add
+     * @return returns the new bitset
+     */
+    private static long insertBit(long bits, int index) {
+        long below = (1L << index) - 1;
+        return (bits & below) | ((bits & ~below) << 1);
+    }
+
+    /**
+     * Method to return the piles on the table
+     * @return returns the table deck
+     */
+    public TableDeck getTable() {
+        return table;
+    }
+
+    /**
+     * Method to return the number of piles on the table
+     * @return returns the number
+     */
+    public int numPiles() {
+        return table.numCards();
+    }
+
+    /**
+     * Method to check if a card can be dealt (the pack has been shuffled and still has cards in it)
+     * @return returns the result
+     */
+    public boolean canDeal() {
+        return shuffled && nextCard < packSize;
+    }
+
+    /**
+     * Method to return the number of cards left in the pack
+     * @return returns the number
+     */
+    public int packSize() {
+        return packSize - nextCard;
+    }
+
+    /**
+     * Method to return a card that is left in the pack
+     * @param index holds the index of the card, where 0 is the next card to be dealt
+     * @return returns the packed card
+     */
+    public byte getPackCard(int index) {
+        return pack[nextCard + index];
+    }
+
+    /**
+     * Method to copy the whole deal into an array: the cards already dealt followed by the cards left in the pack,
+     * in the order they are (or were) dealt
+     * @param into holds the array to copy into (must have room for TableDeck.MAX_PILES cards)
+     * @return returns the number of cards in the deal
+     */
+    public int getDeal(byte[] into) {
+        System.arraycopy(pack, 0, into, 0, packSize);
+        return packSize;
+    }
+
+    /**
+     * Method to return the player's score: the piles on the table plus the cards left in the pack (lower is better)
+     * @return returns the score
+     */
+    public int pilesLeft() {
+        return table.numCards() + packSize();
+    }
+
+    /**
+     * Method for checking if the pack has been shuffled
+     * @return returns the result
+     */
+    public boolean isShuffled() {
+        return shuffled;
+    }
+
+    /**
+     * Method to return the seed of the last shuffle, if the pack was shuffled from a seed
+     * @return returns the seed, or 0 if the last shuffle didn't use one (or the pack hasn't been shuffled)
+     */
+    public long getShuffleSeed() {
+        return shuffleSeed;
+    }
+
+    /**
+     * Method to return the number of moves canMove() has been asked about (including the checks made by move()).
+     * It can be called from any thread
+     * @return returns the number
+     */
+    public long getMovesTested() {
+        return movesTested.get();
+    }
+
+    /**
+     * Method to return the number of piles as of the last change, which (unlike numPiles()) can be called from any thread
+     * @return returns the number
+     */
+    public int getPublishedPiles() {
+        return (int) (publishedCounts.get() >>> 32);
+    }
+
+    /**
+     * Method to return the number of cards left in the pack as of the last change, which (unlike packSize()) can be called from any thread
+     * @return returns the number
+     */
+    public int getPublishedCardsLeft() {
+        return (int) (publishedCounts.get() >>> 16) & 0xffff;
+    }
+
+    /**
+     * Method to return the number of moves played as of the last change, which (unlike movesPlayed()) can be called from any thread,
+     * and never touches the move log
+     * @return returns the number
+     */
+    public int getPublishedMovesPlayed() {
+        return (int) publishedCounts.get() & 0xffff;
+    }
+
+    /**
+     * Method to publish the counts for other threads after a change (see publishedCounts)
+     */
+    private void publishCounts() {
+        publishedCounts.lazySet((long) table.numCards() << 32 | (long) (packSize - nextCard) << 16 | historyPos);
+    }
+
+    /**
+     * Method to return all the cards left in the pack, 13 to a line
+     * @return returns them as a string
+     */
+    public String packToString() {
+        StringBuilder sb = new StringBuilder("\n");
+        for (int i = nextCard; i < packSize; i++) {
+            sb.append(PackedCard.toString(pack[i])).append(" ");
+            if ((i - nextCard + 1) % 13 == 0) {
+                sb.append("\n");
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,36 @@
+/**
+ * Interface for anything that wants to be told when the table changes, e.g. the GUI, so it can update only
+ * what changed instead of redrawing the whole table after every menu option.
+ * The engine calls these on whichever thread made the move, straight after the table has changed
+ *
+ * @author Owain Gibson
+ * @version 1.0
+ */
+public interface EngineListener {
+    /**
+     * Called when a card is dealt from the pack onto the end of the table
+     * @param pileIndex holds the index of the new pile
+     * @param card holds the packed card that was dealt
+     */
+    void cardDealt(int pileIndex, byte card);
+
+    /**
+     * Called when a pile is moved onto another pile. The moved pile's card is now on top of the target pile,
+     * and every pile after the moved pile has shifted down one place
+     * @param pileIndex holds the index the moved pile was at
+     * @param targetIndex holds the index of the pile it was moved onto
+     * @param card holds the packed card now on top of the target pile
+     */
+    void pilesMerged(int pileIndex, int targetIndex, byte card);
+
+    /**
+     * Called when the last card in the pack has been dealt
+     */
+    void stockEmptied();
+
+    /**
+     * Called when the whole table has been replaced, e.g. by a new game or a copy of another engine
+     * @param engine holds the engine, to read the new table from
+     */
+    void tableReset(Engine engine);
+}
@@ -0,0 +1,101 @@
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Abstract class for the deck sources that read the pack from a file.
+ * The file is only read and parsed the first time it is needed, and the pack is then kept as a template that every new game
+ * copies from. The template is shared by every source reading the same file, and is only parsed again if the file changes
+ * (its size or last modified time), so starting a new game costs one file stat and a 52 byte copy
+ *
+ * @author Owain Gibson
+ * @version 1.0
+ */
+public abstract class FileDeckSource extends DeckSource {
+    /**
+     * The parsed templates, by the absolute path of their file
+     */
+    private static final ConcurrentHashMap<Path, Template> TEMPLATES = new ConcurrentHashMap<>();
+
+    private final Path path;
+
+    /**
+     * Class to hold a parsed pack, and the file attributes it was parsed from.
+     * The pack array is never changed once made, so it is safe to share between threads
+     */
+    private static class Template {
+        private final long size;
+        private final long lastModified;
+        private final byte[] pack;
+
+        private Template(long size, long lastModified, byte[] pack) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.pack = pack;
+        }
+    }
+
+    /**
+     * Constructor to set up a deck source reading the given file
+     * @param fileName holds the name of the file
+     */
+    protected FileDeckSource(String fileName) {
+        path = Paths.get(fileName).toAbsolutePath().normalize();
+    }
+
+    @Override
+    public int packInto(byte[] into) throws IOException {
+        byte[] pack = template().pack;
+        System.arraycopy(pack, 0, into, 0, pack.length);
+        return pack.length;
+    }
+
+    /**
+     * Method to return the parsed template for the file, parsing it first if it hasn't been parsed or has changed since
+     * @return returns the template
+     * @throws IOException if the file cannot be read or parsed
+     */
+    private Template template() throws IOException {
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            throw new FileNotFoundException(path + " cannot be found.");
+        }
+        long size = attributes.size();
+        long lastModified = attributes.lastModifiedTime().toMillis();
+
+        Template template = TEMPLATES.get(path);
+        if (template == null || template.size != size || template.lastModified != lastModified) {
+            template = new Template(size, lastModified, parse(Files.readAllBytes(path)));
+            TEMPLATES.put(path, template);
+        }
+        return template;
+    }
+
+    /**
+     * Method to turn the bytes of the file into a pack
+     * @param bytes holds the whole file
+     * @return returns the packed cards, in the order they are dealt
+     * @throws DeckFormatException if the file isn't a valid pack
+     */
+    protected abstract byte[] parse(byte[] bytes) throws DeckFormatException;
+
+    /**
+     * Method to return the file the pack is read from
+     * @return returns the path
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    @Override
+    public String getName() {
+        return path.toString();
+    }
+}
@@ -9,6 +9,7 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.InputMismatchException;
 import java.util.Scanner;
+import java.util.concurrent.locks.LockSupport;
 import java.util.regex.Pattern;
 
 import javafx.application.Application;
@@ -20,9 +21,20 @@ public class Game extends Application {
 
     private Scanner inputScanner;
 
+    /**
+     * The turnover deck loads the cards and holds the card cover, and the engine holds the rules and the state of the game.
+     * This class only deals with the menu and display, and passes every move on to the engine
+     */
     private TurnoverDeck tDeck;
-    private TableDeck currentPiles;
-    private ScoreFile scoreFile;
+    private Engine engine;
+    private ScoreStore scoreStore;
+
+    /**
+     * The pack in the order it was loaded, which every shuffle starts from, so a game can be archived as just its shuffle seed
+     * and its moves (see GameRecord). The recorder is null if games aren't being archived
+     */
+    private byte[] template;
+    private GameRecord.Writer recorder;
 
     /**
      * These are final because they hold the filename of the acheivement cover cards and there is no need to change them aby accident and cause errors
@@ -39,21 +51,94 @@ public class Game extends Application {
     private boolean gameStarted;
     private boolean cheated;
 
+    /**
+     * The strategy used by the "play for me" options, which the player can change from the menu
+     */
+    private Strategy strategy;
+
+    /**
+     * The solver used by "solve from here", made the first time it is needed and then kept, since its transposition table
+     * is a 16 MB direct buffer that is only freed when the GC gets round to it. Each solve starts a new search on the same table
+     */
+    private Solver solver;
+
     private CardTable cardTable;
 
+    /**
+     * The fastest the "watch the computer play" option can go
+     */
+    private static final int MAX_MOVES_PER_SECOND = 10000;
+
+    /**
+     * The session's metrics (see Metrics): how long each kind of move takes, how many moves were illegal, and how long
+     * the card table takes to catch up with the moves and draw them
+     */
+    private static final Metrics.Histogram DEAL_TIME = Metrics.histogram("game.deal");
+    private static final Metrics.Histogram MERGE_TIME = Metrics.histogram("game.merge");
+    private static final Metrics.Histogram PLAY_FOR_ME_TIME = Metrics.histogram("game.playForMe");
+    private static final Metrics.Histogram SOLVE_TIME = Metrics.histogram("game.solve");
+    private static final Metrics.Counter ILLEGAL_MOVES = Metrics.counter("game.illegalMoves");
+    private static final Metrics.Histogram REDRAW_WAIT = Metrics.histogram("table.redraw.wait");
+    private static final Metrics.Histogram REDRAW_TIME = Metrics.histogram("table.redraw.draw");
+
     /**
      * Constructor to instantiate all the objects required to run the game
-     * It also calls the checkDeckCover so that the correct card cover is loaded from the beginning
-     * @throws FileNotFoundException if the TurnoverDeck object cannot find the card file
+     * The score store is opened (and the card cover picked) once the session starts, see openScoreStore()
+     * @throws IOException if the card file cannot be found (a FileNotFoundException) or isn't a valid pack (a DeckFormatException)
      */
-    public Game() throws FileNotFoundException{
+    public Game() throws IOException {
         inputScanner = new Scanner(System.in);
-        currentPiles = new TableDeck();
-        scoreFile = new ScoreFile();
         tDeck = new TurnoverDeck();
+        engine = new Engine(tDeck);
+        template = new byte[engine.packSize()];
+        engine.getDeal(template);
+        strategy = new GreedyLeftmostStrategy();
+    }
+
+    /**
+     * Method to open the score store for this session, and pick the card cover from the top score.
+     * It is called from the command line thread rather than the constructor, since main() and JavaFX each make a Game,
+     * and only the one JavaFX starts plays (and closes its session again at the end)
+     */
+    private void openScoreStore() {
+        try {
+            scoreStore = ScoreService.openSession(); //every game in this JVM saves through the same score service
+        } catch (IOException e) { //if the score log can't be opened, the old text score file is used instead
+            System.err.println("The score log could not be opened (" + e.getMessage() + "), the score file will be used instead.");
+            scoreStore = new ScoreFile();
+        }
         checkDeckCover();
     }
 
+    /**
+     * Method to open the game archive for this session, so there is only ever one writer per game played.
+     * Like the score store, it is opened from the command line thread, which closes it again at the end
+     */
+    private void openArchive() {
+        try {
+            recorder = GameRecord.openArchive(template);
+        } catch (IOException e) { //the game can still be played without being archived
+            System.err.println("The game archive could not be opened (" + e.getMessage() + "), this game won't be archived.");
+        }
+    }
+
+    /**
+     * Method to point the game's gauges at this session's engine and start dumping the metrics if they were asked for.
+     * Like the score store, this is done once, from the command line thread, which finishes the dumps again at the end
+     */
+    private void startMetrics() {
+        //the gauges are read from the JMX and dump threads, so they only use the engine's published counts
+        Metrics.gauge("game.piles", engine::getPublishedPiles);
+        Metrics.gauge("game.cardsLeft", engine::getPublishedCardsLeft);
+        Metrics.gauge("game.movesPlayed", engine::getPublishedMovesPlayed);
+        Metrics.gauge("engine.movesTested", engine::getMovesTested);
+        try {
+            Metrics.startFromProperties();
+        } catch (IOException | IllegalArgumentException e) { //the game can still be played without the dumps (the metrics are still in JMX)
+            System.err.println("The metrics won't be dumped (" + e.getMessage() + ").");
+        }
+    }
+
     /**  FLAIR METHOD
      *
      *  This method is used to check the top score in the file, and then change the face-downn card cover depending on the score
@@ -63,7 +148,7 @@ public class Game extends Application {
      *  If the highest score is the best possible score, the egyptian-style cover is replaced with a special card cover
      */
     private void checkDeckCover(){
-        int score = scoreFile.getTopScore();
+        int score = scoreStore.getTopScore();
         if (score != -1){
             if (score == 1){
                 tDeck.setCardCover(specialCover);
@@ -144,105 +229,81 @@ public class Game extends Application {
         return input;
     }
 
-    /**
-     * Method to merge one card with another, given by their index.
-     * If they are deemed merge-able, then this is done within the TableDeck class, for cohesion
-     *
-     * @param cardToMove hold the index of the card to merge on top of the othe card
-     * @param numCardsOver holds the number of cards over that the bottom card is, so that it may be found
-     * @throws IllegalMoveException throws if the two cards aren't deemed merge-able
-     */
-    private void moveCards(int cardToMove, int numCardsOver) throws IllegalMoveException {
-        int mergeCardIndex = cardToMove - numCardsOver;
-
-        Card topCard = currentPiles.getCard(cardToMove);
-        Card cardToMerge = currentPiles.getCard(mergeCardIndex);
-
-        if (topCard.equals(cardToMerge)) {
-            currentPiles.popMergeCards(cardToMove, mergeCardIndex);
-        } else {
-            throw new IllegalMoveException("Illegal move: The cards aren't of the same suit or value, so cannot be stacked");
-        }
-    }
-
     /**
      * Method to move the last card onto the card that came before it.
-     * It does this using the moveCards function, but beforehand it checks if there are two cards on the table to move first
-     * @throws IllegalMoveException if there aren't enough cards on the table to perform the move
+     * The engine checks if there are two cards on the table to move first
+     * @throws IllegalMoveException if there aren't enough cards on the table to perform the move, or they can't be stacked
      */
     private void moveOntoPrevious() throws IllegalMoveException {
-        if (currentPiles.numCards() < 2) {
-            throw new IllegalMoveException("There needs to be at least 2 piles on the table to make this move.");
-        }
-
-        moveCards(currentPiles.numCards() - 1, 1);
+        long start = System.nanoTime();
+        engine.moveOntoPrevious();
+        MERGE_TIME.recordSince(start);
     }
 
     /**
      * Method to move the last card onto the card that is 2 across from it.
-     * It does this using the moveCards function, but beforehand it checks if there are enough cards to skip over on the table first
-     * @throws IllegalMoveException if there aren't enough cards on the table to perform the move
+     * The engine checks if there are enough cards to skip over on the table first
+     * @throws IllegalMoveException if there aren't enough cards on the table to perform the move, or they can't be stacked
      */
     private void moveOverTwo() throws IllegalMoveException {
-        if (currentPiles.numCards() < 4) {
-            throw new IllegalMoveException("There needs to be at least 4 piles on the table to make this move.");
-        }
-
-        moveCards(currentPiles.numCards() - 1, 3);
+        long start = System.nanoTime();
+        engine.moveOverTwo();
+        MERGE_TIME.recordSince(start);
     }
 
     /**
-     * Method to let the computer perform a move for the user.
-     * If the computer cannot find a move to play, then it draws a card instead
+     * Method to let the computer perform a move for the user, using the chosen strategy.
+     * If the strategy cannot find a merge to play, then it draws a card instead
      * Since this method means the computer helps the player, it is considered cheating,
      * so the boolean is set to true and the score will not be saved
      * @throws IllegalMoveException if there are no more moves to play and no more cards to draw
      */
     private void playForMeOnce() throws IllegalMoveException {
         cheated = true;
-        if (!testAmalgamate()) { //checks if there are any cards to merge
+        long start = System.nanoTime();
+        int move = strategy.chooseMove(engine);
+        if (move != Move.NONE && !Move.isDeal(move)) {
+            engine.play(move);
+        } else { //there are no cards to merge
             try {
                 dealCard();
             } catch (IllegalMoveException e) { //if this is the first move of the game and the player hasn't shuffled,
                 // the computer cannot do a move and waits for the player to shuffle first
-                if (!tDeck.isShuffled()) {
+                if (!engine.isShuffled()) {
                     System.out.println(e.getMessage());
                 } else {
                     throw new IllegalMoveException("No more moves available");
                 }
             }
         }
+        PLAY_FOR_ME_TIME.recordSince(start);
     }
 
     /**
-     * Method to check if an amalgamate move is possible and the furthest move at that
-     * If it is, it completes the move and returns back to the calling function
-     *
-     * @return true if it completed a move, false if there were none
+     * Method to let the player choose the strategy used by the "play for me" options.
+     * The time each strategy has taken per move so far is shown, so the player can see how much slower the cleverer ones are
      */
-    private boolean testAmalgamate() {
-        int totalCurrentPiles = currentPiles.numCards() - 1;
-        Card currentCard;
-        Card cardToCompare;
-
-        for (int i = 0; i < totalCurrentPiles; i++) { //starts checking from the beginning rather than the end
-            currentCard = currentPiles.getCard(i);
-
-            for (int j = i + 3; j > i; j -= 2) { //starts by looking at the "furthest move" for that card
-                cardToCompare = currentPiles.getCard(j);
-
-                if (currentCard.equals(cardToCompare)) {
-                    try {
-                        amalgamate(j, i);
-                        return true;
-                    } catch (IllegalMoveException ignored) { //this is ignored because it will never show up
-                                                                // - all risks are checked beforehand (i.e. card distance and equality)
+    private void chooseStrategy() {
+        System.out.println("| Current strategy: " + strategy);
+        System.out.println("| Choose a strategy:");
+        String[] options = new String[Strategy.NAMES.length];
+        for (int i = 0; i < Strategy.NAMES.length; i++) {
+            options[i] = String.valueOf(i + 1);
+            System.out.println("| " + options[i] + "  -  " + Strategy.NAMES[i]);
+        }
 
-                    }
-                }
-            }
+        String name = Strategy.NAMES[Integer.parseInt(readOptionInput(options)) - 1];
+        if (name.equals(RolloutStrategy.NAME)) {
+            System.out.println("Enter the number of rollouts to play per move (at least 1):");
+            int budget;
+            do {
+                budget = readIntInput();
+            } while (budget < 1);
+            strategy = new RolloutStrategy(budget);
+        } else {
+            strategy = Strategy.forName(name);
         }
-        return false;
+        System.out.println("\"Play for me\" will now use the " + strategy.getName() + " strategy.");
     }
 
     /** FLAIR FUNCTION - i think?
@@ -268,52 +329,131 @@ public class Game extends Application {
     }
 
     /**
-     * Method to deal a card from the TurnoverDeck
-     * The card is then placed on the TableDeck
-     * If the card drawn was the last card, it conveys this to the CardTable object to remove the face-down card cover from the stage
-     * @throws IllegalMoveException if a) the user hasn't shuffled the cards yet or b) there are no more cards to draw
+     * Method to let the player watch the computer play at a chosen speed, from 1 up to MAX_MOVES_PER_SECOND moves per second.
+     * The table is drawn once per frame by the card table's AnimationTimer, so when the moves are faster than the screen,
+     * the frames in between are skipped rather than holding up the GUI, and the frames and moves per second are shown on the table
+     * Since the computer is playing for the player, it is considered cheating, so the score will not be saved
      */
-    private void dealCard() throws IllegalMoveException {
-        if (tDeck.isShuffled()) {
-            gameStarted = true;
-        } else {
-            throw new IllegalMoveException("The cards must be shuffled at least once before starting.");
+    private void watchAutoPlay() {
+        if (!engine.isShuffled()) {
+            System.out.println("The cards must be shuffled at least once before starting.");
+            return;
         }
-        if (tDeck.numCards() > 0) {
-            Card newCard = tDeck.nextCard();
-            currentPiles.addCard(newCard);
-        } else {
-            throw new IllegalMoveException("There are no more cards in the pack.");
-        }
-        if (tDeck.numCards() == 0) {
-            cardTable.allDone();
+        System.out.println("Enter the number of moves to play per second (1 - " + MAX_MOVES_PER_SECOND + "):");
+        int movesPerSecond;
+        do {
+            movesPerSecond = readIntInput();
+        } while (movesPerSecond < 1 || movesPerSecond > MAX_MOVES_PER_SECOND);
+        System.out.println("Enter the number of moves you want the computer to play (0 to keep playing until there are no moves left):");
+        int numMoves;
+        do {
+            numMoves = readIntInput();
+        } while (numMoves < 0);
+
+        int movesPlayed = 0;
+        cardTable.startAnimation();
+        long start = System.nanoTime();
+        try {
+            while (numMoves == 0 || movesPlayed < numMoves) {
+                //each move has a set time to be played, so if the computer falls behind it catches up straight away rather than waiting
+                long wait = start + (long) (movesPlayed * 1e9 / movesPerSecond) - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                playForMeOnce();
+                movesPlayed++;
+            }
+        } catch (IllegalMoveException e) {
+            System.out.println("No more moves available.");
+        } finally {
+            cardTable.stopAnimation();
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.println("Played " + movesPlayed + " moves in " + String.format("%.2f", seconds) + " seconds ("
+                    + String.format("%.0f", movesPlayed / Math.max(seconds, 1e-9)) + " moves per second).");
         }
     }
 
+    /**
+     * Method to deal a card from the pack onto the table
+     * If the card drawn was the last card, the engine tells the CardTable object (through its listener) to remove the face-down card cover from the stage
+     * @throws IllegalMoveException if a) the user hasn't shuffled the cards yet or b) there are no more cards to draw
+     */
+    private void dealCard() throws IllegalMoveException {
+        long start = System.nanoTime();
+        engine.deal();
+        DEAL_TIME.recordSince(start);
+        gameStarted = true;
+    }
+
 
     /**
      * Method to amalgamate piles in the middle.
-     * Before amalgamating, it performs a series of checks to make sure the move is valid
+     * Before amalgamating, the engine performs a series of checks to make sure the move is valid
      * @param pileLocation holds the index of the pile to move
      * @param moveLocation holds the index of the pile to merge onto
      * @throws IllegalMoveException if the indexes are outside the range of pile indexes, the user tries to stack backwards,
-     *      or the distances between the piles means the move is illegal
+     *      the distances between the piles means the move is illegal, or the cards can't be stacked
      */
     private void amalgamate(int pileLocation, int moveLocation) throws IllegalMoveException {
-        if (pileLocation >= currentPiles.numCards() || moveLocation < 0) {
-            throw new IllegalMoveException("Illegal move: Pile numbers cannot be outside the range of piles on the table.");
-        }
+        long start = System.nanoTime();
+        engine.move(pileLocation, moveLocation);
+        MERGE_TIME.recordSince(start);
+    }
 
-        int numPilesOver = pileLocation - moveLocation;
+    /**
+     * Method to undo the last move (a deal or a merge).
+     * Since this lets the player take back a bad move, it is considered cheating, so the score will not be saved
+     * @throws IllegalMoveException if there are no moves to undo
+     */
+    private void undoMove() throws IllegalMoveException {
+        engine.undo();
+        cheated = true;
+        System.out.println("The last move has been undone.");
+    }
+
+    /**
+     * Method to play the last undone move again
+     * @throws IllegalMoveException if there are no undone moves to redo
+     */
+    private void redoMove() throws IllegalMoveException {
+        engine.redo();
+        System.out.println("The move has been played again.");
+    }
+
+    /**
+     * Method to let the solver search for the best result that can be reached from the current position.
+     * The result is shown to the player, who can then choose to let the computer play the solution for them.
+     * Since this helps the player, it is considered cheating, so the score will not be saved
+     * @throws IllegalMoveException if the cards haven't been shuffled yet
+     */
+    private void solveFromHere() throws IllegalMoveException {
+        if (!engine.isShuffled()) {
+            throw new IllegalMoveException("The cards must be shuffled at least once before starting.");
+        }
+        cheated = true;
 
-        if (numPilesOver < 0) {
-            throw new IllegalMoveException("Illegal move: You cannot stack an earlier pile onto a later pile.");
+        System.out.println("Searching for the best result...");
+        long start = System.nanoTime();
+        if (solver == null) {
+            solver = new Solver();
         }
+        Solution solution = solver.solve(engine);
+        SOLVE_TIME.recordSince(start);
+        System.out.print(solution);
 
-        if (numPilesOver == 1 || numPilesOver == 3) {
-            moveCards(pileLocation, numPilesOver);
-        } else {
-            throw new IllegalMoveException("Cannot move piles: must be either 1 apart or 3 apart");
+        if (solution.getMoves().length == 0) {
+            return;
+        }
+        System.out.println("Would you like the computer to play these moves for you? (Y/N)");
+        if (readOptionInput("Y", "N").equals("Y")) {
+            for (int move : solution.getMoves()) {
+                if (Move.isDeal(move)) {
+                    dealCard();
+                } else {
+                    engine.play(move);
+                }
+            }
+            System.out.println("Played " + solution.getMoves().length + " moves.");
         }
     }
 
@@ -321,9 +461,21 @@ public class Game extends Application {
      * Method to print the top 10 scores in the score file
      * It only prints up to the number of actual results in the file
      * i.e. if only 6 scores, rank up to 6 rather than 10
+     * If there are more than 10 scores, the player can page through the rest 10 at a time
      */
     private void showTop10() {
-        System.out.println(scoreFile.toString());
+        int pageSize = Leaderboard.DEFAULT_SIZE;
+        System.out.println(scoreStore.toString());
+
+        int page = 1;
+        while (page * pageSize < scoreStore.numScores()) {
+            System.out.println("Enter N to see the next " + pageSize + " scores, or anything else to go back to the menu:");
+            if (!inputScanner.nextLine().equalsIgnoreCase("N")) {
+                break;
+            }
+            System.out.println(scoreStore.pageToString(page, pageSize));
+            page++;
+        }
     }
 
     /**
@@ -334,18 +486,21 @@ public class Game extends Application {
     private boolean runMenu() {
         String response;
         printMenuOptions();
-        response = readOptionInput("1", "2", "3", "4", "5", "6", "7", "8", "9", "10", "Q");
+        response = readOptionInput("1", "2", "3", "4", "5", "6", "7", "8", "9", "10", "11", "12", "13", "14", "15", "Q");
         try {
             switch (response) {
                 case "1":
-                    System.out.print(tDeck);
+                    System.out.print(engine.packToString());
                     break;
 
                 case "2":
                     if (gameStarted) {
                         System.out.println("You cannot shuffle the cards once the game has started.");
+                    } else if (tDeck.isFixedDeal()) {
+                        System.out.println("These cards are a pre-shuffled deal, so everyone plays them in the same order and they cannot be shuffled.");
                     } else {
-                        tDeck.shuffle();
+                        engine.newGame(template, template.length); //shuffles from the loaded order, so the seed alone makes the deal again
+                        engine.shuffle();
                         System.out.println("The cards have been shuffled.");
                     }
                     break;
@@ -371,7 +526,7 @@ public class Game extends Application {
                     break;
 
                 case "7":
-                    System.out.print(currentPiles);
+                    System.out.print(engine.getTable());
                     break;
 
                 case "8":
@@ -386,12 +541,33 @@ public class Game extends Application {
                     showTop10();
                     break;
 
+                case "11":
+                    solveFromHere();
+                    break;
+
+                case "12":
+                    chooseStrategy();
+                    break;
+
+                case "13":
+                    watchAutoPlay();
+                    break;
+
+                case "14":
+                    undoMove();
+                    break;
+
+                case "15":
+                    redoMove();
+                    break;
+
                 case "Q":
                     return false;
             }
         } catch (IllegalMoveException e) { //putting the whole switch statement inside a try-catch block means that only one
                                                 //block is needed to catch all the forms of illegalmoveException that may arise (polymorphism)
             System.out.println(e.getMessage());
+            ILLEGAL_MOVES.increment();
         }
 
         System.out.println();
@@ -399,11 +575,11 @@ public class Game extends Application {
     }
 
     /**
-     * Method to save the player's score to the scoreFile
+     * Method to save the player's score to the score store
      * The player enters their name (must be alphanumeric otherwise they will be asked to enter a different name that is alphanumeric)
      */
     private void saveScore() {
-        int pilesLeft = currentPiles.numCards() + tDeck.numCards();
+        int pilesLeft = engine.pilesLeft();
         String playerName = null;
         boolean badName = true;
         Pattern p = Pattern.compile("^[a-zA-Z0-9]*$");
@@ -415,14 +591,22 @@ public class Game extends Application {
             if (playerName.isEmpty() || (!p.matcher(playerName).find())) {
                 System.out.println("Name must be contain numbers and letters ONLY with no spaces.");
                 System.out.println();
+            } else if (playerName.length() > ScoreStore.MAX_NAME_LENGTH) { //longer names won't fit in the mapped score log's records
+                System.out.println("Name must be " + ScoreStore.MAX_NAME_LENGTH + " characters or fewer.");
+                System.out.println();
             } else {
                 badName = false;
             }
         }
 
         try {
-            scoreFile.addScore(new Score(pilesLeft, playerName));
-            System.out.println("| SCORE SAVED");
+            int rank = scoreStore.rankOf(pilesLeft);
+            Score previousBest = scoreStore.bestFor(playerName);
+            scoreStore.addScore(new Score(pilesLeft, playerName));
+            System.out.println("| SCORE SAVED - ranked " + rank + " out of " + scoreStore.numScores());
+            if (previousBest != null) {
+                System.out.println("| Your best score before this game was " + previousBest.getResult() + " piles left");
+            }
         } catch (IOException e) { //if there is an error saving the score (due to IO error), this is conveyed to the user
             System.err.println("An error occurred whilst saving the score");
         }
@@ -463,11 +647,16 @@ public class Game extends Application {
         System.out.println("| 5  -  Make a move (last card onto pile skipping over 2 piles)");
         System.out.println("| 6  -  Amalgamate piles in middle (by giving pile numbers - start with 1)");
         System.out.println("| 7  -  Print displayed cards in text form");
-        System.out.println("| 8  -  Play for me once (if 2 possible moves, makes the 'furthest' one)");
-        System.out.println("| 9  -  Play for me many (if 2 possible moves, makes the 'furthest' one)");
+        System.out.println("| 8  -  Play for me once (using the " + strategy.getName() + " strategy)");
+        System.out.println("| 9  -  Play for me many (using the " + strategy.getName() + " strategy)");
         System.out.println("| 10 -  Show top 10 scores");
+        System.out.println("| 11 -  Solve from here (shows the best possible result, and can play it for you)");
+        System.out.println("| 12 -  Choose the \"play for me\" strategy");
+        System.out.println("| 13 -  Watch the computer play (using the " + strategy.getName() + " strategy, at up to " + MAX_MOVES_PER_SECOND + " moves per second)");
+        System.out.println("| 14 -  Undo the last move");
+        System.out.println("| 15 -  Redo the last undone move");
         System.out.println("| Q  -  Quit game (and save score)");
-        System.out.println("| NOTE: USING \"PLAY FOR ME\" OPTIONS WILL MEAN YOU CANNOT SAVE YOUR SCORE");
+        System.out.println("| NOTE: USING \"PLAY FOR ME\", \"WATCH\", \"SOLVE\" OR \"UNDO\" OPTIONS WILL MEAN YOU CANNOT SAVE YOUR SCORE");
     }
 
     /**
@@ -478,6 +667,10 @@ public class Game extends Application {
     public void start(Stage stage){
 
         cardTable = new CardTable(stage);
+        cardTable.setRedrawTimer((waitNanos, drawNanos, cardsDrawn) -> {
+            REDRAW_WAIT.record(waitNanos);
+            REDRAW_TIME.record(drawNanos);
+        });
 
 
         // The interaction with this game is from a command line
@@ -486,14 +679,37 @@ public class Game extends Application {
         Runnable commandLineTask = () -> {
             // REPLACE THE FOLLOWING EXAMPLE WITH YOUR CODE
 
+            openScoreStore();
+            openArchive();
+            startMetrics();
             printTitle();
-            do {
-                cardTable.cardDisplay(currentPiles.getCardStrings(), tDeck.getCardCover());
-            } while (runMenu());
+            //the table is drawn once, and after that the engine tells the card table about each change as it happens,
+            // so options that don't change the table (like printing the pack) don't redraw anything
+            cardTable.cardDisplay(engine.getTable().getCardStrings(), tDeck.getCardCover());
+            engine.setListener(new CardTableListener(cardTable, tDeck.getCardCover()));
+            while (runMenu()) {
+                //keeps running the menu until the player quits
+            }
 
             if (gameStarted && !cheated) {
                 saveScore();
             }
+            if (recorder != null) {
+                try {
+                    if (gameStarted) {
+                        recorder.write(engine);
+                    }
+                    recorder.close();
+                } catch (IOException e) {
+                    System.err.println("An error occurred whilst archiving the game");
+                }
+            }
+            try {
+                scoreStore.close();
+            } catch (IOException e) {
+                System.err.println("An error occurred whilst closing the score store");
+            }
+            Metrics.finishDumping();
             endMessage();
         };
         Thread commandLineThread = new Thread(commandLineTask);
@@ -511,6 +727,9 @@ public class Game extends Application {
             game.playGame();
         } catch (FileNotFoundException e){ //if there is a game-breaking bug (card file not found), this is conveyed and the program ends
             System.err.println("It seems that the file used to load the cards cannot be found, and thus the game cannot run.");
+        } catch (IOException e) { //the card file was found but couldn't be read (e.g. a DeckFormatException lists every bad line)
+            System.err.println(e.getMessage());
+            System.err.println("The cards could not be loaded, and thus the game cannot run.");
         }
 
         System.out.println("GAME OVER");
@@ -0,0 +1,584 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Class to archive every game played in a compact binary file, and to replay the archive through the engine.
+ * A game is stored as its deal and the moves played, which is all that is needed to play it again.
+ * Most deals are shuffled from the pack with a seed, so they are stored as the generator and the 64 bit seed.
+ * The pack they were shuffled from is written once per session rather than with every game.
+ * A pre-shuffled deal (e.g. from a deal file) has its cards stored instead.
+ * Each move is a varint of one byte (0 is a deal, and 1 + 2 * pile + (0 for 1 over, 1 for 3 over) is a merge),
+ * so a whole game usually takes about 100 bytes.
+ *
+ * The file is "PGR1" followed by records, each of which is a varint length and then:
+ * - a pack: [byte 0][byte number of cards][packed cards] - the pack the following seeded games were shuffled from
+ * - a seeded game: [byte 1][byte generator, an index into DeckRandom.NAMES][long seed][varint piles left][varint number of moves][moves]
+ * - a dealt game: [byte 2][byte number of cards][packed cards][varint piles left][varint number of moves][moves]
+ * The file is only ever appended to, a buffer of records at a time, so a game is never rewritten once it has been saved.
+ * If the game is stopped halfway through a write, the reader stops at the cut-off record and reports it,
+ * and the next writer to open the file cuts it off at the end of the last complete record before adding anything after it.
+ *
+ * Running it from the command line plays or replays an archive:
+ * java GameRecord generate [file] [number of games] [seed] [strategy name]
+ * java GameRecord replay [file] [list]
+ *
+ * @author Owain Gibson
+ * @version 1.0
+ */
+public class GameRecord {
+    /**
+     * The system property used to pick the file every game is archived in ("off" to not archive any games)
+     */
+    public static final String RECORD_PROPERTY = "patience.record";
+
+    /**
+     * The file every game is archived in by default
+     */
+    public static final String DEFAULT_FILE_NAME = "../games.pgr";
+
+    private static final int MAGIC = 0x50475231; //"PGR1"
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final byte PACK = 0;
+    private static final byte SEEDED_GAME = 1;
+    private static final byte DEALT_GAME = 2;
+
+    /**
+     * The most bytes a record can take: the kind, a full pack, two varints and a varint for every move a game can have
+     */
+    private static final int MAX_RECORD_SIZE = 2 + TableDeck.MAX_PILES + 5 + 5 + Engine.MAX_HISTORY * 5;
+
+    /**
+     * Private because this class is only used for its static methods and its writer and reader
+     */
+    private GameRecord() {
+    }
+
+    /**
+     * Method to open the writer for the archive picked with RECORD_PROPERTY
+     * @param template holds the packed cards of the pack before it is shuffled
+     * @return returns the writer, or null if games aren't being archived
+     * @throws IOException if the archive cannot be opened, or isn't a game record file
+     */
+    public static Writer openArchive(byte[] template) throws IOException {
+        String fileName = System.getProperty(RECORD_PROPERTY, DEFAULT_FILE_NAME);
+        if (fileName.equalsIgnoreCase("off")) {
+            return null;
+        }
+        return new Writer(Paths.get(fileName), template);
+    }
+
+    /**
+     * Method to pack a move into the number stored in a record
+     * @param move holds the packed move (see the Move class)
+     * @return returns the number
+     */
+    static int encodeMove(int move) {
+        if (Move.isDeal(move)) {
+            return 0;
+        }
+        return 1 + 2 * Move.pileIndex(move) + (Move.numPilesOver(move) == 3 ? 1 : 0);
+    }
+
+    /**
+     * Method to unpack a move from the number stored in a record
+     * @param code holds the number
+     * @return returns the packed move (see the Move class)
+     */
+    static int decodeMove(int code) {
+        if (code == 0) {
+            return Move.DEAL;
+        }
+        return Move.merge((code - 1) >>> 1, ((code - 1) & 1) == 0 ? 1 : 3);
+    }
+
+    private static void putVarint(ByteBuffer buffer, int value) {
+        while ((value & ~0x7f) != 0) {
+            buffer.put((byte) ((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    /**
+     * Method to read a varint
+     * @param buffer holds the buffer to read from
+     * @return returns the number, or -1 if the varint runs off the end of the buffer or is too long
+     */
+    private static int getVarint(ByteBuffer buffer) {
+        int value = 0;
+        for (int shift = 0; shift < 32 && buffer.hasRemaining(); shift += 7) {
+            byte b = buffer.get();
+            value |= (b & 0x7f) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Class to append games to an archive. The records are put together in a buffer and written to the end of the file
+     * when the buffer is full or the writer is flushed, so archiving a game costs no IO until then
+     */
+    public static class Writer implements AutoCloseable {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        private final byte[] template;
+        private final byte[] deal = new byte[TableDeck.MAX_PILES];
+        private final byte[] reshuffled = new byte[TableDeck.MAX_PILES];
+        private boolean templateWritten;
+        private long numGames;
+
+        /**
+         * Constructor to open an archive for appending, making a new one if it doesn't exist.
+         * If the last record was cut off (e.g. the game was killed partway through a flush), it is dropped first,
+         * otherwise the new records would be read as the rest of it and nothing after it could be replayed
+         * @param path holds the file
+         * @param template holds the packed cards of the pack that seeded games are shuffled from (or null if there isn't one)
+         * @throws IOException if the file cannot be opened, or isn't a game record file
+         */
+        public Writer(Path path, byte[] template) throws IOException {
+            this.template = template == null ? null : template.clone();
+            if (Files.exists(path) && Files.size(path) > 0) { //only a game record file can be added to
+                try (FileChannel existing = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                    ByteBuffer magic = ByteBuffer.allocate(4);
+                    existing.read(magic, 0);
+                    if (magic.position() < 4 || magic.getInt(0) != MAGIC) {
+                        throw new IOException(path + " isn't a game record file");
+                    }
+                    long validEnd = endOfCompleteRecords(existing);
+                    if (validEnd < existing.size()) {
+                        System.err.println("The end of the game archive was cut off, the last game in it could not be kept.");
+                        existing.truncate(validEnd);
+                    }
+                }
+            } else {
+                buffer.putInt(MAGIC);
+            }
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+
+        /**
+         * Method to find where the last complete record of an archive ends, by following the record lengths from the start
+         * of the file a buffer at a time (the same way the reader steps from record to record)
+         * @param channel holds the archive, which must start with the magic number
+         * @return returns the position just after the last complete record
+         * @throws IOException if there is an IO error
+         */
+        private static long endOfCompleteRecords(FileChannel channel) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            long validEnd = 4;
+            while (true) {
+                buffer.clear();
+                while (buffer.hasRemaining() && channel.read(buffer, validEnd + buffer.position()) >= 0) {
+                    //keeps reading until the buffer is full or the file ends
+                }
+                buffer.flip();
+                long chunkStart = validEnd;
+                while (buffer.hasRemaining()) {
+                    int recordStart = buffer.position();
+                    int length = getVarint(buffer);
+                    if (length == 0 || length > MAX_RECORD_SIZE) {
+                        return validEnd; //not a length any record can have, so the record is damaged
+                    }
+                    if (length == -1 || length > buffer.remaining()) {
+                        buffer.position(recordStart); //runs past the buffer, so it is read again at the start of the next one
+                        break;
+                    }
+                    buffer.position(buffer.position() + length);
+                    validEnd = chunkStart + buffer.position();
+                }
+                if (validEnd == chunkStart) { //the buffer is far bigger than a record, so one that doesn't fit must be cut off
+                    return validEnd;
+                }
+            }
+        }
+
+        /**
+         * Method to archive a game as it is now (the moves that have been undone aren't saved).
+         * If the deal is the template shuffled from the engine's shuffle seed, only the seed is saved, otherwise the whole deal is
+         * @param engine holds the game
+         * @throws IOException if there is an IO error
+         */
+        public void write(Engine engine) throws IOException {
+            if (buffer.remaining() < 2 * MAX_RECORD_SIZE) {
+                flush();
+            }
+            int numCards = engine.getDeal(deal);
+            long seed = engine.getShuffleSeed();
+            String generator = DeckRandom.getDefaultName();
+            int generatorIndex = Arrays.asList(DeckRandom.NAMES).indexOf(generator);
+            boolean seeded = seed != 0 && generatorIndex != -1 && template != null && template.length == numCards;
+            if (seeded) { //checks that the seed really does make this deal before relying on it
+                System.arraycopy(template, 0, reshuffled, 0, numCards);
+                Shuffler.shuffle(reshuffled, 0, numCards, DeckRandom.forName(generator, seed));
+                for (int i = 0; i < numCards && seeded; i++) {
+                    seeded = reshuffled[i] == deal[i];
+                }
+            }
+
+            if (seeded && !templateWritten) {
+                putVarint(buffer, 2 + template.length);
+                buffer.put(PACK).put((byte) template.length).put(template);
+                templateWritten = true;
+            }
+
+            int lengthAt = buffer.position();
+            buffer.put((byte) 0); //the length is filled in once the record is written, and always fits in 2 bytes
+            buffer.put((byte) 0);
+            int start = buffer.position();
+            if (seeded) {
+                buffer.put(SEEDED_GAME).put((byte) generatorIndex).putLong(seed);
+            } else {
+                buffer.put(DEALT_GAME).put((byte) numCards).put(deal, 0, numCards);
+            }
+            putVarint(buffer, engine.pilesLeft());
+            int numMoves = engine.movesPlayed();
+            putVarint(buffer, numMoves);
+            for (int i = 0; i < numMoves; i++) {
+                putVarint(buffer, encodeMove(engine.getMove(i)));
+            }
+            int length = buffer.position() - start;
+            buffer.put(lengthAt, (byte) ((length & 0x7f) | 0x80));
+            buffer.put(lengthAt + 1, (byte) (length >>> 7));
+            numGames++;
+        }
+
+        /**
+         * Method to write every buffered record to the end of the file
+         * @throws IOException if there is an IO error
+         */
+        public void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        /**
+         * Method to return the number of games archived by this writer
+         * @return returns the number
+         */
+        public long getNumGames() {
+            return numGames;
+        }
+
+        /**
+         * Method to write every buffered record and close the file
+         * @throws IOException if there is an IO error
+         */
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * Class to replay an archive through an engine one game at a time.
+     * The file is streamed through a buffer, so an archive of millions of games never has to fit in memory
+     */
+    public static class Reader implements AutoCloseable {
+        private final Path path;
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private final DeckRandom[] generators = new DeckRandom[DeckRandom.NAMES.length];
+        private final byte[] deal = new byte[TableDeck.MAX_PILES];
+        private byte[] template;
+        private long numGames;
+        private long recordStart; //the position in the file of the record being read, for error messages
+        private boolean cutOff;
+
+        private boolean seeded;
+        private long seed;
+        private int numMoves;
+        private int recordedPilesLeft;
+
+        /**
+         * Constructor to open an archive for replaying
+         * @param path holds the file
+         * @throws IOException if the file cannot be read, or isn't a game record file
+         */
+        public Reader(Path path) throws IOException {
+            this.path = path;
+            channel = FileChannel.open(path, StandardOpenOption.READ);
+            buffer.limit(0);
+            if (!fill(4) || buffer.getInt() != MAGIC) {
+                channel.close();
+                throw new IOException(path + " isn't a game record file");
+            }
+            recordStart = 4;
+        }
+
+        /**
+         * Method to make sure the buffer holds at least the given number of bytes, reading more of the file if it has to
+         * @param needed holds the number of bytes needed
+         * @return returns false if the file ends first
+         * @throws IOException if there is an IO error
+         */
+        private boolean fill(int needed) throws IOException {
+            if (buffer.remaining() >= needed) {
+                return true;
+            }
+            buffer.compact();
+            while (buffer.position() < needed && channel.read(buffer) >= 0) {
+                //keeps reading until there is enough
+            }
+            buffer.flip();
+            return buffer.remaining() >= needed;
+        }
+
+        /**
+         * Method to replay the next game in the archive. The engine is left at the end of the game, with all its moves in its move log
+         * @param engine holds the engine to replay the game in
+         * @return returns false if there are no more games (see isCutOff() to check if the last record was cut off)
+         * @throws IOException if there is an IO error, or a record is broken (its deal isn't valid, it has an illegal move,
+         * or it doesn't end with the piles it says it does)
+         */
+        public boolean next(Engine engine) throws IOException {
+            while (true) {
+                if (!fill(1)) {
+                    return false;
+                }
+                fill(2);
+                int lengthAt = buffer.position();
+                int length = getVarint(buffer);
+                if (length < 0 || length > MAX_RECORD_SIZE) {
+                    if (!buffer.hasRemaining() && length < 0) { //the file ends partway through the length
+                        cutOff = true;
+                        return false;
+                    }
+                    throw broken("has a bad length");
+                }
+                long recordSize = buffer.position() - lengthAt + length;
+                if (!fill(length)) {
+                    cutOff = true;
+                    return false;
+                }
+                int end = buffer.position() + length;
+                ByteBuffer record = buffer.duplicate();
+                record.limit(end);
+                buffer.position(end);
+                boolean game;
+                try {
+                    game = readRecord(record, engine);
+                } catch (RuntimeException e) { //a record that is too short, or has a card or move that isn't valid
+                    throw broken("is broken (" + e + ")");
+                }
+                recordStart += recordSize;
+                if (game) {
+                    numGames++;
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * Method to read one record
+         * @param record holds the record, without its length
+         * @param engine holds the engine to replay a game in
+         * @return returns true if the record was a game, or false if it was a pack
+         * @throws IOException if the record is broken
+         */
+        private boolean readRecord(ByteBuffer record, Engine engine) throws IOException {
+            byte kind = record.get();
+            int numCards;
+            if (kind == PACK) {
+                numCards = record.get();
+                template = new byte[numCards];
+                record.get(template);
+                checkCards(template, numCards);
+                return false;
+            } else if (kind == SEEDED_GAME) {
+                if (template == null) {
+                    throw broken("is a seeded game with no pack before it");
+                }
+                int generatorIndex = record.get();
+                seed = record.getLong();
+                seeded = true;
+                numCards = template.length;
+                System.arraycopy(template, 0, deal, 0, numCards);
+                if (generators[generatorIndex] == null) {
+                    generators[generatorIndex] = DeckRandom.forName(DeckRandom.NAMES[generatorIndex], seed);
+                } else {
+                    generators[generatorIndex].setSeed(seed);
+                }
+                Shuffler.shuffle(deal, 0, numCards, generators[generatorIndex]);
+            } else if (kind == DEALT_GAME) {
+                numCards = record.get();
+                record.get(deal, 0, numCards);
+                checkCards(deal, numCards);
+                seeded = false;
+                seed = 0;
+            } else {
+                throw broken("is of an unknown kind (" + kind + ")");
+            }
+
+            recordedPilesLeft = getVarint(record);
+            numMoves = getVarint(record);
+            if (recordedPilesLeft < 0 || numMoves < 0 || numMoves > Engine.MAX_HISTORY) {
+                throw broken("has a bad number of moves");
+            }
+            engine.newGame(deal, numCards);
+            for (int i = 0; i < numMoves; i++) {
+                int code = getVarint(record);
+                try {
+                    engine.play(decodeMove(code));
+                } catch (IllegalMoveException e) {
+                    throw broken("has an illegal move " + (i + 1) + " (" + Move.toString(decodeMove(code)) + ")");
+                }
+            }
+            if (engine.pilesLeft() != recordedPilesLeft) {
+                throw broken("ends with " + engine.pilesLeft() + " piles left, but says " + recordedPilesLeft);
+            }
+            return true;
+        }
+
+        private void checkCards(byte[] cards, int numCards) throws IOException {
+            for (int i = 0; i < numCards; i++) {
+                if (!PackedCard.isValid(cards[i])) {
+                    throw broken("has a card that isn't valid");
+                }
+            }
+        }
+
+        private IOException broken(String problem) {
+            return new IOException("The record of game " + (numGames + 1) + " in " + path + " (at byte " + recordStart + ") " + problem);
+        }
+
+        /**
+         * Method to return the number of games replayed so far
+         * @return returns the number
+         */
+        public long getNumGames() {
+            return numGames;
+        }
+
+        /**
+         * Method to check if the last game replayed was shuffled from a seed (rather than stored as a whole deal)
+         * @return returns the result
+         */
+        public boolean isSeeded() {
+            return seeded;
+        }
+
+        /**
+         * Method to return the seed the last game replayed was shuffled from
+         * @return returns the seed, or 0 if it was stored as a whole deal
+         */
+        public long getSeed() {
+            return seed;
+        }
+
+        /**
+         * Method to return the number of moves in the last game replayed
+         * @return returns the number
+         */
+        public int getNumMoves() {
+            return numMoves;
+        }
+
+        /**
+         * Method to check if the archive ended partway through a record (e.g. the game was stopped while it was being written)
+         * @return returns the result
+         */
+        public boolean isCutOff() {
+            return cutOff;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    /**
+     * Method to play games with a strategy and archive them, or to replay an archive and print the results, from the command line
+     * Usage: java GameRecord generate [file] [number of games] [seed] [strategy name, see Strategy.NAMES]
+     * or: java GameRecord replay [file] [list], where list prints a line for every game as well as the totals
+     * @param args holds the command line arguments
+     */
+    public static void main(String[] args) {
+        try {
+            if (args.length > 0 && args[0].equals("generate")) {
+                Path path = Paths.get(args.length > 1 ? args[1] : DEFAULT_FILE_NAME);
+                long numGames = args.length > 2 ? Long.parseLong(args[2]) : 1_000_000L;
+                long seed = args.length > 3 ? Long.parseLong(args[3]) : System.nanoTime();
+                Strategy strategy = Strategy.forName(args.length > 4 ? args[4] : GreedyLeftmostStrategy.NAME);
+                generate(path, numGames, seed, strategy);
+            } else if (args.length > 0 && args[0].equals("replay")) {
+                replay(Paths.get(args.length > 1 ? args[1] : DEFAULT_FILE_NAME), args.length > 2 && args[2].equals("list"));
+            } else {
+                System.err.println("Usage: java GameRecord generate [file] [number of games] [seed] [strategy]");
+                System.err.println("   or: java GameRecord replay [file] [list]");
+            }
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+        }
+    }
+
+    private static void generate(Path path, long numGames, long seed, Strategy strategy) throws IOException {
+        byte[] template = DeckSource.open().getPack();
+        Engine engine = new Engine();
+        long start = System.nanoTime();
+        try (Writer writer = new Writer(path, template)) {
+            for (long game = 0; game < numGames; game++) {
+                engine.newGame(template, template.length);
+                engine.shuffle(Shuffler.dealSeed(seed, game));
+                try {
+                    for (int move = strategy.chooseMove(engine); move != Move.NONE; move = strategy.chooseMove(engine)) {
+                        engine.play(move);
+                    }
+                } catch (IllegalMoveException e) { //a strategy should only ever pick legal moves
+                    throw new IllegalStateException(strategy.getName() + " picked an illegal move", e);
+                }
+                writer.write(engine);
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("| Archived %d games played by the %s strategy in %s (%.0f games/second, %d bytes in total)%n",
+                numGames, strategy.getName(), path, numGames / seconds, Files.size(path));
+    }
+
+    private static void replay(Path path, boolean list) throws IOException {
+        Engine engine = new Engine();
+        long[] histogram = new long[TableDeck.MAX_PILES + 1];
+        long totalMoves = 0;
+        long seededGames = 0;
+        long start = System.nanoTime();
+        try (Reader reader = new Reader(path)) {
+            while (reader.next(engine)) {
+                histogram[engine.pilesLeft()]++;
+                totalMoves += reader.getNumMoves();
+                if (reader.isSeeded()) {
+                    seededGames++;
+                }
+                if (list) {
+                    System.out.printf("| Game %d: %s, %d moves, %d piles left%n", reader.getNumGames(),
+                            reader.isSeeded() ? "seed " + reader.getSeed() : "stored deal", reader.getNumMoves(), engine.pilesLeft());
+                }
+            }
+            SimulationResult result = new SimulationResult(histogram, System.nanoTime() - start);
+            long numGames = reader.getNumGames();
+            System.out.println("| Replayed " + path + " (" + Files.size(path) + " bytes)");
+            System.out.printf("| Games: %d (%d from a seed, %d stored deals), %.1f moves and %.1f bytes per game%n", numGames,
+                    seededGames, numGames - seededGames, numGames == 0 ? 0 : (double) totalMoves / numGames,
+                    numGames == 0 ? 0 : (double) Files.size(path) / numGames);
+            System.out.print(result);
+            if (reader.isCutOff()) {
+                System.out.println("| The last record was cut off partway through, so it was skipped");
+            }
+        }
+    }
+}
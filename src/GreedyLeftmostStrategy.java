@@ -0,0 +1,21 @@
+/**
+ * Strategy that plays the original "play for me" rule: the leftmost pile that another pile can be moved onto,
+ * using the "furthest move" (3 over) if both are possible. If no piles can be merged, it deals a card
+ *
+ * @author Owain Gibson
+ * @version 1.0
+ */
+public class GreedyLeftmostStrategy extends Strategy {
+    public static final String NAME = "greedy-leftmost";
+
+    @Override
+    protected int findMove(Engine engine) {
+        int move = engine.leftmostMove();
+        return move != Move.NONE ? move : dealOrNone(engine);
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+}
@@ -0,0 +1,31 @@
+/**
+ * Strategy that moves the rightmost pile that can be moved (the newest cards), using the "furthest move" (3 over) if both are possible.
+ * If no piles can be merged, it deals a card
+ *
+ * @author Owain Gibson
+ * @version 1.0
+ */
+public class GreedyRightmostStrategy extends Strategy {
+    public static final String NAME = "greedy-rightmost";
+
+    @Override
+    protected int findMove(Engine engine) {
+        long threeOver = engine.moveTargets(3);
+        long oneOver = engine.moveTargets(1);
+        long movablePiles = (threeOver << 3) | (oneOver << 1); //turns the index of target piles into the piles that can move
+        if (movablePiles == 0) {
+            return dealOrNone(engine);
+        }
+
+        int pile = 63 - Long.numberOfLeadingZeros(movablePiles);
+        if (pile >= 3 && (threeOver & (1L << (pile - 3))) != 0) {
+            return Move.merge(pile, 3);
+        }
+        return Move.merge(pile, 1);
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+}
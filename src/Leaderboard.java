@@ -0,0 +1,189 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Class to keep the leaderboard for a score store up to date as scores are added, so that questions like
+ * "what are the top 10 scores", "where would this result rank" and "what is this player's best score" can be
+ * answered without sorting or going through every score.
+ *
+ * It keeps:
+ * - the best K scores in a small sorted map (adding a score is O(log K))
+ * - the best score for each player in a hash map
+ * - the number of scores with each result in a Fenwick tree, so the rank of a result is O(log 52)
+ *
+ * Scores with the same result are ranked in the order they were added.
+ * Piles left is always between 1 and 52, so any result outside 0..MAX_RESULT is counted as MAX_RESULT for ranking
+ *
+ * @author Owain Gibson
+ * @version 1.0
+ */
+public class Leaderboard {
+    /**
+     * The number of top scores kept if no other number is given
+     */
+    public static final int DEFAULT_SIZE = 10;
+
+    /**
+     * The highest result that is ranked exactly
+     */
+    public static final int MAX_RESULT = 52;
+
+    private final int size;
+    private final TreeMap<Long, Score> top = new TreeMap<>();
+    private final Map<String, Score> bestByPlayer = new HashMap<>();
+    private final int[] counts = new int[MAX_RESULT + 2]; //Fenwick tree, indexed from 1 (result 0 is at index 1)
+    private int numScores;
+    private int nextSequence;
+
+    /**
+     * Constructor to set up a leaderboard keeping the default number of top scores
+     */
+    public Leaderboard() {
+        this(DEFAULT_SIZE);
+    }
+
+    /**
+     * Constructor to set up a leaderboard keeping a given number of top scores
+     * @param size holds the number of top scores to keep
+     * @throws IllegalArgumentException if the size is less than 1
+     */
+    public Leaderboard(int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("The leaderboard must keep at least 1 score");
+        }
+        this.size = size;
+    }
+
+    /**
+     * Method to add a score to the leaderboard
+     * @param s holds the score to add
+     */
+    public synchronized void add(Score s) {
+        long key = ((long) s.getResult() << 32) | (nextSequence++ & 0xffffffffL);
+        if (top.size() < size) {
+            top.put(key, s);
+        } else if (key < top.lastKey()) {
+            top.put(key, s);
+            top.pollLastEntry(); //the worst of the top scores drops off
+        }
+
+        Score best = bestByPlayer.get(s.getName());
+        if (best == null || s.getResult() < best.getResult()) {
+            bestByPlayer.put(s.getName(), s);
+        }
+
+        for (int i = bucket(s.getResult()) + 1; i < counts.length; i += i & -i) {
+            counts[i]++;
+        }
+        numScores++;
+    }
+
+    /**
+     * Method to return the best scores, best first
+     * @param k holds the number of scores wanted (no more than the leaderboard's size)
+     * @return returns up to k scores
+     * @throws IllegalArgumentException if k is bigger than the number of scores the leaderboard keeps
+     */
+    public synchronized List<Score> topK(int k) {
+        if (k > size) {
+            throw new IllegalArgumentException("The leaderboard only keeps the top " + size + " scores");
+        }
+        List<Score> scores = new ArrayList<>(Math.min(k, top.size()));
+        for (Score s : top.values()) {
+            if (scores.size() == k) {
+                break;
+            }
+            scores.add(s);
+        }
+        return scores;
+    }
+
+    /**
+     * Function to return the best result on the leaderboard
+     * If there are no scores, return -1
+     * @return returns the result
+     */
+    public synchronized int getTopResult() {
+        return top.isEmpty() ? -1 : top.firstEntry().getValue().getResult();
+    }
+
+    /**
+     * Method to work out the rank a new score with the given result would get (1 is the best)
+     * A new score goes below any existing scores with the same result
+     * @param result holds the result
+     * @return returns the rank
+     */
+    public synchronized int rankOf(int result) {
+        return countBetterOrEqual(result) + 1;
+    }
+
+    /**
+     * Method to count the scores with a result no worse than the given result
+     * @param result holds the result
+     * @return returns the number of scores
+     */
+    public synchronized int countBetterOrEqual(int result) {
+        if (result < 0) {
+            return 0;
+        }
+        int total = 0;
+        for (int i = bucket(result) + 1; i > 0; i -= i & -i) {
+            total += counts[i];
+        }
+        return total;
+    }
+
+    /**
+     * Method to find the result of the score at a given position in the leaderboard, which lets a page of scores be
+     * found without going through every score before it
+     * @param position holds the position (0 is the best score)
+     * @return returns the result, or -1 if there aren't that many scores
+     */
+    public synchronized int resultAt(int position) {
+        if (position < 0 || position >= numScores) {
+            return -1;
+        }
+        //walks down the Fenwick tree to find the last bucket whose running total is still no more than position
+        int index = 0;
+        int remaining = position;
+        for (int step = Integer.highestOneBit(counts.length - 1); step > 0; step >>= 1) {
+            if (index + step < counts.length && counts[index + step] <= remaining) {
+                index += step;
+                remaining -= counts[index];
+            }
+        }
+        return index; //the bucket after the one found holds the score, and bucket i + 1 holds result i
+    }
+
+    /**
+     * Method to return a player's best score
+     * @param name holds the player's name
+     * @return returns the score, or null if the player has no scores
+     */
+    public synchronized Score bestFor(String name) {
+        return bestByPlayer.get(name);
+    }
+
+    /**
+     * Method to return the number of scores added to the leaderboard
+     * @return returns the number
+     */
+    public synchronized int numScores() {
+        return numScores;
+    }
+
+    /**
+     * Method to return the number of top scores the leaderboard keeps
+     * @return returns the size
+     */
+    public int getSize() {
+        return size;
+    }
+
+    private static int bucket(int result) {
+        return Math.max(0, Math.min(result, MAX_RESULT));
+    }
+}
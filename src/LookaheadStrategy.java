@@ -0,0 +1,49 @@
+/**
+ * Strategy that looks one move ahead: it tries every legal merge on a spare copy of the game and picks the one
+ * that leaves the most merges available afterwards (the leftmost move wins a tie). If no piles can be merged, it deals a card
+ *
+ * @author Owain Gibson
+ * @version 1.0
+ */
+public class LookaheadStrategy extends Strategy {
+    public static final String NAME = "lookahead";
+
+    /**
+     * Each thread gets its own spare engine and move list, so trying moves out doesn't create anything
+     */
+    private final ThreadLocal<Engine> spareEngines = ThreadLocal.withInitial(Engine::new);
+    private final ThreadLocal<int[]> moveLists = ThreadLocal.withInitial(() -> new int[Engine.MAX_LEGAL_MOVES]);
+
+    @Override
+    protected int findMove(Engine engine) {
+        Engine spare = spareEngines.get();
+        int[] moves = moveLists.get();
+        int numMoves = engine.legalMoves(moves);
+
+        int bestMove = Move.NONE;
+        int bestMerges = -1;
+        for (int i = 0; i < numMoves; i++) {
+            if (Move.isDeal(moves[i])) {
+                continue;
+            }
+            spare.copyFrom(engine);
+            try {
+                spare.play(moves[i]);
+            } catch (IllegalMoveException ignored) { //this will never show up, since the move came from the engine's legal moves
+                continue;
+            }
+
+            int merges = Long.bitCount(spare.moveTargets(1)) + Long.bitCount(spare.moveTargets(3));
+            if (merges > bestMerges) {
+                bestMerges = merges;
+                bestMove = moves[i];
+            }
+        }
+        return bestMove != Move.NONE ? bestMove : dealOrNone(engine);
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+}
@@ -0,0 +1,89 @@
+/**
+ * The L64X128MixRandom generator from the LXM family, which is what Java 17 gives you by default from RandomGenerator.
+ * It adds a 64 bit linear congruential generator (LCG) to a xoroshiro128 generator, and mixes the sum with the lea64 finaliser.
+ * The LCG part means that two generators with different additive constants never produce the same stream,
+ * so each deal (or thread) can have its own generator without any overlap.
+ * Given the same four state values it produces exactly the same numbers as the JDK's version
+ *
+ * @author Owain Gibson
+ * @version 1.0
+ */
+public class LxmRandom implements DeckRandom {
+    public static final String NAME = "l64x128";
+
+    private static final long M = 0xd1342543de82ef95L; //the LCG's multiplier
+
+    private long a; //the LCG's additive constant (always odd)
+    private long s; //the LCG's state
+    private long x0; //the xoroshiro128 state (never both zero)
+    private long x1;
+
+    /**
+     * Constructor to start the generator from a seed
+     * @param seed holds the seed
+     */
+    public LxmRandom(long seed) {
+        setSeed(seed);
+    }
+
+    /**
+     * Constructor to start the generator from its full state, the same as the JDK's L64X128MixRandom(a, s, x0, x1)
+     * @param a holds the LCG's additive constant (it is made odd)
+     * @param s holds the LCG's state
+     * @param x0 holds the first half of the xoroshiro128 state
+     * @param x1 holds the second half of the xoroshiro128 state
+     */
+    public LxmRandom(long a, long s, long x0, long x1) {
+        this.a = a | 1;
+        this.s = s;
+        this.x0 = x0;
+        this.x1 = x1;
+        if ((x0 | x1) == 0) { //picked from the LCG's state the same way as the JDK, and at least one of them is never zero
+            this.x0 = SplitMixRandom.mix(s + 0x9e3779b97f4a7c15L);
+            this.x1 = SplitMixRandom.mix(s + 2 * 0x9e3779b97f4a7c15L);
+        }
+    }
+
+    /**
+     * Method to start the generator again from a seed, spreading the seed over the four state values with SplitMix64
+     * @param seed holds the seed
+     */
+    @Override
+    public void setSeed(long seed) {
+        SplitMixRandom seeder = new SplitMixRandom(seed);
+        a = seeder.nextLong() | 1;
+        s = seeder.nextLong();
+        x0 = seeder.nextLong();
+        x1 = seeder.nextLong();
+        if ((x0 | x1) == 0) {
+            x0 = 0x9e3779b97f4a7c15L;
+        }
+    }
+
+    @Override
+    public long nextLong() {
+        long z = lea64(s + x0);
+
+        s = M * s + a;
+
+        long q0 = x0;
+        long q1 = x1;
+        q1 ^= q0;
+        q0 = Long.rotateLeft(q0, 24) ^ q1 ^ (q1 << 16);
+        q1 = Long.rotateLeft(q1, 37);
+        x0 = q0;
+        x1 = q1;
+        return z;
+    }
+
+    /**
+     * Method to scramble the bits of a number (Doug Lea's 64 bit mixing function, used by every LXM generator)
+     * @param z holds the number to scramble
+     * @return returns the scrambled number
+     */
+    private static long lea64(long z) {
+        z = (z ^ (z >>> 32)) * 0xdaba0b6eb09322e3L;
+        z = (z ^ (z >>> 32)) * 0xdaba0b6eb09322e3L;
+        return z ^ (z >>> 32);
+    }
+}
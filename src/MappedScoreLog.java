@@ -0,0 +1,332 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Class to blueprint a score store that keeps its scores in a memory-mapped file of fixed-width records.
+ * Each record has a CRC32 checksum, so a record that was only half written when the game (or the computer) crashed
+ * can be spotted. On startup the file is scanned up to the last valid record, and anything after it is wiped.
+ * Records are the same size as the header and never cross a page, so a crash part way through a save can only damage that one record.
+ *
+ * Saving a score writes one record straight into the mapped file. The file is forced to disk in batches
+ * (every FORCE_EVERY scores, or FORCE_INTERVAL_MS after the last unforced score), rather than once per score.
+ * Loading reads the records straight out of the mapping, with no Scanner or copying of the file.
+ *
+ * The header is [int magic "PSM1"][int record size], padded to one record.
+ * Each record is [int result][short name length][name in UTF-8, padded with zeros][int CRC32 of everything before it]
+ *
+ * @author Owain Gibson
+ * @version 1.0
+ */
+public class MappedScoreLog extends ScoreStore {
+    /**
+     * The mapped score file that the game uses by default
+     */
+    public static final String DEFAULT_FILE_NAME = "../scores.dat";
+
+    /**
+     * The size of every record in bytes (and of the header)
+     */
+    public static final int RECORD_SIZE = 64;
+
+    /**
+     * The longest name (in UTF-8 bytes) that fits in a record
+     */
+    public static final int MAX_NAME_BYTES = RECORD_SIZE - 10;
+
+    /**
+     * The number of unforced scores that makes a save force the file to disk straight away
+     */
+    public static final int FORCE_EVERY = 64;
+
+    /**
+     * How long a saved score can wait before the background thread forces it to disk
+     */
+    public static final long FORCE_INTERVAL_MS = 100;
+
+    private static final int MAGIC = 0x50534d31; //"PSM1"
+    private static final int NAME_OFFSET = 6;
+    private static final int CRC_OFFSET = RECORD_SIZE - 4;
+    private static final int INITIAL_CAPACITY = 1024; //in records, so the file starts at 64KB
+
+    private final Path path;
+    private final FileChannel channel;
+    private final Object lock = new Object();
+    private final CRC32 crc = new CRC32();
+    private final byte[] nameBytes = new byte[MAX_NAME_BYTES];
+
+    /**
+     * The scores, keyed by (result << 32 | record number), so that scores with the same result stay in the order they were added
+     */
+    private final ConcurrentSkipListMap<Long, Score> index = new ConcurrentSkipListMap<>();
+
+    private final ScheduledExecutorService flusher;
+    private MappedByteBuffer map;
+    private volatile int numScores;
+    private int unforced;
+
+    /**
+     * Constructor to open a mapped score log without importing any old scores
+     * @param fileName holds the name of the file
+     * @throws IOException if the file cannot be opened or isn't a mapped score log
+     */
+    public MappedScoreLog(String fileName) throws IOException {
+        this(fileName, null);
+    }
+
+    /**
+     * Constructor to open a mapped score log, and import the scores from a text score file if the log doesn't exist yet
+     * @param fileName holds the name of the file
+     * @param importFileName holds the name of the text score file to import from (or null to not import anything)
+     * @throws IOException if the file cannot be opened or isn't a mapped score log
+     */
+    public MappedScoreLog(String fileName, String importFileName) throws IOException {
+        path = Paths.get(fileName);
+        boolean isNew = !Files.exists(path) || Files.size(path) == 0;
+
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (isNew) {
+            map = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) RECORD_SIZE * (INITIAL_CAPACITY + 1));
+            map.putInt(0, MAGIC);
+            map.putInt(4, RECORD_SIZE);
+            if (importFileName != null && Files.exists(Paths.get(importFileName))) {
+                for (Score s : new ScoreFile(importFileName).getScores()) {
+                    writeRecord(s);
+                }
+            }
+            map.force();
+        } else {
+            long size = channel.size();
+            if (size < RECORD_SIZE || size % RECORD_SIZE != 0 || size > Integer.MAX_VALUE) {
+                throw new IOException(path + " is not a mapped score log.");
+            }
+            map = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            if (map.getInt(0) != MAGIC || map.getInt(4) != RECORD_SIZE) {
+                throw new IOException(path + " is not a mapped score log.");
+            }
+            recover();
+        }
+
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "score-log-flusher");
+            t.setDaemon(true);
+            return t;
+        });
+        flusher.scheduleWithFixedDelay(this::forceQuietly, FORCE_INTERVAL_MS, FORCE_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Method to read every valid record into the index, stopping at the first one that is empty or fails its checksum.
+     * If a damaged record is found, it and everything after it is wiped, so that nothing after the damage can come back later
+     */
+    private void recover() {
+        int capacity = capacity();
+        ByteBuffer names = map.duplicate();
+        int record = 0;
+        while (record < capacity && isValid(record)) {
+            int offset = offsetOf(record);
+            int nameLength = map.getShort(offset + 4);
+            names.position(offset + NAME_OFFSET);
+            names.get(nameBytes, 0, nameLength);
+            Score s = new Score(map.getInt(offset), new String(nameBytes, 0, nameLength, StandardCharsets.UTF_8));
+            index.put(key(s.getResult(), record), s);
+            leaderboard.add(s);
+            record++;
+        }
+        numScores = record;
+
+        if (record < capacity && !isEmpty(record)) {
+            System.err.println("The score log was damaged, the scores after score " + record + " could not be loaded.");
+            for (int offset = offsetOf(record); offset < map.capacity(); offset += 8) {
+                map.putLong(offset, 0L);
+            }
+            map.force();
+        }
+    }
+
+    /**
+     * Method to check a record's name length and checksum
+     * @param record holds the record number
+     * @return returns true if the record was completely written
+     */
+    private boolean isValid(int record) {
+        int offset = offsetOf(record);
+        int nameLength = map.getShort(offset + 4);
+        if (nameLength < 0 || nameLength > MAX_NAME_BYTES) {
+            return false;
+        }
+        return map.getInt(offset + CRC_OFFSET) == checksum(offset);
+    }
+
+    /**
+     * Method to check whether a record has never been written
+     * @param record holds the record number
+     * @return returns true if every byte of the record is zero
+     */
+    private boolean isEmpty(int record) {
+        int offset = offsetOf(record);
+        for (int i = 0; i < RECORD_SIZE; i += 8) {
+            if (map.getLong(offset + i) != 0L) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Method to work out the checksum of a record
+     * @param offset holds the position of the record in the file
+     * @return returns the CRC32 of everything in the record before the checksum
+     */
+    private int checksum(int offset) {
+        ByteBuffer body = map.duplicate();
+        body.limit(offset + CRC_OFFSET).position(offset);
+        crc.reset();
+        crc.update(body);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Method for adding a score, which writes one record into the mapped file
+     * @param s holds the score to add
+     * @throws IOException if there is an IO error
+     * @throws IllegalArgumentException if the name is too long to fit in a record
+     */
+    @Override
+    public void addScore(Score s) throws IOException {
+        synchronized (lock) {
+            if (!channel.isOpen()) {
+                throw new IOException("The score log has been closed.");
+            }
+            writeRecord(s);
+            if (++unforced >= FORCE_EVERY) {
+                force();
+            }
+        }
+    }
+
+    /**
+     * Method for adding a batch of scores, which are all written into the mapped file and then forced to disk together
+     * @param scores holds the scores to add
+     * @throws IOException if there is an IO error
+     * @throws IllegalArgumentException if a name is too long to fit in a record
+     */
+    @Override
+    public void addScores(List<Score> scores) throws IOException {
+        synchronized (lock) {
+            if (!channel.isOpen()) {
+                throw new IOException("The score log has been closed.");
+            }
+            for (Score s : scores) {
+                writeRecord(s);
+                unforced++;
+            }
+            force();
+        }
+    }
+
+    /**
+     * Method to write a score into the next free record, making the file bigger first if it is full
+     * @param s holds the score to write
+     * @throws IOException if there is an IO error
+     */
+    private void writeRecord(Score s) throws IOException {
+        byte[] name = s.getName().getBytes(StandardCharsets.UTF_8);
+        if (name.length > MAX_NAME_BYTES) {
+            throw new IllegalArgumentException("The name is too long to be saved.");
+        }
+        int record = numScores;
+        if (record == capacity()) {
+            force();
+            map = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) map.capacity() * 2 - RECORD_SIZE);
+        }
+
+        int offset = offsetOf(record);
+        map.putInt(offset, s.getResult());
+        map.putShort(offset + 4, (short) name.length);
+        for (int i = 0; i < MAX_NAME_BYTES; i++) {
+            map.put(offset + NAME_OFFSET + i, i < name.length ? name[i] : 0);
+        }
+        map.putInt(offset + CRC_OFFSET, checksum(offset)); //the checksum goes in last, so the record only counts once it is all there
+
+        index.put(key(s.getResult(), record), s);
+        leaderboard.add(s);
+        numScores = record + 1;
+    }
+
+    /**
+     * Method to force any scores that haven't been forced yet onto the disk
+     */
+    public void force() {
+        synchronized (lock) {
+            if (unforced > 0 && channel.isOpen()) {
+                map.force();
+                unforced = 0;
+            }
+        }
+    }
+
+    /**
+     * Method run by the background thread to force the file, so a score never waits long to be on disk
+     */
+    private void forceQuietly() {
+        try {
+            force();
+        } catch (RuntimeException e) {
+            System.err.println("The score log could not be saved to disk: " + e.getMessage());
+        }
+    }
+
+    private int capacity() {
+        return map.capacity() / RECORD_SIZE - 1;
+    }
+
+    private static int offsetOf(int record) {
+        return (record + 1) * RECORD_SIZE;
+    }
+
+    private static long key(int result, int record) {
+        return ((long) result << 32) | (record & 0xffffffffL);
+    }
+
+    @Override
+    public List<Score> getScores() {
+        return new ArrayList<>(index.values());
+    }
+
+    @Override
+    public List<Score> getScores(int from, int count) {
+        return pageOf(index, from, count);
+    }
+
+    @Override
+    public int numScores() {
+        return numScores;
+    }
+
+    /**
+     * Method to close the log, forcing any scores that are left onto the disk first
+     * @throws IOException if there is an IO error
+     */
+    @Override
+    public void close() throws IOException {
+        flusher.shutdown();
+        synchronized (lock) {
+            force();
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,693 @@
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+
+/**
+ * Class holding the game's metrics: counters, latency histograms and gauges, each with a dotted name (e.g. "game.deal").
+ * A metric is made the first time its name is asked for, and the same one is returned after that, so a class can keep
+ * its metrics in static fields and record into them without looking anything up.
+ *
+ * Every metric is also registered as an MBean (patience:type=Histogram,name=game.deal and so on), so it can be watched
+ * from jconsole or VisualVM while the game runs. Running with -Dpatience.metrics=&lt;seconds&gt; also prints every metric
+ * that often, to the file named by -Dpatience.metrics.file (or the error stream if there isn't one)
+ *
+ * @author Owain Gibson
+ * @version 1.0
+ */
+public class Metrics {
+    /**
+     * The system property holding the number of seconds between each dump of the metrics (no dumps if it isn't set)
+     */
+    public static final String DUMP_PROPERTY = "patience.metrics";
+
+    /**
+     * The system property holding the file the dumps are added to
+     */
+    public static final String FILE_PROPERTY = "patience.metrics.file";
+
+    /**
+     * The JMX domain the metrics are registered under
+     */
+    public static final String JMX_DOMAIN = "patience";
+
+    private static final Map<String, Metric> METRICS = new ConcurrentSkipListMap<>(); //sorted, so the dumps are in name order
+    private static ScheduledExecutorService dumper;
+    private static PrintStream dumpOut;
+
+    /**
+     * Method to return the counter with the given name, making it if needed
+     * @param name holds the dotted name of the counter
+     * @return returns the counter
+     * @throws IllegalArgumentException if the name is already used by a different kind of metric
+     */
+    public static Counter counter(String name) {
+        return get(name, Counter.class);
+    }
+
+    /**
+     * Method to return the latency histogram with the given name, making it if needed
+     * @param name holds the dotted name of the histogram
+     * @return returns the histogram
+     * @throws IllegalArgumentException if the name is already used by a different kind of metric
+     */
+    public static Histogram histogram(String name) {
+        return get(name, Histogram.class);
+    }
+
+    /**
+     * Method to set the gauge with the given name to read its value from a supplier, making it if needed.
+     * A gauge that already exists is just pointed at the new supplier, e.g. when a new game replaces the old one
+     * @param name holds the dotted name of the gauge
+     * @param value holds the supplier, which can be called from any thread
+     * @return returns the gauge
+     * @throws IllegalArgumentException if the name is already used by a different kind of metric
+     */
+    public static Gauge gauge(String name, LongSupplier value) {
+        Gauge gauge = get(name, Gauge.class);
+        gauge.value = value;
+        return gauge;
+    }
+
+    /**
+     * Method to find a metric by its name, making and registering it if it doesn't exist yet
+     * @param name holds the dotted name of the metric
+     * @param kind holds the class of metric wanted
+     * @return returns the metric
+     */
+    private static <T extends Metric> T get(String name, Class<T> kind) {
+        Metric metric = METRICS.get(name);
+        if (metric == null) {
+            if (!name.matches("[A-Za-z0-9_.\\-]+")) {
+                throw new IllegalArgumentException("\"" + name + "\" isn't a valid metric name");
+            }
+            synchronized (METRICS) {
+                metric = METRICS.get(name);
+                if (metric == null) {
+                    metric = kind == Counter.class ? new Counter(name) : kind == Histogram.class ? new Histogram(name) : new Gauge(name);
+                    METRICS.put(name, metric);
+                    register(metric);
+                }
+            }
+        }
+        if (!kind.isInstance(metric)) {
+            throw new IllegalArgumentException("The metric \"" + name + "\" is a " + metric.getClass().getSimpleName() + ", not a " + kind.getSimpleName());
+        }
+        return kind.cast(metric);
+    }
+
+    /**
+     * Method to register a metric with the platform MBean server.
+     * The metrics still work without JMX, so if it can't be registered (e.g. the server isn't allowed) it is just left out
+     * @param metric holds the metric
+     */
+    private static void register(Metric metric) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(JMX_DOMAIN + ":type=" + metric.getClass().getSimpleName() + ",name=" + metric.name);
+            if (!server.isRegistered(objectName)) {
+                server.registerMBean(new MetricBean(metric), objectName);
+            }
+        } catch (JMException | SecurityException e) {
+            //the metric is still recorded and dumped
+        }
+    }
+
+    /**
+     * Method to clear every counter and histogram (gauges always show their current value)
+     */
+    public static void resetAll() {
+        for (Metric metric : METRICS.values()) {
+            metric.reset();
+        }
+    }
+
+    /**
+     * Method to return every metric as text, one per line in name order
+     * @return returns the text
+     */
+    public static String dump() {
+        StringBuilder sb = new StringBuilder();
+        for (Metric metric : METRICS.values()) {
+            sb.append(metric).append("\n");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Method to start dumping the metrics if DUMP_PROPERTY is set, which the game calls as it starts
+     * @throws IOException if the dump file cannot be opened
+     * @throws IllegalArgumentException if the number of seconds isn't a positive whole number
+     */
+    public static void startFromProperties() throws IOException {
+        String seconds = System.getProperty(DUMP_PROPERTY);
+        if (seconds == null || seconds.isEmpty()) {
+            return;
+        }
+        long interval = Long.parseLong(seconds);
+        if (interval <= 0) { //checked before the file is opened, so a bad interval can't leave the file open
+            throw new IllegalArgumentException("The metrics can't be dumped every " + interval + " seconds");
+        }
+        String fileName = System.getProperty(FILE_PROPERTY);
+        PrintStream out = fileName == null ? System.err : new PrintStream(new FileOutputStream(fileName, true), true);
+        startDumping(interval, out);
+    }
+
+    /**
+     * Method to print every metric at a fixed rate from a background thread, until stopDumping() or finishDumping() is called.
+     * Each dump starts with a line holding the time, so the dumps in a file can be told apart.
+     * Any dumps already running are stopped first
+     * @param seconds holds the number of seconds between dumps
+     * @param out holds the stream to print to, which is closed when the dumps stop (unless it is the error stream)
+     * @throws IllegalArgumentException if the number of seconds isn't positive
+     */
+    public static synchronized void startDumping(long seconds, PrintStream out) {
+        if (seconds <= 0) {
+            throw new IllegalArgumentException("The metrics can't be dumped every " + seconds + " seconds");
+        }
+        stopDumping();
+        dumpOut = out;
+        dumper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "metrics-dump");
+            thread.setDaemon(true); //the dumps never keep the game running
+            return thread;
+        });
+        dumper.scheduleAtFixedRate(() -> dumpTo(out), seconds, seconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Method to stop the periodic dumps
+     */
+    public static synchronized void stopDumping() {
+        stop(false);
+    }
+
+    /**
+     * Method to stop the periodic dumps and print every metric one last time, if the dumps were running,
+     * so the end of a short session isn't lost
+     */
+    public static synchronized void finishDumping() {
+        stop(true);
+    }
+
+    /**
+     * Method to stop the dumps, waiting for a dump that is part way through to finish, and close the stream they were printed to
+     * @param lastDump holds whether to print one last dump before closing it
+     */
+    private static void stop(boolean lastDump) {
+        if (dumper == null) {
+            return;
+        }
+        dumper.shutdown();
+        try {
+            dumper.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        dumper = null;
+        if (lastDump) {
+            dumpTo(dumpOut);
+        }
+        if (dumpOut != System.err) {
+            dumpOut.close();
+        }
+        dumpOut = null;
+    }
+
+    /**
+     * Method to print one dump
+     * @param out holds the stream to print to
+     */
+    private static void dumpTo(PrintStream out) {
+        out.print("--- metrics at " + new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date()) + "\n" + dump());
+        out.flush();
+    }
+
+    /**
+     * Abstract class for every kind of metric
+     */
+    public abstract static class Metric {
+        protected final String name;
+
+        /**
+         * Constructor to set up the metric
+         * @param name holds the dotted name
+         */
+        protected Metric(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Method to return the metric's name
+         * @return returns the name
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Method to clear the metric
+         */
+        public abstract void reset();
+
+        /**
+         * Method to return the names of the attributes the metric shows through JMX
+         * @return returns the names
+         */
+        protected abstract String[] attributeNames();
+
+        /**
+         * Method to return one of the metric's JMX attributes
+         * @param attribute holds the attribute's name
+         * @return returns the value, or null if there is no such attribute
+         */
+        protected abstract Object attribute(String attribute);
+    }
+
+    /**
+     * Class for a counter, which only goes up (until it is reset). It is a LongAdder, so threads counting at the same time
+     * don't hold each other up
+     */
+    public static class Counter extends Metric {
+        private final LongAdder count = new LongAdder();
+
+        private Counter(String name) {
+            super(name);
+        }
+
+        /**
+         * Method to add one to the counter
+         */
+        public void increment() {
+            count.increment();
+        }
+
+        /**
+         * Method to add to the counter
+         * @param n holds the amount to add
+         */
+        public void add(long n) {
+            count.add(n);
+        }
+
+        /**
+         * Method to return the count
+         * @return returns the count
+         */
+        public long get() {
+            return count.sum();
+        }
+
+        @Override
+        public void reset() {
+            count.reset();
+        }
+
+        @Override
+        protected String[] attributeNames() {
+            return new String[] {"Count"};
+        }
+
+        @Override
+        protected Object attribute(String attribute) {
+            return attribute.equals("Count") ? get() : null;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-24s %d", name, get());
+        }
+    }
+
+    /**
+     * Class for a gauge, which reads its value from a supplier whenever it is looked at
+     */
+    public static class Gauge extends Metric {
+        private volatile LongSupplier value = () -> 0;
+
+        private Gauge(String name) {
+            super(name);
+        }
+
+        /**
+         * Method to return the gauge's current value
+         * @return returns the value
+         */
+        public long get() {
+            return value.getAsLong();
+        }
+
+        @Override
+        public void reset() {
+        }
+
+        @Override
+        protected String[] attributeNames() {
+            return new String[] {"Value"};
+        }
+
+        @Override
+        protected Object attribute(String attribute) {
+            return attribute.equals("Value") ? get() : null;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-24s %d", name, get());
+        }
+    }
+
+    /**
+     * Class for a latency histogram, laid out like an HdrHistogram: times below SUB_BUCKETS nanoseconds get a bucket each,
+     * and every power of two above that is split into SUB_BUCKETS equal buckets, so any time from a nanosecond to centuries
+     * is kept to within 1 part in SUB_BUCKETS (about 1.6%) in a fixed array of buckets.
+     * Recording is one atomic add on a bucket plus the adders for the total and the maximum, so there are no locks,
+     * and nothing is created per time recorded. The percentiles are read from a copy of the buckets, so one read
+     * while times are being recorded can be very slightly out, but never by more than the times recorded during it
+     */
+    public static class Histogram extends Metric {
+        private static final int SUB_BUCKET_BITS = 6;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+        private static final int NUM_BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS; //the linear buckets, then one set per power of two
+
+        private final AtomicLongArray buckets = new AtomicLongArray(NUM_BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+        private Histogram(String name) {
+            super(name);
+        }
+
+        /**
+         * Method to record a time
+         * @param nanos holds the time in nanoseconds (anything below 0 counts as 0)
+         */
+        public void record(long nanos) {
+            long value = Math.max(nanos, 0);
+            buckets.incrementAndGet(bucketOf(value));
+            count.increment();
+            totalNanos.add(value);
+            maxNanos.accumulate(value);
+        }
+
+        /**
+         * Method to record the time since the given start, which is how the game times things:
+         * long start = System.nanoTime(); ... histogram.recordSince(start);
+         * @param startNanos holds the System.nanoTime() from the start
+         */
+        public void recordSince(long startNanos) {
+            record(System.nanoTime() - startNanos);
+        }
+
+        /**
+         * Method to work out which bucket a time goes in
+         * @param value holds the time (at least 0)
+         * @return returns the bucket's index
+         */
+        static int bucketOf(long value) {
+            if (value < SUB_BUCKETS) {
+                return (int) value;
+            }
+            int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+            return (shift + 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+        }
+
+        /**
+         * Method to return the highest time that goes in a bucket, which is what the percentiles report,
+         * so they are never lower than the real time
+         * @param bucket holds the bucket's index
+         * @return returns the time in nanoseconds
+         */
+        static long highestIn(int bucket) {
+            if (bucket < SUB_BUCKETS) {
+                return bucket;
+            }
+            int shift = bucket / SUB_BUCKETS - 1;
+            long lowest = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+            return lowest + (1L << shift) - 1;
+        }
+
+        /**
+         * Method to return the number of times recorded
+         * @return returns the number
+         */
+        public long getCount() {
+            return count.sum();
+        }
+
+        /**
+         * Method to return the mean time
+         * @return returns the time in nanoseconds
+         */
+        public double getMeanNanos() {
+            long n = count.sum();
+            return n == 0 ? 0 : (double) totalNanos.sum() / n;
+        }
+
+        /**
+         * Method to return the longest time recorded
+         * @return returns the time in nanoseconds
+         */
+        public long getMaxNanos() {
+            return maxNanos.get();
+        }
+
+        /**
+         * Method to return the time that the given percentage of the recorded times are at or below
+         * @param percentile holds the percentage (e.g. 99.9)
+         * @return returns the time in nanoseconds, or 0 if nothing has been recorded
+         */
+        public long getPercentileNanos(double percentile) {
+            return percentiles(percentile)[0];
+        }
+
+        /**
+         * Method to work out several percentiles from one copy of the buckets
+         * @param percentiles holds the percentages, in increasing order
+         * @return returns the times in nanoseconds, in the same order
+         */
+        private long[] percentiles(double... percentiles) {
+            long[] copy = new long[NUM_BUCKETS];
+            long total = 0;
+            for (int i = 0; i < NUM_BUCKETS; i++) {
+                copy[i] = buckets.get(i);
+                total += copy[i];
+            }
+            long[] results = new long[percentiles.length];
+            if (total == 0) {
+                return results;
+            }
+            long max = maxNanos.get();
+            long seen = 0;
+            int bucket = 0;
+            for (int p = 0; p < percentiles.length; p++) {
+                long wanted = Math.max(1, (long) Math.ceil(percentiles[p] / 100 * total));
+                while (bucket < NUM_BUCKETS - 1 && seen + copy[bucket] < wanted) {
+                    seen += copy[bucket];
+                    bucket++;
+                }
+                results[p] = Math.min(highestIn(bucket), max);
+            }
+            return results;
+        }
+
+        @Override
+        public void reset() {
+            for (int i = 0; i < NUM_BUCKETS; i++) {
+                buckets.set(i, 0);
+            }
+            count.reset();
+            totalNanos.reset();
+            maxNanos.reset();
+        }
+
+        @Override
+        protected String[] attributeNames() {
+            return new String[] {"Count", "MeanNanos", "P50Nanos", "P90Nanos", "P99Nanos", "P999Nanos", "MaxNanos"};
+        }
+
+        @Override
+        protected Object attribute(String attribute) {
+            switch (attribute) {
+                case "Count":
+                    return getCount();
+                case "MeanNanos":
+                    return getMeanNanos();
+                case "P50Nanos":
+                    return getPercentileNanos(50);
+                case "P90Nanos":
+                    return getPercentileNanos(90);
+                case "P99Nanos":
+                    return getPercentileNanos(99);
+                case "P999Nanos":
+                    return getPercentileNanos(99.9);
+                case "MaxNanos":
+                    return getMaxNanos();
+                default:
+                    return null;
+            }
+        }
+
+        @Override
+        public String toString() {
+            long[] p = percentiles(50, 90, 99, 99.9);
+            return String.format("%-24s count %d, mean %.1f us, p50 %.1f us, p90 %.1f us, p99 %.1f us, p99.9 %.1f us, max %.1f us",
+                    name, getCount(), getMeanNanos() / 1000, p[0] / 1000.0, p[1] / 1000.0, p[2] / 1000.0, p[3] / 1000.0, getMaxNanos() / 1000.0);
+        }
+    }
+
+    /**
+     * Class to show one metric through JMX. The attributes are read-only, and "reset" clears the metric
+     */
+    private static class MetricBean implements DynamicMBean {
+        private final Metric metric;
+        private final MBeanInfo info;
+
+        MetricBean(Metric metric) {
+            this.metric = metric;
+            String[] names = metric.attributeNames();
+            MBeanAttributeInfo[] attributes = new MBeanAttributeInfo[names.length];
+            for (int i = 0; i < names.length; i++) {
+                String type = names[i].equals("MeanNanos") ? "double" : "long";
+                attributes[i] = new MBeanAttributeInfo(names[i], type, names[i], true, false, false);
+            }
+            MBeanOperationInfo reset = new MBeanOperationInfo("reset", "Clears the metric", null, "void", MBeanOperationInfo.ACTION);
+            info = new MBeanInfo(metric.getClass().getName(), metric.getName(), attributes, null, new MBeanOperationInfo[] {reset}, null);
+        }
+
+        @Override
+        public Object getAttribute(String attribute) throws AttributeNotFoundException {
+            Object value = metric.attribute(attribute);
+            if (value == null) {
+                throw new AttributeNotFoundException(attribute);
+            }
+            return value;
+        }
+
+        @Override
+        public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+            throw new AttributeNotFoundException("The metrics are read-only");
+        }
+
+        @Override
+        public AttributeList getAttributes(String[] attributes) {
+            AttributeList list = new AttributeList();
+            for (String attribute : attributes) {
+                Object value = metric.attribute(attribute);
+                if (value != null) {
+                    list.add(new Attribute(attribute, value));
+                }
+            }
+            return list;
+        }
+
+        @Override
+        public AttributeList setAttributes(AttributeList attributes) {
+            return new AttributeList();
+        }
+
+        @Override
+        public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+            if (actionName.equals("reset")) {
+                metric.reset();
+                return null;
+            }
+            throw new ReflectionException(new NoSuchMethodException(actionName));
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            return info;
+        }
+    }
+
+    /**
+     * Method to check the histograms and time how much recording costs, from the command line
+     * Usage: java Metrics [times to record]
+     * The percentiles of a histogram are checked against the exact percentiles of the same random times, then the
+     * cost of a record() and of a recordSince() are timed, and the metrics are read back through JMX like jconsole would
+     * @param args holds the command line arguments
+     * @throws JMException if the metrics can't be read through JMX
+     */
+    public static void main(String[] args) throws JMException {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+
+        //random times spread over several powers of ten, like real latencies
+        long[] times = new long[1_000_000];
+        Histogram check = histogram("metrics.check");
+        for (int i = 0; i < times.length; i++) {
+            times[i] = (long) Math.pow(10, 2 + 4 * ThreadLocalRandom.current().nextDouble());
+            check.record(times[i]);
+        }
+        Arrays.sort(times);
+        for (double p : new double[] {50, 90, 99, 99.9, 100}) {
+            long exact = times[Math.max(0, (int) Math.ceil(p / 100 * times.length) - 1)];
+            long measured = check.getPercentileNanos(p);
+            if (measured < exact || measured > exact + exact / Histogram.SUB_BUCKETS) {
+                throw new IllegalStateException("p" + p + " was " + measured + " ns, but should be " + exact + " ns");
+            }
+        }
+        for (long value = 0; value < 1L << 40; value = value * 3 / 2 + 1) {
+            int bucket = Histogram.bucketOf(value);
+            if (value > Histogram.highestIn(bucket) || (bucket > 0 && value <= Histogram.highestIn(bucket - 1))) {
+                throw new IllegalStateException(value + " ns is in the wrong bucket (" + bucket + ")");
+            }
+        }
+        System.out.println("Percentiles OK: " + check);
+
+        Histogram cost = histogram("metrics.cost");
+        Counter counter = counter("metrics.counter");
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < n; i++) {
+                cost.record(i & 1023);
+            }
+            long recordNanos = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (int i = 0; i < n; i++) {
+                counter.increment();
+            }
+            long countNanos = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (int i = 0; i < n; i++) {
+                cost.recordSince(System.nanoTime());
+            }
+            long timedNanos = System.nanoTime() - start;
+            System.out.printf("record() %.1f ns, increment() %.1f ns, recordSince(System.nanoTime()) %.1f ns%n",
+                    (double) recordNanos / n, (double) countNanos / n, (double) timedNanos / n);
+        }
+
+        gauge("metrics.freeMemory", () -> Runtime.getRuntime().freeMemory());
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(JMX_DOMAIN + ":type=Histogram,name=metrics.check");
+        System.out.println("Through JMX, metrics.check has p99 " + server.getAttribute(name, "P99Nanos") + " ns from "
+                + server.getAttribute(name, "Count") + " times, and there are "
+                + server.queryNames(new ObjectName(JMX_DOMAIN + ":*"), null).size() + " metrics registered");
+        System.out.print(dump());
+    }
+}
@@ -0,0 +1,84 @@
+/**
+ * Class to describe the moves that can be made in a game, packed into a single int
+ * This means that the solver can store whole move sequences in an int array rather than creating an object for every move.
+ * The lowest 2 bits hold the number of piles over (1 or 3, or 0 for a deal) and the rest hold the index of the pile that is moved
+ *
+ * @author Owain Gibson
+ * @version 1.0
+ */
+public final class Move {
+    /**
+     * A deal is the only move with 0 piles over, so it can simply be 0
+     */
+    public static final int DEAL = 0;
+
+    /**
+     * Used when there is no move to make (it can never be a real move, since real moves are never negative)
+     */
+    public static final int NONE = -1;
+
+    /**
+     * Private because this class is only used for its static methods
+     */
+    private Move() {
+    }
+
+    /**
+     * Method to pack a merge move into an int
+     * @param pileIndex holds the index of the pile to move
+     * @param numPilesOver holds the number of piles over it is moved (1 or 3)
+     * @return returns the packed move
+     */
+    public static int merge(int pileIndex, int numPilesOver) {
+        return (pileIndex << 2) | numPilesOver;
+    }
+
+    /**
+     * Method to check if a packed move is a deal
+     * @param move holds the packed move
+     * @return returns true if the move deals a card
+     */
+    public static boolean isDeal(int move) {
+        return move == DEAL;
+    }
+
+    /**
+     * Method to return the index of the pile that the move picks up
+     * @param move holds the packed move
+     * @return returns the index
+     */
+    public static int pileIndex(int move) {
+        return move >>> 2;
+    }
+
+    /**
+     * Method to return how many piles over the move goes
+     * @param move holds the packed move
+     * @return returns the number of piles over (0 for a deal)
+     */
+    public static int numPilesOver(int move) {
+        return move & 3;
+    }
+
+    /**
+     * Method to return the index of the pile that the moved pile is placed onto
+     * @param move holds the packed move
+     * @return returns the index
+     */
+    public static int targetIndex(int move) {
+        return pileIndex(move) - numPilesOver(move);
+    }
+
+    /**
+     * Method to describe a packed move to the player
+     * The pile numbers start at 1, the same as the menu options do
+     * @param move holds the packed move
+     * @return returns the description as a string
+     */
+    public static String toString(int move) {
+        if (isDeal(move)) {
+            return "Deal a card";
+        }
+        return "Move pile " + (pileIndex(move) + 1) + " onto pile " + (targetIndex(move) + 1);
+    }
+}
@@ -0,0 +1,168 @@
+/**
+ * Class to convert cards to and from a packed byte, so that bulk code (the solver, simulations) can hold a whole table
+ * in a byte array rather than creating a Card object for every card.
+ * The suit is held in bits 4-5 and the value (Rank) in bits 0-3, so a packed card is always between 0 and 63
+ *
+ * @author Owain Gibson
+ * @version 1.0
+ */
+public final class PackedCard {
+    /**
+     * The number of different packed card codes (2 suit bits + 4 value bits)
+     */
+    public static final int NUM_CODES = 64;
+
+    private static final int SUIT_SHIFT = 4;
+    private static final int VALUE_MASK = 0x0F;
+
+    private static final Suit[] SUITS = Suit.values();
+    private static final Value[] VALUES = Value.values();
+
+    /**
+     * These tables are filled once, so that converting a packed card back to a Card or a string never creates a new object
+     */
+    private static final Card[] CARDS = new Card[NUM_CODES];
+    private static final String[] NAMES = new String[NUM_CODES];
+    private static final String[] FILE_NAMES = new String[NUM_CODES];
+
+    /**
+     * Each packed card has a 64 bit mask with a bit set for every packed card it can be merged with (same suit or same value).
+     * This turns checking a merge into a single bit test
+     */
+    private static final long[] MATCHES = new long[NUM_CODES];
+
+    static {
+        for (Suit suit : SUITS) {
+            for (Value value : VALUES) {
+                byte code = of(value, suit);
+                CARDS[code] = new Card(value, suit);
+                NAMES[code] = value.toString() + suit;
+                FILE_NAMES[code] = NAMES[code] + ".gif";
+            }
+        }
+        for (Suit suitA : SUITS) {
+            for (Value valueA : VALUES) {
+                for (Suit suitB : SUITS) {
+                    for (Value valueB : VALUES) {
+                        if (suitA == suitB || valueA == valueB) {
+                            MATCHES[of(valueA, suitA)] |= 1L << of(valueB, suitB);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Private because this class is only used for its static methods
+     */
+    private PackedCard() {
+    }
+
+    /**
+     * Method to pack a value and suit into a byte
+     * @param value holds the value of the card (Rank)
+     * @param suit holds the suit of the card
+     * @return returns the packed card
+     */
+    public static byte of(Value value, Suit suit) {
+        return (byte) ((suit.ordinal() << SUIT_SHIFT) | value.ordinal());
+    }
+
+    /**
+     * Method to pack a card into a byte
+     * @param card holds the card to pack
+     * @return returns the packed card
+     */
+    public static byte fromCard(Card card) {
+        return of(card.getValue(), card.getSuit());
+    }
+
+    /**
+     * Method to check if a number is a real packed card (a suit and value that exist), e.g. when reading one from a file
+     * @param code holds the number to check
+     * @return returns true if it is a packed card
+     */
+    public static boolean isValid(int code) {
+        return code >= 0 && code < NUM_CODES && CARDS[code] != null;
+    }
+
+    /**
+     * Method to return the Card object for a packed card.
+     * The same object is always returned for the same packed card, so this never allocates
+     * @param code holds the packed card
+     * @return returns the card
+     */
+    public static Card toCard(byte code) {
+        return CARDS[code];
+    }
+
+    /**
+     * Method to return the suit of a packed card
+     * @param code holds the packed card
+     * @return returns the suit
+     */
+    public static Suit suit(byte code) {
+        return SUITS[code >>> SUIT_SHIFT];
+    }
+
+    /**
+     * Method to return the value (Rank) of a packed card
+     * @param code holds the packed card
+     * @return returns the value
+     */
+    public static Value value(byte code) {
+        return VALUES[code & VALUE_MASK];
+    }
+
+    /**
+     * Method to check if two packed cards can be merged (same suit or same value)
+     * @param a holds the first card
+     * @param b holds the second card
+     * @return returns true if they match
+     */
+    public static boolean matches(byte a, byte b) {
+        return (MATCHES[a] & (1L << b)) != 0;
+    }
+
+    /**
+     * Method to return a packed card as a string, in the same form as Card.toString() (e.g. "4h")
+     * @param code holds the packed card
+     * @return returns the string
+     */
+    public static String toString(byte code) {
+        return NAMES[code];
+    }
+
+    /**
+     * Method to return the filename of the packed card's GIF image (e.g. "4h.gif")
+     * @param code holds the packed card
+     * @return returns the filename
+     */
+    public static String fileName(byte code) {
+        return FILE_NAMES[code];
+    }
+
+    /**
+     * Method to read a packed card from a string in the same form as Card.toString() (e.g. "4h", or "TH" since case is ignored)
+     * @param name holds the string to read
+     * @return returns the packed card
+     * @throws IllegalArgumentException if the string is not a card
+     */
+    public static byte parse(String name) {
+        if (name.length() == 2) {
+            String valueLetter = name.substring(0, 1).toLowerCase();
+            String suitLetter = name.substring(1).toLowerCase();
+            for (Value value : VALUES) {
+                if (value.toString().equals(valueLetter)) {
+                    for (Suit suit : SUITS) {
+                        if (suit.toString().equals(suitLetter)) {
+                            return of(value, suit);
+                        }
+                    }
+                }
+            }
+        }
+        throw new IllegalArgumentException("\"" + name + "\" is not a card");
+    }
+}
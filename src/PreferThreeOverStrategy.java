@@ -0,0 +1,28 @@
+/**
+ * Strategy that makes any 3 over move before any 1 over move (leftmost first within each kind), since a 3 over move
+ * leaves more piles between the merged cards for later matches. If no piles can be merged, it deals a card
+ *
+ * @author Owain Gibson
+ * @version 1.0
+ */
+public class PreferThreeOverStrategy extends Strategy {
+    public static final String NAME = "prefer-3-over";
+
+    @Override
+    protected int findMove(Engine engine) {
+        long threeOver = engine.moveTargets(3);
+        if (threeOver != 0) {
+            return Move.merge(Long.numberOfTrailingZeros(threeOver) + 3, 3);
+        }
+        long oneOver = engine.moveTargets(1);
+        if (oneOver != 0) {
+            return Move.merge(Long.numberOfTrailingZeros(oneOver) + 1, 1);
+        }
+        return dealOrNone(engine);
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+}
@@ -0,0 +1,153 @@
+/**
+ * Strategy that plays out random games to pick its move (a Monte-Carlo rollout).
+ * The budget of rollouts is shared between the legal merges, and for each merge the rest of the game is played
+ * with random merges (dealing only when there are none) on a spare copy of the game.
+ * The merge with the lowest average number of piles left is chosen. If no piles can be merged, it deals a card.
+ * The random numbers are seeded from the position itself, so the same position always gets the same move,
+ * which keeps simulations repeatable from their seed
+ *
+ * @author Owain Gibson
+ * @version 1.0
+ */
+public class RolloutStrategy extends Strategy {
+    public static final String NAME = "rollout";
+
+    /**
+     * The number of rollouts per decision if no budget is given
+     */
+    public static final int DEFAULT_BUDGET = 100;
+
+    private final int budget;
+
+    /**
+     * Each thread gets its own spare engine and move lists, so the rollouts don't create anything
+     */
+    private final ThreadLocal<Engine> spareEngines = ThreadLocal.withInitial(Engine::new);
+    private final ThreadLocal<int[][]> moveLists = ThreadLocal.withInitial(() -> new int[2][Engine.MAX_LEGAL_MOVES]);
+
+    /**
+     * Constructor to set up the strategy with the default budget
+     */
+    public RolloutStrategy() {
+        this(DEFAULT_BUDGET);
+    }
+
+    /**
+     * Constructor to set up the strategy with a given budget
+     * @param budget holds the total number of rollouts to play for each decision
+     * @throws IllegalArgumentException if the budget is less than 1
+     */
+    public RolloutStrategy(int budget) {
+        if (budget < 1) {
+            throw new IllegalArgumentException("The rollout budget must be at least 1");
+        }
+        this.budget = budget;
+    }
+
+    @Override
+    protected int findMove(Engine engine) {
+        int[][] lists = moveLists.get();
+        int[] candidates = lists[0];
+        int[] playoutMoves = lists[1];
+        Engine spare = spareEngines.get();
+
+        int numCandidates = engine.legalMoves(candidates);
+        if (engine.canDeal()) {
+            numCandidates--; //the deal is always last in the list, and is only used if there are no merges
+        }
+        if (numCandidates == 0) {
+            return dealOrNone(engine);
+        }
+        if (numCandidates == 1) {
+            return candidates[0];
+        }
+
+        int rolloutsPerMove = Math.max(1, budget / numCandidates);
+        long random = positionSeed(engine);
+
+        int bestMove = Move.NONE;
+        long bestTotal = Long.MAX_VALUE;
+        for (int i = 0; i < numCandidates; i++) {
+            long total = 0;
+            for (int r = 0; r < rolloutsPerMove; r++) {
+                spare.copyFrom(engine);
+                random = playOut(spare, candidates[i], playoutMoves, random);
+                total += spare.pilesLeft();
+            }
+            if (total < bestTotal) {
+                bestTotal = total;
+                bestMove = candidates[i];
+            }
+        }
+        return bestMove;
+    }
+
+    /**
+     * Method to play a game to the end with random merges, starting with the given move
+     * @param spare holds the copy of the game to play out
+     * @param firstMove holds the move to start with
+     * @param moves holds an array to use for the legal moves
+     * @param random holds the state of the random number generator
+     * @return returns the new state of the random number generator
+     */
+    private static long playOut(Engine spare, int firstMove, int[] moves, long random) {
+        try {
+            spare.play(firstMove);
+            while (true) {
+                int numMoves = spare.legalMoves(moves);
+                int numMerges = spare.canDeal() ? numMoves - 1 : numMoves;
+                if (numMerges > 0) {
+                    random += 0x9e3779b97f4a7c15L;
+                    spare.play(moves[(int) (((mix(random) >>> 32) * numMerges) >>> 32)]);
+                } else if (numMoves > 0) {
+                    spare.deal();
+                } else {
+                    return random;
+                }
+            }
+        } catch (IllegalMoveException e) { //this will never show up, since every move comes from the engine's legal moves
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Method to work out a random seed from the position, so the same position always plays the same rollouts
+     * @param engine holds the game
+     * @return returns the seed
+     */
+    private static long positionSeed(Engine engine) {
+        long h = engine.packSize();
+        TableDeck table = engine.getTable();
+        for (int i = 0; i < table.numCards(); i++) {
+            h = h * 31 + table.getPackedCard(i);
+        }
+        for (int i = 0; i < engine.packSize(); i++) {
+            h = h * 31 + engine.getPackCard(i);
+        }
+        return mix(h);
+    }
+
+    /**
+     * Method to scramble the bits of a number (the SplitMix64 finaliser)
+     * @param z holds the number to scramble
+     * @return returns the scrambled number
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Method to return the number of rollouts played for each decision
+     * @return returns the budget
+     */
+    public int getBudget() {
+        return budget;
+    }
+
+    @Override
+    public String getName() {
+        return NAME + ":" + budget;
+    }
+}
@@ -1,22 +1,50 @@
 import java.io.*;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 import java.util.Scanner;
 
 /**
  * Class to blueprint what a score file looks like
+ * The scores are kept as a text file, with each result on one line and the scorer's name on the next
+ * The methods that touch the list of scores are synchronized, so the file can be shared between threads
  *
  * @author Owain Gibson
  * @version 1.0
  */
-public class ScoreFile {
+public class ScoreFile extends ScoreStore {
+    /**
+     * The score file that the game uses by default
+     */
+    public static final String DEFAULT_FILE_NAME = "../scores.txt";
+
+    /**
+     * How long loading and saving the whole file takes, which grows with the number of scores (see Metrics)
+     */
+    private static final Metrics.Histogram LOAD_TIME = Metrics.histogram("scores.file.load");
+    private static final Metrics.Histogram SAVE_TIME = Metrics.histogram("scores.file.save");
+
     private ArrayList<Score> allScores;
     private int numScores;
+    private final String fileName;
 
     /**
-     * Constructor to help initialise the class object
+     * Constructor to help initialise the class object, using the game's default score file
      */
     public ScoreFile() {
+        this(DEFAULT_FILE_NAME);
+    }
+
+    /**
+     * Constructor to help initialise the class object using a specific score file
+     * @param fileName holds the name of the score file to load from and save to
+     */
+    public ScoreFile(String fileName) {
+        this.fileName = fileName;
         allScores = new ArrayList<>();
         try {
             loadScores(); //loads in the score
@@ -27,26 +55,13 @@ public class ScoreFile {
         numScores = allScores.size();
     }
 
-    /**
-     * Function to return the highest score in the file
-     * If there are no scores, return -1
-     * @return returns the score
-     */
-    public int getTopScore(){
-        Score score;
-        if (numScores > 0) {
-            score = allScores.get(0);
-            return score.getResult();
-        }
-        return -1;
-    }
-
     /**
      * Function for loading in the scores from a specified score file
      * @throws FileNotFoundException if the file cannot be found
      */
     private void loadScores() throws FileNotFoundException {
-        try (Scanner infile = new Scanner(new BufferedReader(new FileReader("../scores.txt")))) {
+        long start = System.nanoTime();
+        try (Scanner infile = new Scanner(new BufferedReader(new FileReader(fileName)))) {
             allScores.clear();
 
             int scoreResult;
@@ -62,18 +77,24 @@ public class ScoreFile {
 
                 scoreToAdd = new Score(scoreResult, scoreName);
                 allScores.add(scoreToAdd);
+                leaderboard.add(scoreToAdd);
             }
         }
         Collections.sort(allScores); //sorts the scores to make sure they are in the correct order
+        LOAD_TIME.recordSince(start);
     }
 
     /**
      * Function to save the scores to a score file
+     * The scores are written to a temporary file first, which then replaces the score file, so a crash part way through saving
+     * can't leave a half written score file behind
      * @throws IOException if there is an IO error
      */
     private void saveScores() throws IOException {
+        long start = System.nanoTime();
+        File tempFile = new File(fileName + ".tmp");
 
-        try (PrintWriter outfile = new PrintWriter(new BufferedWriter(new FileWriter("../scores.txt")))) {
+        try (PrintWriter outfile = new PrintWriter(new BufferedWriter(new FileWriter(tempFile)))) {
 
             for (int i = 0; i<numScores-1; i++){
                 outfile.println(allScores.get(i).getResult());
@@ -82,6 +103,12 @@ public class ScoreFile {
             outfile.println(allScores.get(numScores-1).getResult());
             outfile.print(allScores.get(numScores-1).getName()); //the last score name get printed without a line at the end so that the file don't have an erroneous empty line
         }
+        try {
+            Files.move(tempFile.toPath(), Paths.get(fileName), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempFile.toPath(), Paths.get(fileName), StandardCopyOption.REPLACE_EXISTING);
+        }
+        SAVE_TIME.recordSince(start);
     }
 
     /**
@@ -89,25 +116,49 @@ public class ScoreFile {
      * @param s holds the score to add
      * @throws IOException if there is an IO error
      */
-    public void addScore(Score s) throws IOException {
+    @Override
+    public synchronized void addScore(Score s) throws IOException {
         allScores.add(s);
+        leaderboard.add(s);
         numScores++;
         Collections.sort(allScores); //sorts scores before saving them
         saveScores();
     }
 
     /**
-     * Method for returning the top 10 (if possible) scores to the calling function as a string
-     * @return returns the string
+     * Method for adding a batch of scores to the arrayList, which only sorts and rewrites the file once
+     * @param scores holds the scores to add
+     * @throws IOException if there is an IO error
      */
     @Override
-    public String toString() {
-        int offset = 1; //needed so that the first score rank doesn't start at 0.
-        StringBuilder sb = new StringBuilder("| The top scores are as follows:\n");
-        for (int i=0; i<numScores; i++){
-            sb.append("|").append(i + offset).append(".   ").append(allScores.get(i).toString());
-            sb.append("\n");
+    public synchronized void addScores(List<Score> scores) throws IOException {
+        if (scores.isEmpty()) {
+            return;
+        }
+        for (Score s : scores) {
+            allScores.add(s);
+            leaderboard.add(s);
         }
-        return sb.toString();
+        numScores += scores.size();
+        Collections.sort(allScores);
+        saveScores();
+    }
+
+    @Override
+    public synchronized List<Score> getScores() {
+        return new ArrayList<>(allScores);
+    }
+
+    @Override
+    public synchronized List<Score> getScores(int from, int count) {
+        if (from >= numScores || count <= 0) {
+            return new ArrayList<>();
+        }
+        return new ArrayList<>(allScores.subList(from, Math.min(numScores, from + count)));
+    }
+
+    @Override
+    public synchronized int numScores() {
+        return numScores;
     }
 }
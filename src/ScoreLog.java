@@ -0,0 +1,343 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class to blueprint a score store that saves its scores as an append-only log.
+ * Saving a score only appends one small record to the end of the file, rather than rewriting the whole file,
+ * and the scores are kept sorted in memory in a skip list so the top score is always at the front.
+ * Every so often the log is compacted in the background, which rewrites it in sorted order (dropping anything
+ * half written), so loading it next time is quicker.
+ * The first time the log is made, any scores in the old text score file are imported into it.
+ *
+ * The file starts with a 4 byte header ("PSL1"), followed by records of [int result][short name length][name in UTF-8]
+ *
+ * @author Owain Gibson
+ * @version 1.0
+ */
+public class ScoreLog extends ScoreStore {
+    /**
+     * The score log that the game uses by default
+     */
+    public static final String DEFAULT_FILE_NAME = "../scores.log";
+
+    /**
+     * The number of scores appended between background compactions
+     */
+    public static final int COMPACT_EVERY = 1000;
+
+    private static final int MAGIC = 0x50534c31; //"PSL1"
+    private static final int HEADER_SIZE = 4;
+    private static final int RECORD_HEADER_SIZE = 6;
+    private static final int MAX_NAME_BYTES = Short.MAX_VALUE;
+
+    private final Path path;
+    private final Path tempPath;
+    private final Object lock = new Object();
+
+    /**
+     * The scores, keyed by (result << 32 | order added), so that scores with the same result are all kept and stay in
+     * the order they were added
+     */
+    private final ConcurrentSkipListMap<Long, Score> index = new ConcurrentSkipListMap<>();
+
+    private final ExecutorService compactor;
+    private FileChannel channel;
+    private volatile int numScores;
+    private int nextSequence;
+    private int appendsSinceCompaction;
+    private boolean compactionQueued;
+
+    /**
+     * Constructor to open a score log without importing any old scores
+     * @param fileName holds the name of the log file
+     * @throws IOException if the log cannot be opened or isn't a score log
+     */
+    public ScoreLog(String fileName) throws IOException {
+        this(fileName, null);
+    }
+
+    /**
+     * Constructor to open a score log, and import the scores from a text score file if the log doesn't exist yet
+     * @param fileName holds the name of the log file
+     * @param importFileName holds the name of the text score file to import from (or null to not import anything)
+     * @throws IOException if the log cannot be opened or isn't a score log
+     */
+    public ScoreLog(String fileName, String importFileName) throws IOException {
+        path = Paths.get(fileName);
+        tempPath = Paths.get(fileName + ".tmp");
+        boolean isNew = !Files.exists(path) || Files.size(path) == 0;
+
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (isNew) {
+            channel.write(ByteBuffer.allocate(HEADER_SIZE).putInt(0, MAGIC));
+            if (importFileName != null && Files.exists(Paths.get(importFileName))) {
+                importScores(new ScoreFile(importFileName).getScores());
+            }
+        } else {
+            loadScores();
+        }
+
+        compactor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "score-log-compactor");
+            t.setDaemon(true); //so a compaction never stops the game from closing
+            return t;
+        });
+    }
+
+    /**
+     * Method for reading the whole log into the index
+     * If the last record was only half written (e.g. the game was killed while saving), it is cut off the end of the file
+     * @throws IOException if there is an IO error or the file isn't a score log
+     */
+    private void loadScores() throws IOException {
+        long size = channel.size();
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("The score log " + path + " is too big to load.");
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) size);
+        while (buffer.hasRemaining() && channel.read(buffer, buffer.position()) >= 0) {
+            //keeps reading until the whole file is in the buffer
+        }
+        buffer.flip();
+
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC) {
+            throw new IOException(path + " is not a score log.");
+        }
+
+        int validEnd = buffer.position();
+        while (buffer.remaining() >= RECORD_HEADER_SIZE) {
+            int result = buffer.getInt();
+            int nameLength = buffer.getShort() & 0xffff;
+            if (buffer.remaining() < nameLength) {
+                break;
+            }
+            String name = new String(buffer.array(), buffer.position(), nameLength, StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + nameLength);
+            addToIndex(new Score(result, name));
+            validEnd = buffer.position();
+        }
+
+        if (validEnd < size) {
+            System.err.println("The end of the score log was damaged, the last score could not be loaded.");
+            channel.truncate(validEnd);
+        }
+        channel.position(validEnd);
+    }
+
+    /**
+     * Method for adding scores from the old score file to a new log
+     * @param scores holds the scores to import
+     * @throws IOException if there is an IO error
+     */
+    private void importScores(List<Score> scores) throws IOException {
+        for (Score s : scores) {
+            writeFully(channel, encode(s));
+            addToIndex(s);
+        }
+    }
+
+    /**
+     * Method for adding a score to the log, which appends one record to the end of the file
+     * @param s holds the score to add
+     * @throws IOException if there is an IO error
+     */
+    @Override
+    public void addScore(Score s) throws IOException {
+        ByteBuffer record = encode(s);
+        synchronized (lock) {
+            writeFully(channel, record);
+            addToIndex(s);
+            appendsSinceCompaction++;
+            if (appendsSinceCompaction >= COMPACT_EVERY && !compactionQueued && !compactor.isShutdown()) {
+                compactionQueued = true;
+                compactor.execute(this::compactQuietly);
+            }
+        }
+    }
+
+    /**
+     * Method for adding a batch of scores to the log with one write, which is then forced to disk once for the whole batch
+     * @param scores holds the scores to add
+     * @throws IOException if there is an IO error
+     */
+    @Override
+    public void addScores(List<Score> scores) throws IOException {
+        List<ByteBuffer> records = new ArrayList<>(scores.size());
+        int total = 0;
+        for (Score s : scores) {
+            ByteBuffer record = encode(s);
+            records.add(record);
+            total += record.remaining();
+        }
+        ByteBuffer batch = ByteBuffer.allocate(total);
+        for (ByteBuffer record : records) {
+            batch.put(record);
+        }
+        batch.flip();
+
+        synchronized (lock) {
+            writeFully(channel, batch);
+            channel.force(false);
+            for (Score s : scores) {
+                addToIndex(s);
+            }
+            appendsSinceCompaction += scores.size();
+            if (appendsSinceCompaction >= COMPACT_EVERY && !compactionQueued && !compactor.isShutdown()) {
+                compactionQueued = true;
+                compactor.execute(this::compactQuietly);
+            }
+        }
+    }
+
+    /**
+     * Method to put a score into the in-memory index and the leaderboard
+     * @param s holds the score to add
+     */
+    private void addToIndex(Score s) {
+        index.put(((long) s.getResult() << 32) | (nextSequence++ & 0xffffffffL), s);
+        leaderboard.add(s);
+        numScores++;
+    }
+
+    /**
+     * Method to turn a score into a log record
+     * @param s holds the score
+     * @return returns the record, ready to write
+     */
+    private static ByteBuffer encode(Score s) {
+        byte[] name = s.getName().getBytes(StandardCharsets.UTF_8);
+        if (name.length > MAX_NAME_BYTES) {
+            throw new IllegalArgumentException("The name is too long to be saved.");
+        }
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + name.length);
+        record.putInt(s.getResult()).putShort((short) name.length).put(name);
+        record.flip();
+        return record;
+    }
+
+    /**
+     * Method to write the whole of a buffer to a channel
+     * @param out holds the channel to write to
+     * @param buffer holds the bytes to write
+     * @throws IOException if there is an IO error
+     */
+    private static void writeFully(FileChannel out, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+
+    /**
+     * Method run by the background thread to compact the log, any error just leaves the old log in place
+     */
+    private void compactQuietly() {
+        try {
+            compact();
+        } catch (IOException e) {
+            System.err.println("The score log could not be compacted: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Method to rewrite the log in sorted order.
+     * Most of the work is done without holding the lock, so the game can keep adding scores while it runs.
+     * Any scores added in the meantime are copied across from the end of the old log before the new log replaces it
+     * @throws IOException if there is an IO error
+     */
+    public void compact() throws IOException {
+        List<Score> scores;
+        long copiedUpTo;
+        synchronized (lock) {
+            compactionQueued = false;
+            appendsSinceCompaction = 0;
+            scores = new ArrayList<>(index.values());
+            copiedUpTo = channel.position();
+        }
+
+        try (FileChannel out = FileChannel.open(tempPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+            buffer.putInt(MAGIC);
+            for (Score s : scores) {
+                ByteBuffer record = encode(s);
+                if (record.remaining() > buffer.remaining()) {
+                    buffer.flip();
+                    writeFully(out, buffer);
+                    buffer.clear();
+                }
+                if (record.remaining() > buffer.capacity()) {
+                    writeFully(out, record);
+                } else {
+                    buffer.put(record);
+                }
+            }
+            buffer.flip();
+            writeFully(out, buffer);
+
+            synchronized (lock) {
+                if (!channel.isOpen()) {
+                    return; //the log was closed while compacting, so the old log is left alone
+                }
+                long end = channel.position();
+                while (copiedUpTo < end) {
+                    copiedUpTo += channel.transferTo(copiedUpTo, end - copiedUpTo, out);
+                }
+                out.force(true);
+                channel.close();
+                try {
+                    Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING);
+                }
+                channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                channel.position(channel.size());
+            }
+        }
+    }
+
+    @Override
+    public List<Score> getScores() {
+        return new ArrayList<>(index.values());
+    }
+
+    @Override
+    public List<Score> getScores(int from, int count) {
+        return pageOf(index, from, count);
+    }
+
+    @Override
+    public int numScores() {
+        return numScores;
+    }
+
+    /**
+     * Method to close the log, waiting for any compaction that is running to finish first
+     * @throws IOException if there is an IO error
+     */
+    @Override
+    public void close() throws IOException {
+        compactor.shutdown();
+        try {
+            compactor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (lock) {
+            channel.close();
+        }
+    }
+}
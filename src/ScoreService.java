@@ -0,0 +1,416 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Class to let many game sessions save scores to the same score store at the same time without losing any.
+ * Sessions hand their scores to the service through a lock-free queue, and a single writer thread takes everything
+ * that is waiting and saves it as one batch (a group commit), so the store only ever has one writer and one fsync
+ * covers every session that was waiting. The more sessions are saving at once, the bigger the batches get.
+ * Reading the scores goes straight to the store, whose index and leaderboard are safe to read while the writer is adding to them.
+ *
+ * Games in the same JVM share one service by calling openSession(), and the service is closed when the last session is closed.
+ *
+ * Running it from the command line runs a stress test instead:
+ * java ScoreService [max sessions] [scores per session] [log|mapped|text]
+ *
+ * @author Owain Gibson
+ * @version 1.0
+ */
+public class ScoreService {
+    /**
+     * The most scores saved in one batch
+     */
+    public static final int MAX_BATCH = 1024;
+
+    /**
+     * How long each batch takes to commit, and how long each score waits from being handed in until it is saved (see Metrics)
+     */
+    private static final Metrics.Histogram COMMIT_TIME = Metrics.histogram("scores.commit");
+    private static final Metrics.Histogram SAVE_TIME = Metrics.histogram("scores.save");
+
+    private static ScoreService shared;
+    private static int openSessions;
+
+    private final ScoreStore store;
+    private final ConcurrentLinkedQueue<Pending> queue = new ConcurrentLinkedQueue<>();
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    private final LongAdder submitted = new LongAdder();
+    private volatile long committed;
+    private volatile long batches;
+    private volatile int largestBatch;
+
+    /**
+     * Class to hold a score waiting to be saved, and the future to complete once it has been
+     */
+    private static class Pending {
+        private final Score score;
+        private final CompletableFuture<Void> saved = new CompletableFuture<>();
+        private final long submittedAt = System.nanoTime();
+
+        private Pending(Score score) {
+            this.score = score;
+        }
+    }
+
+    /**
+     * Constructor to start a score service saving to the given store
+     * @param store holds the store to save the scores to, which only the service's writer thread should add to from now on
+     */
+    public ScoreService(ScoreStore store) {
+        this.store = store;
+        writer = new Thread(this::writeLoop, "score-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Method to open a session on the score service shared by every game in this JVM, starting the service if needed
+     * @return returns the session, which is used like any other score store
+     * @throws IOException if the score store cannot be opened
+     */
+    public static ScoreStore openSession() throws IOException {
+        synchronized (ScoreService.class) {
+            if (shared == null) {
+                shared = new ScoreService(ScoreStore.open());
+            }
+            openSessions++;
+            return new Session(shared);
+        }
+    }
+
+    /**
+     * Method called when a session on the shared service is closed, which closes the service once no sessions are left
+     * @throws IOException if there is an IO error closing the store
+     */
+    private static void closeSession() throws IOException {
+        ScoreService toClose = null;
+        synchronized (ScoreService.class) {
+            if (--openSessions == 0) {
+                toClose = shared;
+                shared = null;
+            }
+        }
+        if (toClose != null) {
+            toClose.close();
+        }
+    }
+
+    /**
+     * Method to hand a score to the writer thread
+     * @param s holds the score to save
+     * @return returns a future that completes once the score is saved (or fails with the IO error if it couldn't be)
+     * @throws IllegalStateException if the service has been closed
+     */
+    public CompletableFuture<Void> submit(Score s) {
+        if (!running) {
+            throw new IllegalStateException("The score service has been closed.");
+        }
+        Pending pending = new Pending(s);
+        queue.offer(pending);
+        submitted.increment();
+        if (!running && queue.remove(pending)) { //close() started after the check above, and the writer and close() may both have
+            // finished with the queue already, so nothing else would ever complete this score
+            pending.saved.completeExceptionally(new IOException("The score service has been closed."));
+            return pending.saved;
+        }
+        LockSupport.unpark(writer);
+        return pending.saved;
+    }
+
+    /**
+     * Method to save a score and wait until it is on disk
+     * @param s holds the score to save
+     * @throws IOException if the score couldn't be saved
+     */
+    public void addScore(Score s) throws IOException {
+        try {
+            submit(s).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted whilst waiting for the score to be saved", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Method run by the writer thread, which saves everything waiting in the queue as one batch until the service is closed
+     */
+    private void writeLoop() {
+        List<Pending> batch = new ArrayList<>(MAX_BATCH);
+        List<Score> scores = new ArrayList<>(MAX_BATCH);
+        while (running || !queue.isEmpty()) {
+            Pending next;
+            while (batch.size() < MAX_BATCH && (next = queue.poll()) != null) {
+                batch.add(next);
+                scores.add(next.score);
+            }
+            if (batch.isEmpty()) {
+                LockSupport.park(this); //submit() unparks the writer, and an unpark before the park isn't lost
+                continue;
+            }
+
+            try {
+                long start = System.nanoTime();
+                store.addScores(scores);
+                long end = System.nanoTime();
+                COMMIT_TIME.record(end - start);
+                for (Pending p : batch) {
+                    SAVE_TIME.record(end - p.submittedAt);
+                    p.saved.complete(null);
+                }
+            } catch (IOException | RuntimeException e) {
+                for (Pending p : batch) {
+                    p.saved.completeExceptionally(e);
+                }
+            }
+            committed += batch.size();
+            batches++;
+            largestBatch = Math.max(largestBatch, batch.size());
+            batch.clear();
+            scores.clear();
+        }
+    }
+
+    /**
+     * Method to stop the service, once every score already handed to it has been saved, and then close the store
+     * @throws IOException if there is an IO error closing the store
+     */
+    public void close() throws IOException {
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        Pending late;
+        while ((late = queue.poll()) != null) { //scores handed in just as the service closed are failed rather than left waiting forever
+            late.saved.completeExceptionally(new IOException("The score service has been closed."));
+        }
+        store.close();
+    }
+
+    /**
+     * Method to return the store the service saves to
+     * @return returns the store
+     */
+    public ScoreStore getStore() {
+        return store;
+    }
+
+    /**
+     * Method to return the number of scores handed to the service
+     * @return returns the number
+     */
+    public long getSubmitted() {
+        return submitted.sum();
+    }
+
+    /**
+     * Method to return the number of scores the writer has saved (or failed to save)
+     * @return returns the number
+     */
+    public long getCommitted() {
+        return committed;
+    }
+
+    /**
+     * Method to return the number of batches the writer has saved
+     * @return returns the number
+     */
+    public long getBatches() {
+        return batches;
+    }
+
+    /**
+     * Method to return the size of the biggest batch saved so far
+     * @return returns the size
+     */
+    public int getLargestBatch() {
+        return largestBatch;
+    }
+
+    @Override
+    public String toString() {
+        long b = batches;
+        return "Scores saved: " + committed + "  Batches: " + b + "  Mean batch: "
+                + String.format("%.1f", b == 0 ? 0.0 : (double) committed / b) + "  Largest batch: " + largestBatch;
+    }
+
+    /**
+     * A game's view of the shared service. Scores are saved through the service's writer, everything else is read from the store
+     */
+    private static class Session extends ScoreStore {
+        private final ScoreService service;
+        private boolean closed;
+
+        private Session(ScoreService service) {
+            this.service = service;
+        }
+
+        @Override
+        public void addScore(Score s) throws IOException {
+            service.addScore(s);
+        }
+
+        @Override
+        public void addScores(List<Score> scores) throws IOException {
+            List<CompletableFuture<Void>> saved = new ArrayList<>(scores.size());
+            for (Score s : scores) {
+                saved.add(service.submit(s));
+            }
+            try {
+                CompletableFuture.allOf(saved.toArray(new CompletableFuture<?>[0])).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted whilst waiting for the scores to be saved", e);
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+            }
+        }
+
+        @Override
+        public int getTopScore() {
+            return service.store.getTopScore();
+        }
+
+        @Override
+        public List<Score> topScores(int k) {
+            return service.store.topScores(k);
+        }
+
+        @Override
+        public int rankOf(int result) {
+            return service.store.rankOf(result);
+        }
+
+        @Override
+        public Score bestFor(String name) {
+            return service.store.bestFor(name);
+        }
+
+        @Override
+        public List<Score> getScores() {
+            return service.store.getScores();
+        }
+
+        @Override
+        public List<Score> getScores(int from, int count) {
+            return service.store.getScores(from, count);
+        }
+
+        @Override
+        public int numScores() {
+            return service.store.numScores();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!closed) {
+                closed = true;
+                closeSession();
+            }
+        }
+    }
+
+    /**
+     * Method to run the stress test: for 1, 2, 4... up to the max number of sessions, every session saves its scores
+     * at the same time (each waiting for its score to be saved before saving the next, like a real game).
+     * The store is then opened again from disk to check that every score made it, and the throughput is printed
+     * @param args holds the max sessions, scores per session and kind of store (all optional)
+     * @throws Exception if the stress test fails
+     */
+    public static void main(String[] args) throws Exception {
+        int maxSessions = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int scoresPerSession = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+        String kind = args.length > 2 ? args[2] : "log";
+
+        System.out.println("Sessions   Scores   Seconds   Scores/sec   Batches   Mean batch   Lost");
+        for (int sessions = 1; sessions <= maxSessions; sessions *= 2) {
+            Path file = Files.createTempFile("scores", "." + kind);
+            Files.delete(file); //the stores write their own headers when the file doesn't exist
+            ScoreService service = new ScoreService(openStore(kind, file.toString()));
+
+            Thread[] threads = new Thread[sessions];
+            for (int t = 0; t < sessions; t++) {
+                final int session = t;
+                threads[t] = new Thread(() -> {
+                    try {
+                        for (int i = 0; i < scoresPerSession; i++) {
+                            service.addScore(new Score(1 + (session * 31 + i) % 52, "s" + session + "n" + i));
+                        }
+                    } catch (IOException e) {
+                        throw new IllegalStateException(e);
+                    }
+                });
+            }
+            long start = System.nanoTime();
+            for (Thread t : threads) {
+                t.start();
+            }
+            for (Thread t : threads) {
+                t.join();
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            long batches = service.getBatches();
+            service.close();
+
+            //opens the store again from disk to check nothing was lost
+            ScoreStore reopened = openStore(kind, file.toString());
+            Set<String> names = new HashSet<>();
+            for (Score s : reopened.getScores()) {
+                names.add(s.getName());
+            }
+            reopened.close();
+            int lost = 0;
+            for (int t = 0; t < sessions; t++) {
+                for (int i = 0; i < scoresPerSession; i++) {
+                    if (!names.contains("s" + t + "n" + i)) {
+                        lost++;
+                    }
+                }
+            }
+            Files.deleteIfExists(file);
+
+            int total = sessions * scoresPerSession;
+            System.out.println(String.format("%8d %8d %9.2f %12.0f %9d %12.1f %6d",
+                    sessions, total, seconds, total / seconds, batches, (double) total / batches, lost));
+            if (lost > 0 || names.size() != total) {
+                throw new IllegalStateException(lost + " scores were lost with " + sessions + " sessions");
+            }
+        }
+    }
+
+    /**
+     * Method to open a score store of the given kind for the stress test
+     * @param kind holds the kind of store ("log", "mapped" or "text")
+     * @param fileName holds the file to use
+     * @return returns the store
+     * @throws IOException if the store cannot be opened
+     */
+    private static ScoreStore openStore(String kind, String fileName) throws IOException {
+        if (kind.equalsIgnoreCase("text")) {
+            return new ScoreFile(fileName);
+        }
+        if (kind.equalsIgnoreCase("mapped")) {
+            return new MappedScoreLog(fileName);
+        }
+        return new ScoreLog(fileName);
+    }
+}
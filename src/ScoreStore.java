@@ -0,0 +1,200 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableMap;
+
+/**
+ * Abstract class to specify how a store of scores should behave, so that the game doesn't need to know
+ * which kind of file its scores are saved in.
+ * The text score file (ScoreFile), the append-only score log (ScoreLog) and the memory-mapped score log (MappedScoreLog)
+ * are all kinds of score store
+ *
+ * @author Owain Gibson
+ * @version 1.0
+ */
+public abstract class ScoreStore implements Closeable {
+    /**
+     * The system property used to pick the kind of score store the game uses ("log", "mapped" or "text")
+     */
+    public static final String STORE_PROPERTY = "patience.scoreStore";
+
+    /**
+     * The longest name that every kind of score store can save
+     */
+    public static final int MAX_NAME_LENGTH = 50;
+
+    /**
+     * Every kind of store adds its scores to the leaderboard as it loads and saves them, so the top scores, ranks and
+     * players' best scores never need the whole list
+     */
+    protected final Leaderboard leaderboard = new Leaderboard();
+
+    /**
+     * Method to open the score store that the game should use.
+     * By default this is the score log (see STORE_PROPERTY for the others), which imports the old text score file the first time it is created
+     * @return returns the score store
+     * @throws IOException if the score log cannot be opened
+     */
+    public static ScoreStore open() throws IOException {
+        String kind = System.getProperty(STORE_PROPERTY, "log");
+        if (kind.equalsIgnoreCase("text")) {
+            return new ScoreFile();
+        }
+        if (kind.equalsIgnoreCase("mapped")) {
+            return new MappedScoreLog(MappedScoreLog.DEFAULT_FILE_NAME, ScoreFile.DEFAULT_FILE_NAME);
+        }
+        return new ScoreLog(ScoreLog.DEFAULT_FILE_NAME, ScoreFile.DEFAULT_FILE_NAME);
+    }
+
+    /**
+     * Method for adding a score to the store and saving it
+     * @param s holds the score to add
+     * @throws IOException if there is an IO error
+     */
+    public abstract void addScore(Score s) throws IOException;
+
+    /**
+     * Method for adding a batch of scores to the store and saving them together.
+     * Stores that can save a batch more cheaply than one score at a time (e.g. with one write and one fsync) override this
+     * @param scores holds the scores to add
+     * @throws IOException if there is an IO error
+     */
+    public void addScores(List<Score> scores) throws IOException {
+        for (Score s : scores) {
+            addScore(s);
+        }
+    }
+
+    /**
+     * Function to return the best (lowest) score in the store
+     * If there are no scores, return -1
+     * @return returns the score
+     */
+    public int getTopScore() {
+        return leaderboard.getTopResult();
+    }
+
+    /**
+     * Method to return the best scores in the store, best first
+     * @param k holds the number of scores wanted
+     * @return returns up to k scores
+     */
+    public List<Score> topScores(int k) {
+        if (k <= leaderboard.getSize()) {
+            return leaderboard.topK(k);
+        }
+        return getScores(0, k);
+    }
+
+    /**
+     * Method to work out the rank a new score with the given result would get (1 is the best)
+     * @param result holds the result
+     * @return returns the rank
+     */
+    public int rankOf(int result) {
+        return leaderboard.rankOf(result);
+    }
+
+    /**
+     * Method to return a player's best score
+     * @param name holds the player's name
+     * @return returns the score, or null if the player has no scores
+     */
+    public Score bestFor(String name) {
+        return leaderboard.bestFor(name);
+    }
+
+    /**
+     * Method to return one page of the scores, best first
+     * @param pageNumber holds the page to return (starting at 0)
+     * @param pageSize holds the number of scores on each page
+     * @return returns the scores on the page, which is empty if there aren't that many pages
+     */
+    public List<Score> getPage(int pageNumber, int pageSize) {
+        return getScores(pageNumber * pageSize, pageSize);
+    }
+
+    /**
+     * Method to return every score in the store, best first
+     * @return returns the scores (a copy, so changing it won't change the store)
+     */
+    public abstract List<Score> getScores();
+
+    /**
+     * Method to return some of the scores in the store, best first
+     * @param from holds the position of the first score to return (0 is the best score)
+     * @param count holds the most scores to return
+     * @return returns the scores
+     */
+    public abstract List<Score> getScores(int from, int count);
+
+    /**
+     * Method to return the number of scores in the store
+     * @return returns the number
+     */
+    public abstract int numScores();
+
+    /**
+     * Method for the stores that keep their scores in a map keyed by (result << 32 | order added) to find some of their scores.
+     * The leaderboard says which result the first score has, so the map can jump straight to it rather than
+     * going through every better score
+     * @param index holds the store's scores
+     * @param from holds the position of the first score to return (0 is the best score)
+     * @param count holds the most scores to return
+     * @return returns the scores
+     */
+    protected List<Score> pageOf(NavigableMap<Long, Score> index, int from, int count) {
+        List<Score> page = new ArrayList<>();
+        int result = leaderboard.resultAt(from);
+        if (result == -1 || count <= 0) {
+            return page;
+        }
+        int skip = from - leaderboard.countBetterOrEqual(result - 1);
+        Iterator<Score> it = index.tailMap((long) result << 32).values().iterator();
+        while (skip > 0 && it.hasNext()) {
+            it.next();
+            skip--;
+        }
+        while (page.size() < count && it.hasNext()) {
+            page.add(it.next());
+        }
+        return page;
+    }
+
+    /**
+     * Method to close the store once the game is finished with it.
+     * By default there is nothing to close
+     * @throws IOException if there is an IO error
+     */
+    @Override
+    public void close() throws IOException {
+    }
+
+    /**
+     * Method for returning a page of scores to the calling function as a string, with each score's rank
+     * @param pageNumber holds the page to show (starting at 0)
+     * @param pageSize holds the number of scores on each page
+     * @return returns the string
+     */
+    public String pageToString(int pageNumber, int pageSize) {
+        int offset = pageNumber * pageSize + 1; //needed so that the first score rank doesn't start at 0.
+        List<Score> scores = getPage(pageNumber, pageSize);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < scores.size(); i++) {
+            sb.append("|").append(i + offset).append(".   ").append(scores.get(i).toString());
+            sb.append("\n");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Method for returning the top 10 (if possible) scores to the calling function as a string
+     * @return returns the string
+     */
+    @Override
+    public String toString() {
+        return "| The top scores are as follows:\n" + pageToString(0, Leaderboard.DEFAULT_SIZE);
+    }
+}
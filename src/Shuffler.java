@@ -0,0 +1,272 @@
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Class holding the shuffles used by the game, the simulator and the deal files.
+ * A shuffle is an in-place Fisher-Yates shuffle over packed cards (see PackedCard), driven by a DeckRandom,
+ * so nothing is shared between threads and nothing is created per deal.
+ *
+ * Every deal of a simulation (or deal file) has its own seed worked out from the simulation's seed and the deal's number,
+ * so any deal can be made again from those two numbers (or from the one 64 bit deal seed).
+ * A pack of 52 cards has 52! orders, which needs 226 bits, so a 64 bit number can't name every one of them directly.
+ * Instead every order also has an exact number (its deal index) from its Lehmer code, which is kept as a BigInteger
+ *
+ * @author Owain Gibson
+ * @version 1.0
+ */
+public class Shuffler {
+    /**
+     * Method to shuffle packed cards in place
+     * @param deck holds the cards to shuffle
+     * @param random holds the generator to use
+     */
+    public static void shuffle(byte[] deck, DeckRandom random) {
+        shuffle(deck, 0, deck.length, random);
+    }
+
+    /**
+     * Method to shuffle part of an array of packed cards in place with a Fisher-Yates shuffle
+     * @param deck holds the cards to shuffle
+     * @param from holds the index of the first card to shuffle
+     * @param to holds the index after the last card to shuffle
+     * @param random holds the generator to use
+     */
+    public static void shuffle(byte[] deck, int from, int to, DeckRandom random) {
+        for (int i = to - 1; i > from; i--) {
+            int j = from + random.nextInt(i - from + 1);
+            byte temp = deck[i];
+            deck[i] = deck[j];
+            deck[j] = temp;
+        }
+    }
+
+    /**
+     * Method to shuffle packed cards in place with the SplitMix64 generator (the default generator, see DeckRandom)
+     * @param deck holds the cards to shuffle
+     * @param seed holds the seed for this deal
+     */
+    public static void shuffle(byte[] deck, long seed) {
+        shuffle(deck, new SplitMixRandom(seed));
+    }
+
+    /**
+     * Method to work out the seed of a deal from the simulation's (or deal file's) seed and the deal's number
+     * @param seed holds the simulation's seed
+     * @param deal holds the deal's number
+     * @return returns the deal's seed
+     */
+    public static long dealSeed(long seed, long deal) {
+        return SplitMixRandom.mix(seed + deal * 0x9e3779b97f4a7c15L);
+    }
+
+    /**
+     * Method to make a deal again from its number
+     * @param template holds the packed cards of the pack before it is shuffled
+     * @param seed holds the simulation's seed
+     * @param deal holds the deal's number
+     * @param random holds the generator to use (its seed is set to the deal's seed)
+     * @param into holds the array to put the deal into (must be as long as the template)
+     */
+    public static void deal(byte[] template, long seed, long deal, DeckRandom random, byte[] into) {
+        System.arraycopy(template, 0, into, 0, template.length);
+        random.setSeed(dealSeed(seed, deal));
+        shuffle(into, random);
+    }
+
+    /**
+     * Method to return the number of different deals of a pack
+     * @param numCards holds the number of cards in the pack
+     * @return returns numCards!
+     */
+    public static BigInteger numDeals(int numCards) {
+        BigInteger total = BigInteger.ONE;
+        for (int i = 2; i <= numCards; i++) {
+            total = total.multiply(BigInteger.valueOf(i));
+        }
+        return total;
+    }
+
+    /**
+     * Method to work out the Lehmer code of a deal: for each card, how many of the cards after it came before it in the template.
+     * Cards that are in the pack more than once are matched up in order, so the code is always valid
+     * @param template holds the packed cards of the pack before it is shuffled (at most 64 cards)
+     * @param deck holds the deal
+     * @return returns the Lehmer code, one digit per card
+     * @throws IllegalArgumentException if the deal isn't an order of the template's cards
+     */
+    public static int[] lehmerCode(byte[] template, byte[] deck) {
+        checkSize(template, deck);
+        int[] code = new int[deck.length];
+        long unused = template.length == 64 ? -1L : (1L << template.length) - 1; //a bit for every template card not yet placed
+        for (int i = 0; i < deck.length; i++) {
+            int position = findUnused(template, unused, deck[i]);
+            if (position == -1) {
+                throw new IllegalArgumentException("The deal isn't an order of the template's cards (" + PackedCard.toString(deck[i]) + " at " + i + ")");
+            }
+            code[i] = Long.bitCount(unused & ((1L << position) - 1));
+            unused &= ~(1L << position);
+        }
+        return code;
+    }
+
+    /**
+     * Method to return the exact number (from 0 to numCards! - 1) of a deal, using its Lehmer code as a mixed radix number.
+     * The template itself is deal 0, and the template backwards is the last deal
+     * @param template holds the packed cards of the pack before it is shuffled (at most 64 cards)
+     * @param deck holds the deal
+     * @return returns the deal's index
+     * @throws IllegalArgumentException if the deal isn't an order of the template's cards
+     */
+    public static BigInteger dealIndex(byte[] template, byte[] deck) {
+        int[] code = lehmerCode(template, deck);
+        int n = code.length;
+        //the digits are added up in a long until it might overflow, so the BigInteger is only touched a few times
+        BigInteger index = BigInteger.ZERO;
+        long part = 0;
+        long radix = 1;
+        for (int i = 0; i < n; i++) {
+            int base = n - i;
+            if (radix > Long.MAX_VALUE / 64 / base) {
+                index = index.multiply(BigInteger.valueOf(radix)).add(BigInteger.valueOf(part));
+                part = 0;
+                radix = 1;
+            }
+            part = part * base + code[i];
+            radix *= base;
+        }
+        return index.multiply(BigInteger.valueOf(radix)).add(BigInteger.valueOf(part));
+    }
+
+    /**
+     * Method to make the deal with the given number, the opposite of dealIndex()
+     * @param template holds the packed cards of the pack before it is shuffled (at most 64 cards)
+     * @param index holds the deal's index (from 0 to numCards! - 1)
+     * @param into holds the array to put the deal into (must be as long as the template)
+     * @throws IllegalArgumentException if the index is out of range
+     */
+    public static void dealFromIndex(byte[] template, BigInteger index, byte[] into) {
+        checkSize(template, into);
+        int n = template.length;
+        if (index.signum() < 0 || index.compareTo(numDeals(n)) >= 0) {
+            throw new IllegalArgumentException("There is no deal " + index + " of a " + n + " card pack");
+        }
+
+        int[] code = new int[n];
+        BigInteger rest = index;
+        for (int i = n - 1; i >= 0; i--) {
+            BigInteger[] qr = rest.divideAndRemainder(BigInteger.valueOf(n - i));
+            code[i] = qr[1].intValue();
+            rest = qr[0];
+        }
+
+        long unused = n == 64 ? -1L : (1L << n) - 1;
+        for (int i = 0; i < n; i++) {
+            long bits = unused;
+            for (int skip = code[i]; skip > 0; skip--) { //drops the lowest unused cards until the one wanted is lowest
+                bits &= bits - 1;
+            }
+            int position = Long.numberOfTrailingZeros(bits);
+            into[i] = template[position];
+            unused &= ~(1L << position);
+        }
+    }
+
+    /**
+     * Method to find the first template card equal to a card that hasn't been placed yet
+     * @param template holds the template
+     * @param unused holds a bit for every template card not yet placed
+     * @param card holds the card to look for
+     * @return returns the card's position in the template, or -1 if there isn't one left
+     */
+    private static int findUnused(byte[] template, long unused, byte card) {
+        for (long bits = unused; bits != 0; bits &= bits - 1) {
+            int position = Long.numberOfTrailingZeros(bits);
+            if (template[position] == card) {
+                return position;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Method to check that a deal is the same size as the template, and that the template fits in a long's bits
+     * @param template holds the template
+     * @param deck holds the deal
+     */
+    private static void checkSize(byte[] template, byte[] deck) {
+        if (template.length > 64 || deck.length != template.length) {
+            throw new IllegalArgumentException("The deal has " + deck.length + " cards but the template has " + template.length + " (at most 64)");
+        }
+    }
+
+    /**
+     * Method to check the deal indexes and time the shuffles from the command line
+     * Usage: java Shuffler [generator name, see DeckRandom.NAMES] [shuffles per thread]
+     * The shuffles are timed with 1, 2, 4... threads up to the number of cores, each thread with its own generator
+     * @param args holds the command line arguments
+     * @throws IOException never, since the canonical pack is made in memory
+     * @throws InterruptedException if interrupted while waiting for the threads
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        String name = args.length > 0 ? args[0] : SplitMixRandom.NAME;
+        long perThread = args.length > 1 ? Long.parseLong(args[1]) : 5_000_000L;
+        byte[] template = CanonicalDeckSource.INSTANCE.getPack();
+
+        //every deal should come back from its index, and the ends of the range should be the template forwards and backwards
+        byte[] deck = new byte[template.length];
+        byte[] back = new byte[template.length];
+        DeckRandom random = DeckRandom.forName(name, 0);
+        for (long n = 0; n < 10_000; n++) {
+            deal(template, 42, n, random, deck);
+            dealFromIndex(template, dealIndex(template, deck), back);
+            if (!Arrays.equals(deck, back)) {
+                throw new IllegalStateException("Deal " + n + " did not come back from its index");
+            }
+        }
+        if (dealIndex(template, template).signum() != 0) {
+            throw new IllegalStateException("The template isn't deal 0");
+        }
+        byte[] reversed = new byte[template.length];
+        for (int i = 0; i < template.length; i++) {
+            reversed[i] = template[template.length - 1 - i];
+        }
+        if (!dealIndex(template, reversed).equals(numDeals(template.length).subtract(BigInteger.ONE))) {
+            throw new IllegalStateException("The template backwards isn't the last deal");
+        }
+        deal(template, 42, 0, random, deck);
+        System.out.println("Deal indexes OK (deal 0 of seed 42 is index " + dealIndex(template, deck) + " of " + numDeals(template.length) + ")");
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        for (int threads = 1; ; threads = Math.min(threads * 2, cores)) {
+            AtomicLong checksum = new AtomicLong();
+            Thread[] workers = new Thread[threads];
+            for (int t = 0; t < threads; t++) {
+                long first = t * perThread;
+                workers[t] = new Thread(() -> {
+                    DeckRandom own = DeckRandom.forName(name, 0);
+                    byte[] ownDeck = new byte[template.length];
+                    long sum = 0;
+                    for (long n = first; n < first + perThread; n++) {
+                        deal(template, 42, n, own, ownDeck);
+                        sum += ownDeck[0]; //so the shuffles can't be optimised away
+                    }
+                    checksum.addAndGet(sum);
+                });
+            }
+            long start = System.nanoTime();
+            for (Thread worker : workers) {
+                worker.start();
+            }
+            for (Thread worker : workers) {
+                worker.join();
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("%s, %d thread(s): %,.0f shuffles/s (checksum %d)%n", name, threads, threads * perThread / seconds, checksum.get());
+            if (threads == cores) {
+                break;
+            }
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/**
+ * Class to blueprint the results of a batch of simulated games
+ * It holds a histogram of how many piles were left at the end of each game, and works out the statistics from it
+ *
+ * @author Owain Gibson
+ * @version 1.0
+ */
+public class SimulationResult {
+    /**
+     * The z value used for the 95% confidence intervals
+     */
+    private static final double Z_95 = 1.96;
+
+    private final long[] histogram;
+    private final long numDeals;
+    private final long elapsedNanos;
+
+    /**
+     * Constructor to initialise the object correctly
+     * @param histogram holds the number of games that ended with each number of piles (index = piles left)
+     * @param elapsedNanos holds how long the simulation took to run
+     */
+    public SimulationResult(long[] histogram, long elapsedNanos) {
+        this.histogram = histogram;
+        this.elapsedNanos = elapsedNanos;
+        long total = 0;
+        for (long count : histogram) {
+            total += count;
+        }
+        this.numDeals = total;
+    }
+
+    /**
+     * Method to return the number of games that ended with the given number of piles left
+     * @param piles holds the number of piles
+     * @return returns the number of games
+     */
+    public long getCount(int piles) {
+        if (piles < 0 || piles >= histogram.length) {
+            return 0;
+        }
+        return histogram[piles];
+    }
+
+    /**
+     * Method to return the number of games that were simulated
+     * @return returns the number
+     */
+    public long getNumDeals() {
+        return numDeals;
+    }
+
+    /**
+     * Method to return the mean number of piles left at the end of a game
+     * @return returns the mean
+     */
+    public double getMean() {
+        double sum = 0;
+        for (int piles = 0; piles < histogram.length; piles++) {
+            sum += (double) piles * histogram[piles];
+        }
+        return numDeals == 0 ? 0 : sum / numDeals;
+    }
+
+    /**
+     * Method to return the half-width of the 95% confidence interval of the mean
+     * @return returns the half-width (the interval is mean +/- this)
+     */
+    public double getMeanConfidence() {
+        if (numDeals < 2) {
+            return 0;
+        }
+        double mean = getMean();
+        double squares = 0;
+        for (int piles = 0; piles < histogram.length; piles++) {
+            double diff = piles - mean;
+            squares += diff * diff * histogram[piles];
+        }
+        double standardDeviation = Math.sqrt(squares / (numDeals - 1));
+        return Z_95 * standardDeviation / Math.sqrt(numDeals);
+    }
+
+    /**
+     * Method to return the fraction of games that were won (ended with 1 pile)
+     * @return returns the win rate, between 0 and 1
+     */
+    public double getWinRate() {
+        return numDeals == 0 ? 0 : (double) getCount(1) / numDeals;
+    }
+
+    /**
+     * Method to return the half-width of the 95% confidence interval of the win rate
+     * @return returns the half-width (the interval is win rate +/- this)
+     */
+    public double getWinRateConfidence() {
+        if (numDeals == 0) {
+            return 0;
+        }
+        double p = getWinRate();
+        return Z_95 * Math.sqrt(p * (1 - p) / numDeals);
+    }
+
+    /**
+     * Method to return how many games were simulated every second
+     * @return returns the rate
+     */
+    public double getDealsPerSecond() {
+        return elapsedNanos == 0 ? 0 : numDeals * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * Method to return a summary of the results, including a histogram of the piles left, to the calling function
+     * @return returns the summary as a string
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("| Deals simulated: %d (%.0f deals/second)%n", numDeals, getDealsPerSecond()));
+        sb.append(String.format("| Win rate (1 pile): %.4f%% +/- %.4f%%%n", getWinRate() * 100, getWinRateConfidence() * 100));
+        sb.append(String.format("| Mean piles left: %.3f +/- %.3f%n", getMean(), getMeanConfidence()));
+        sb.append("| Piles left:\n");
+        sb.append(histogramToString());
+        return sb.toString();
+    }
+
+    /**
+     * Method to return the histogram of the piles left as a bar chart, one line for each number of piles that came up
+     * @return returns the bar chart as a string
+     */
+    public String histogramToString() {
+        StringBuilder sb = new StringBuilder();
+        long largest = 1;
+        for (long count : histogram) {
+            largest = Math.max(largest, count);
+        }
+        for (int piles = 0; piles < histogram.length; piles++) {
+            if (histogram[piles] == 0) {
+                continue;
+            }
+            int barLength = (int) (40 * histogram[piles] / largest);
+            sb.append(String.format("| %2d  %10d  %7.3f%%  ", piles, histogram[piles], 100.0 * histogram[piles] / numDeals));
+            for (int i = 0; i < barLength; i++) {
+                sb.append('#');
+            }
+            sb.append("\n");
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,201 @@
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.stream.LongStream;
+
+/**
+ * Class to play lots of games without the GUI or the menu, to find out how often a deal can be won and how many piles are usually left.
+ * The deals are split into chunks which are played across every core with a parallel stream.
+ * Every deal gets its own random seed worked out from the simulation's seed and the deal's number,
+ * so the same seed always gives the same results, no matter how many threads are used
+ *
+ * @author Owain Gibson
+ * @version 1.0
+ */
+public class Simulator {
+    /**
+     * The number of deals handed to a thread at a time
+     */
+    private static final int CHUNK_SIZE = 1024;
+
+    private final byte[] template;
+    private final Strategy strategy;
+    private final String randomName;
+
+    /**
+     * Constructor to set up a simulator that shuffles with the default generator (see DeckRandom.getDefaultName())
+     * @param template holds the packed cards (see PackedCard) of the pack before it is shuffled
+     * @param strategy holds the strategy the computer plays each game with (shared by every thread)
+     */
+    public Simulator(byte[] template, Strategy strategy) {
+        this(template, strategy, DeckRandom.getDefaultName());
+    }
+
+    /**
+     * Constructor to set up a simulator
+     * @param template holds the packed cards (see PackedCard) of the pack before it is shuffled
+     * @param strategy holds the strategy the computer plays each game with (shared by every thread)
+     * @param randomName holds the name of the generator the deals are shuffled with (see DeckRandom.NAMES)
+     */
+    public Simulator(byte[] template, Strategy strategy, String randomName) {
+        this.template = template.clone();
+        this.strategy = strategy;
+        this.randomName = randomName;
+        DeckRandom.forName(randomName, 0); //fails now rather than on every thread if there is no such generator
+    }
+
+    /**
+     * Method to set up a simulator using the pack from the card file (or whichever deck source is picked, see DeckSource),
+     * the same as a new game would
+     * @param strategy holds the strategy the computer plays each game with
+     * @return returns the simulator
+     * @throws IOException if the card file cannot be found (a FileNotFoundException) or isn't a valid pack (a DeckFormatException)
+     */
+    public static Simulator fromCardFile(Strategy strategy) throws IOException {
+        return new Simulator(DeckSource.open().getPack(), strategy);
+    }
+
+    /**
+     * Method to simulate a number of deals across every core
+     * @param numDeals holds the number of deals to play
+     * @param seed holds the seed that the deals are shuffled from
+     * @return returns the results
+     */
+    public SimulationResult run(long numDeals, long seed) {
+        long start = System.nanoTime();
+        long numChunks = (numDeals + CHUNK_SIZE - 1) / CHUNK_SIZE;
+
+        long[] histogram = LongStream.range(0, numChunks).parallel()
+                .mapToObj(chunk -> runChunk(chunk * CHUNK_SIZE, Math.min(numDeals, (chunk + 1) * CHUNK_SIZE), seed))
+                .reduce(new long[template.length + 1], Simulator::addHistograms);
+
+        return new SimulationResult(histogram, System.nanoTime() - start);
+    }
+
+    /**
+     * Method to play every deal in a deal file across every core, in the order they are in the file rather than shuffled,
+     * so every run (and every player) gets the same games. The simulator's own pack isn't used.
+     * Each thread reads its deals straight out of the file's mapping, so the file is never loaded into the heap
+     * @param deals holds the deal file
+     * @return returns the results
+     */
+    public SimulationResult run(DealFile deals) {
+        long start = System.nanoTime();
+        long numChunks = (deals.numDeals() + CHUNK_SIZE - 1) / CHUNK_SIZE;
+
+        long[] histogram = LongStream.range(0, numChunks).parallel()
+                .mapToObj(chunk -> runChunk(deals, chunk * CHUNK_SIZE, Math.min(deals.numDeals(), (chunk + 1) * CHUNK_SIZE)))
+                .reduce(new long[deals.cardsPerDeal() + 1], Simulator::addHistograms);
+
+        return new SimulationResult(histogram, System.nanoTime() - start);
+    }
+
+    /**
+     * Method to play one chunk of the deals from a deal file on the current thread
+     * @param deals holds the deal file
+     * @param firstDeal holds the number of the first deal in the chunk
+     * @param endDeal holds the number after the last deal in the chunk
+     * @return returns a histogram of the piles left for this chunk
+     */
+    private long[] runChunk(DealFile deals, long firstDeal, long endDeal) {
+        long[] histogram = new long[deals.cardsPerDeal() + 1];
+        byte[] deck = new byte[deals.cardsPerDeal()];
+        Engine engine = new Engine();
+
+        for (long deal = firstDeal; deal < endDeal; deal++) {
+            engine.newGame(deck, deals.dealInto(deal, deck));
+            histogram[play(engine)]++;
+        }
+        return histogram;
+    }
+
+    /**
+     * Method to play one chunk of deals on the current thread
+     * The deck, generator and engine are made once per chunk and reused for every deal in it
+     * @param firstDeal holds the number of the first deal in the chunk
+     * @param endDeal holds the number after the last deal in the chunk
+     * @param seed holds the simulation's seed
+     * @return returns a histogram of the piles left for this chunk
+     */
+    private long[] runChunk(long firstDeal, long endDeal, long seed) {
+        long[] histogram = new long[template.length + 1];
+        byte[] deck = new byte[template.length];
+        DeckRandom random = DeckRandom.forName(randomName, 0);
+        Engine engine = new Engine();
+
+        for (long deal = firstDeal; deal < endDeal; deal++) {
+            Shuffler.deal(template, seed, deal, random, deck);
+            engine.newGame(deck, deck.length);
+            histogram[play(engine)]++;
+        }
+        return histogram;
+    }
+
+    /**
+     * Method to play a new game to the end using the simulator's strategy
+     * @param engine holds the game, freshly dealt
+     * @return returns the number of piles left at the end of the game
+     */
+    private int play(Engine engine) {
+        try {
+            for (int move = strategy.chooseMove(engine); move != Move.NONE; move = strategy.chooseMove(engine)) {
+                engine.play(move);
+            }
+            return engine.pilesLeft();
+        } catch (IllegalMoveException e) { //a strategy should only ever pick legal moves
+            throw new IllegalStateException(strategy.getName() + " picked an illegal move", e);
+        }
+    }
+
+    /**
+     * Method to add one histogram onto another, used to combine the results of the chunks
+     * @param total holds the histogram to add onto
+     * @param chunk holds the histogram to add
+     * @return returns the combined histogram
+     */
+    private static long[] addHistograms(long[] total, long[] chunk) {
+        long[] sum = total.clone();
+        for (int i = 0; i < sum.length; i++) {
+            sum[i] += chunk[i];
+        }
+        return sum;
+    }
+
+    /**
+     * Method to run a simulation from the command line, without the GUI
+     * Usage: java Simulator [number of deals] [seed] [strategy name, see Strategy.NAMES] [generator name, see DeckRandom.NAMES]
+     * or: java Simulator [deal file] [strategy name], to play every deal in a deal file (see DealFile)
+     * @param args holds the command line arguments
+     */
+    public static void main(String[] args) {
+        if (args.length > 0 && !args[0].matches("\\d+")) {
+            Strategy strategy = Strategy.forName(args.length > 1 ? args[1] : GreedyLeftmostStrategy.NAME);
+            try {
+                DealFile deals = DealFile.open(args[0]);
+                System.out.println("| Simulating every deal in " + deals + " with the " + strategy.getName() + " strategy");
+                System.out.print(new Simulator(deals.deal(0).getPack(), strategy).run(deals));
+                System.out.println("| " + strategy);
+            } catch (IOException e) {
+                System.err.println(e.getMessage());
+                System.err.println("The deal file could not be loaded, and thus the simulation cannot run.");
+            }
+            return;
+        }
+
+        long numDeals = args.length > 0 ? Long.parseLong(args[0]) : 1_000_000L;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : System.nanoTime();
+        Strategy strategy = Strategy.forName(args.length > 2 ? args[2] : GreedyLeftmostStrategy.NAME);
+        String randomName = args.length > 3 ? args[3] : DeckRandom.getDefaultName();
+
+        try {
+            Simulator simulator = new Simulator(DeckSource.open().getPack(), strategy, randomName);
+            System.out.println("| Simulating " + numDeals + " deals with the " + strategy.getName() + " strategy (seed " + seed + ", " + randomName + " shuffles)");
+            System.out.print(simulator.run(numDeals, seed));
+            System.out.println("| " + strategy);
+        } catch (FileNotFoundException e) {
+            System.err.println("It seems that the file used to load the cards cannot be found, and thus the simulation cannot run.");
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+            System.err.println("The cards could not be loaded, and thus the simulation cannot run.");
+        }
+    }
+}
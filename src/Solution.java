@@ -0,0 +1,85 @@
+/**
+ * Class to blueprint the result of a solver search
+ * It holds the best number of piles that the solver could reach and the moves needed to reach it
+ *
+ * @author Owain Gibson
+ * @version 1.0
+ */
+public class Solution {
+    private final int bestPiles;
+    private final int[] moves;
+    private final boolean exhaustive;
+    private final long positionsSearched;
+
+    /**
+     * Constructor to initialise the object correctly
+     * @param bestPiles holds the lowest number of piles left (table + pack) that was reached
+     * @param moves holds the packed moves (see the Move class) that reach that number of piles
+     * @param exhaustive holds whether the search finished, rather than being stopped by its position limit
+     * @param positionsSearched holds the number of positions the solver looked at
+     */
+    public Solution(int bestPiles, int[] moves, boolean exhaustive, long positionsSearched) {
+        this.bestPiles = bestPiles;
+        this.moves = moves;
+        this.exhaustive = exhaustive;
+        this.positionsSearched = positionsSearched;
+    }
+
+    /**
+     * Method to return the best number of piles reached
+     * @return returns the number of piles
+     */
+    public int getBestPiles() {
+        return bestPiles;
+    }
+
+    /**
+     * Method to return the moves that reach the best number of piles
+     * @return returns the packed moves
+     */
+    public int[] getMoves() {
+        return moves;
+    }
+
+    /**
+     * Method to check if the search covered every reachable position
+     * If it did, then the best number of piles is guaranteed to be the best possible result for the deal
+     * @return returns the result
+     */
+    public boolean isExhaustive() {
+        return exhaustive;
+    }
+
+    /**
+     * Method to return the number of positions the solver looked at
+     * @return returns the number
+     */
+    public long getPositionsSearched() {
+        return positionsSearched;
+    }
+
+    /**
+     * Method to check if the deal can be won from the position the solver started at
+     * @return returns true if the solver reached 1 pile
+     */
+    public boolean isSolved() {
+        return bestPiles == 1;
+    }
+
+    /**
+     * Method to return a summary of the solution and its moves to the calling function
+     * @return returns the summary as a string
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("| Best reachable result: ").append(bestPiles).append(" piles left");
+        if (!exhaustive) {
+            sb.append(" (search limit reached, a better result may exist)");
+        }
+        sb.append("\n| Positions searched: ").append(positionsSearched).append("\n");
+        for (int i = 0; i < moves.length; i++) {
+            sb.append("|").append(i + 1).append(".   ").append(Move.toString(moves[i])).append("\n");
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,200 @@
+import java.util.Arrays;
+
+/**
+ * Class to search for the best possible result from a position in the game.
+ * It does a depth-first search over every move (merges and deals), and remembers the positions it has already seen
+ * by their Zobrist keys (see the Zobrist class) in a transposition table, so that the same position reached by a different order of moves isn't searched twice.
+ * The table (see TranspositionTable) is a fixed size and kept outside the heap, so the memory used by a search never grows,
+ * no matter how many positions are looked at, and a big table doesn't slow down the GC
+ *
+ * @author Owain Gibson
+ * @version 1.0
+ */
+public class Solver {
+    /**
+     * The transposition table holds 2^20 positions by default (16MB)
+     */
+    public static final int DEFAULT_TABLE_BITS = 20;
+
+    /**
+     * The number of positions to look at before giving up, so a search always finishes in a few seconds
+     */
+    public static final long DEFAULT_POSITION_LIMIT = 20_000_000L;
+
+    /**
+     * Every move either deals a card or removes a pile, so a game can never be longer than this
+     */
+    private static final int MAX_DEPTH = 52 * 2;
+
+    /**
+     * These are the cards still to be dealt, and the table's piles.
+     * They are allocated once when the solver is made, so that a solver can be reused for many deals.
+     * Moves are made on the one piles array and undone again on the way back up the search (the same way Engine.undo() does),
+     * so making a move doesn't create or copy anything
+     */
+    private final byte[] stock;
+    private final byte[] piles;
+    private final int[] path;
+
+    private final TranspositionTable seenPositions;
+    private final long positionLimit;
+
+    private int stockSize;
+    private int[] bestPath;
+    private int bestPiles;
+    private long positionsSearched;
+    private boolean stopped;
+
+    /**
+     * Constructor to set up a solver with the default table size and position limit
+     */
+    public Solver() {
+        this(DEFAULT_TABLE_BITS, DEFAULT_POSITION_LIMIT);
+    }
+
+    /**
+     * Constructor to set up a solver with its own table size and position limit
+     * @param tableBits holds the size of the transposition table, as a power of 2 of positions
+     * @param positionLimit holds the number of positions to look at before giving up
+     */
+    public Solver(int tableBits, long positionLimit) {
+        this(newTable(tableBits), positionLimit);
+    }
+
+    /**
+     * Constructor to set up a solver that uses a transposition table it is given (e.g. one of several gigabytes for a deep search)
+     * @param table holds the transposition table
+     * @param positionLimit holds the number of positions to look at before giving up
+     */
+    public Solver(TranspositionTable table, long positionLimit) {
+        stock = new byte[TableDeck.MAX_PILES];
+        piles = new byte[TableDeck.MAX_PILES];
+        path = new int[MAX_DEPTH];
+        seenPositions = table;
+        this.positionLimit = positionLimit;
+    }
+
+    private static TranspositionTable newTable(int tableBits) {
+        if (tableBits < 1 || tableBits > 34) {
+            throw new IllegalArgumentException("The table size must be between 2^1 and 2^34 positions");
+        }
+        return new TranspositionTable((1L << tableBits) * 16, TranspositionTable.Policy.DEPTH_PREFERRED);
+    }
+
+    /**
+     * Method to return the solver's transposition table, e.g. to look at its counters
+     * @return returns the table
+     */
+    public TranspositionTable getTable() {
+        return seenPositions;
+    }
+
+    /**
+     * Method to search for the best result from the current state of a game.
+     * The cards are copied, so the game itself isn't changed by the search
+     * @param engine holds the game to search from
+     * @return returns the solution
+     */
+    public Solution solve(Engine engine) {
+        for (int i = 0; i < engine.packSize(); i++) {
+            stock[i] = engine.getPackCard(i);
+        }
+        return run(engine.getTable().snapshotInto(this.piles), engine.packSize());
+    }
+
+    /**
+     * Method to search for the best result from a position held as packed cards (see PackedCard)
+     * @param piles holds the packed piles on the table
+     * @param numPiles holds the number of piles
+     * @param pack holds the packed cards still to be dealt, in the order they will be dealt
+     * @param packSize holds the number of cards still to be dealt
+     * @return returns the solution
+     */
+    public Solution solve(byte[] piles, int numPiles, byte[] pack, int packSize) {
+        System.arraycopy(piles, 0, this.piles, 0, numPiles);
+        System.arraycopy(pack, 0, stock, 0, packSize);
+        return run(numPiles, packSize);
+    }
+
+    /**
+     * Method to run the search and return the best result it found.
+     * The search stops early if it finds a way down to 1 pile, since nothing can beat that
+     * @param startPiles holds the number of piles at the start of the search
+     * @param packSize holds the number of cards still to be dealt
+     * @return returns the solution
+     */
+    private Solution run(int startPiles, int packSize) {
+        if (startPiles + packSize > TableDeck.MAX_PILES) {
+            throw new IllegalArgumentException("There cannot be more than " + TableDeck.MAX_PILES + " cards in a game");
+        }
+        stockSize = packSize;
+        bestPiles = startPiles + packSize;
+        bestPath = new int[0];
+        positionsSearched = 0;
+        stopped = false;
+        seenPositions.newSearch();
+
+        search(0, startPiles, 0, Zobrist.hash(piles, startPiles, 0));
+
+        return new Solution(bestPiles, bestPath, !stopped, positionsSearched);
+    }
+
+    /**
+     * Method to search every move from the position at the given depth.
+     * Every position counts as a possible result, since the player can stop at any time and their score is
+     * the number of piles on the table plus the number of cards left in the pack
+     * @param depth holds how many moves have been made to get to this position
+     * @param numPiles holds the number of piles on the table
+     * @param stockPos holds the index of the next card to deal
+     * @param key holds the position's Zobrist key, which is updated as each move is made rather than worked out again
+     */
+    private void search(int depth, int numPiles, int stockPos, long key) {
+        if (++positionsSearched > positionLimit) {
+            stopped = true;
+            return;
+        }
+
+        int pilesLeft = numPiles + stockSize - stockPos;
+        //the draft is the most moves the game could have left, so the table keeps the positions that would take longest to search again
+        if (!seenPositions.markSeen(key, pilesLeft + stockSize - stockPos)) {
+            return; //this position has already been searched through a different order of moves
+        }
+
+        if (pilesLeft < bestPiles) {
+            bestPiles = pilesLeft;
+            bestPath = Arrays.copyOf(path, depth);
+        }
+
+        for (int j = numPiles - 1; j > 0; j--) { //starts from the end of the table, since that is where new cards land
+            for (int over = 3; over > 0; over -= 2) { //tries the "furthest move" first
+                int i = j - over;
+                if (i < 0 || !PackedCard.matches(piles[j], piles[i])) {
+                    continue;
+                }
+
+                long nextKey = key ^ Zobrist.mergeDelta(piles, numPiles, j, i);
+                byte covered = piles[i];
+                piles[i] = piles[j];
+                System.arraycopy(piles, j + 1, piles, j, numPiles - j - 1);
+
+                path[depth] = Move.merge(j, over);
+                search(depth + 1, numPiles - 1, stockPos, nextKey);
+
+                //undoes the merge, so the piles are back how they were for the next move
+                System.arraycopy(piles, j, piles, j + 1, numPiles - j - 1);
+                piles[j] = piles[i];
+                piles[i] = covered;
+                if (stopped || bestPiles == 1) {
+                    return;
+                }
+            }
+        }
+
+        if (stockPos < stockSize) {
+            piles[numPiles] = stock[stockPos]; //nothing past numPiles is looked at, so a deal doesn't need undoing
+
+            path[depth] = Move.DEAL;
+            search(depth + 1, numPiles + 1, stockPos + 1, key ^ Zobrist.dealDelta(numPiles, stock[stockPos], stockPos));
+        }
+    }
+}
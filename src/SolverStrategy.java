@@ -0,0 +1,54 @@
+/**
+ * Strategy that uses the Solver to find the best result from the current position, and then plays its moves one at a time.
+ * The plan is kept between decisions, and the solver is only run again if the game has changed in a way the plan didn't expect
+ *
+ * @author Owain Gibson
+ * @version 1.0
+ */
+public class SolverStrategy extends Strategy {
+    public static final String NAME = "solver";
+
+    /**
+     * Each thread keeps its own solver (the solver's tables are too big to make for every decision) and its own plan
+     */
+    private final ThreadLocal<Plan> plans = ThreadLocal.withInitial(Plan::new);
+
+    /**
+     * Class to hold a thread's solver and the moves it is part way through playing
+     */
+    private static class Plan {
+        private final Solver solver = new Solver();
+        private int[] moves = new int[0];
+        private int nextMove;
+        private Engine engine;
+        private int expectedModCount;
+        private int expectedPilesLeft;
+    }
+
+    @Override
+    protected int findMove(Engine engine) {
+        Plan plan = plans.get();
+        boolean onPlan = plan.engine == engine
+                && plan.expectedModCount == engine.getTable().getModCount()
+                && plan.expectedPilesLeft == engine.pilesLeft();
+
+        if (!onPlan || plan.nextMove == plan.moves.length) {
+            plan.engine = engine;
+            plan.moves = plan.solver.solve(engine).getMoves();
+            plan.nextMove = 0;
+        }
+        if (plan.nextMove == plan.moves.length) {
+            return dealOrNone(engine); //no move improves on the current position
+        }
+
+        int move = plan.moves[plan.nextMove++];
+        plan.expectedModCount = engine.getTable().getModCount() + 1; //every move changes the table exactly once
+        plan.expectedPilesLeft = engine.pilesLeft() - (Move.isDeal(move) ? 0 : 1);
+        return move;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+}
@@ -0,0 +1,44 @@
+/**
+ * The SplitMix64 random number generator: a counter that goes up by the golden ratio every step, scrambled by a finaliser.
+ * It is tiny (one long of state) and quick, and it is the generator the simulator has always shuffled its deals with
+ *
+ * @author Owain Gibson
+ * @version 1.0
+ */
+public class SplitMixRandom implements DeckRandom {
+    public static final String NAME = "splitmix";
+
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    private long state;
+
+    /**
+     * Constructor to start the generator from a seed
+     * @param seed holds the seed
+     */
+    public SplitMixRandom(long seed) {
+        state = seed;
+    }
+
+    @Override
+    public long nextLong() {
+        state += GOLDEN_GAMMA;
+        return mix(state);
+    }
+
+    @Override
+    public void setSeed(long seed) {
+        state = seed;
+    }
+
+    /**
+     * Method to scramble the bits of a number (the SplitMix64 finaliser)
+     * @param z holds the number to scramble
+     * @return returns the scrambled number
+     */
+    public static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,138 @@
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Abstract class to specify how a "play for me" strategy should behave.
+ * Each strategy picks the next move for a game, and this class times every decision it makes, so that
+ * the win rate of a strategy (from the Simulator) can be compared against how long it takes to pick each move.
+ * Strategies can be shared between threads, so the timings are kept in thread-safe adders
+ *
+ * @author Owain Gibson
+ * @version 1.0
+ */
+public abstract class Strategy {
+    /**
+     * The names of the built-in strategies, as accepted by forName()
+     */
+    public static final String[] NAMES = {
+            GreedyLeftmostStrategy.NAME,
+            GreedyRightmostStrategy.NAME,
+            PreferThreeOverStrategy.NAME,
+            LookaheadStrategy.NAME,
+            RolloutStrategy.NAME,
+            SolverStrategy.NAME
+    };
+
+    private final LongAdder decisions = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Method to create one of the built-in strategies from its name.
+     * The rollout strategy can be given a budget after a colon, e.g. "rollout:500"
+     * @param name holds the name of the strategy
+     * @return returns the strategy
+     * @throws IllegalArgumentException if there is no strategy with that name
+     */
+    public static Strategy forName(String name) {
+        String[] parts = name.toLowerCase().split(":", 2);
+        switch (parts[0]) {
+            case GreedyLeftmostStrategy.NAME:
+                return new GreedyLeftmostStrategy();
+            case GreedyRightmostStrategy.NAME:
+                return new GreedyRightmostStrategy();
+            case PreferThreeOverStrategy.NAME:
+                return new PreferThreeOverStrategy();
+            case LookaheadStrategy.NAME:
+                return new LookaheadStrategy();
+            case RolloutStrategy.NAME:
+                return parts.length > 1 ? new RolloutStrategy(Integer.parseInt(parts[1])) : new RolloutStrategy();
+            case SolverStrategy.NAME:
+                return new SolverStrategy();
+            default:
+                throw new IllegalArgumentException("There is no strategy called \"" + name + "\"");
+        }
+    }
+
+    /**
+     * Method to pick the next move for a game, timing how long the decision took
+     * @param engine holds the game (it is not changed)
+     * @return returns the packed move (see the Move class), or Move.NONE if there are no legal moves
+     */
+    public final int chooseMove(Engine engine) {
+        long start = System.nanoTime();
+        int move = findMove(engine);
+        long elapsed = System.nanoTime() - start;
+
+        decisions.increment();
+        totalNanos.add(elapsed);
+        maxNanos.accumulate(elapsed);
+        return move;
+    }
+
+    /**
+     * Method that each strategy uses to pick its move
+     * @param engine holds the game, which must be left as it was
+     * @return returns the packed move, or Move.NONE if there are no legal moves
+     */
+    protected abstract int findMove(Engine engine);
+
+    /**
+     * Method to return the strategy's name
+     * @return returns the name
+     */
+    public abstract String getName();
+
+    /**
+     * Method used by strategies when there are no merges to make: deal a card if possible, otherwise there is nothing to do
+     * @param engine holds the game
+     * @return returns Move.DEAL or Move.NONE
+     */
+    protected static int dealOrNone(Engine engine) {
+        return engine.canDeal() ? Move.DEAL : Move.NONE;
+    }
+
+    /**
+     * Method to return the number of decisions the strategy has made
+     * @return returns the number
+     */
+    public long getDecisions() {
+        return decisions.sum();
+    }
+
+    /**
+     * Method to return the average time taken per decision
+     * @return returns the time in nanoseconds
+     */
+    public double getMeanLatencyNanos() {
+        long count = decisions.sum();
+        return count == 0 ? 0 : (double) totalNanos.sum() / count;
+    }
+
+    /**
+     * Method to return the longest time taken by a single decision
+     * @return returns the time in nanoseconds
+     */
+    public long getMaxLatencyNanos() {
+        return maxNanos.get();
+    }
+
+    /**
+     * Method to clear the decision timings
+     */
+    public void resetStats() {
+        decisions.reset();
+        totalNanos.reset();
+        maxNanos.reset();
+    }
+
+    /**
+     * Method to return the strategy's name and decision timings as a string
+     * @return returns the string
+     */
+    @Override
+    public String toString() {
+        return String.format("%s: %d decisions, mean %.1f us, max %.1f us per move",
+                getName(), getDecisions(), getMeanLatencyNanos() / 1000, getMaxLatencyNanos() / 1000.0);
+    }
+}
@@ -1,48 +1,201 @@
-import java.io.FileNotFoundException;
 import java.util.ArrayList;
+import java.util.Arrays;
 
 /**
- * Class to blueprint the turnover deck.
- * Since this is a form of deck (Collection of face down cards), it inherits attributes and methods from the deck class
+ * Class to blueprint the table deck (the piles on the table).
+ * It has the same methods as the deck class, but it doesn't extend it: rather than using an arrayList of cards,
+ * the piles are held as packed cards (see PackedCard) in a fixed array, so adding and merging piles never creates any objects,
+ * and the whole table can be snapshotted as one small array. Extending the deck would leave its arrayList allocated but always empty
  *
  * @author Owain Gibson
- * @version 1.0
+ * @version 2.0
  */
-public class TableDeck extends Deck{
-    private ArrayList<String> tableCardString;
+public class TableDeck {
+    /**
+     * There can never be more piles on the table than there are cards in a pack
+     */
+    public static final int MAX_PILES = 52;
+
+    private final byte[] piles;
+    private int numPiles;
+
+    /**
+     * This goes up every time the table changes, so that anything keeping track of the table (like the engine's legal move index)
+     * can tell if it has been changed from somewhere else
+     */
+    private int modCount;
 
     /**
      * Constructor to instantiate the tableDeck object
      */
     public TableDeck(){
-        super();
-        tableCardString = new ArrayList<>();
+        piles = new byte[MAX_PILES];
+        numPiles = 0;
     }
 
     /**
      * Method for merging two cards.
-     * Once the bottom card is overwritten by the top card, the copy of the top card in its previous place is removed
+     * Once the bottom card is overwritten by the top card, the top card's old slot is closed up by shifting the later piles down
+     * (at most 51 bytes, with no objects created)
      * @param topCardIndex  holds the index of the top card
      * @param cardToReplace holds the index of the card to replace
      */
     public void popMergeCards(int topCardIndex, int cardToReplace){
-        Card topCard = popCard(topCardIndex);
-        getCards().set(cardToReplace, topCard);
+        piles[cardToReplace] = piles[topCardIndex];
+        System.arraycopy(piles, topCardIndex + 1, piles, topCardIndex, numPiles - topCardIndex - 1);
+        numPiles--;
+        modCount++;
+    }
 
-        String topCardString = tableCardString.get(topCardIndex);
-        tableCardString.set(cardToReplace , topCardString);
-        tableCardString.remove(topCardIndex);
+    /**
+     * Method for undoing popMergeCards: the top card is put back in its old slot (shifting the later piles back up),
+     * and the card it covered is put back underneath
+     * @param topCardIndex  holds the index the top card was moved from
+     * @param cardToReplace holds the index of the card it was moved onto
+     * @param replacedCard  holds the packed card that was covered by the move
+     */
+    public void unmergeCards(int topCardIndex, int cardToReplace, byte replacedCard) {
+        System.arraycopy(piles, topCardIndex, piles, topCardIndex + 1, numPiles - topCardIndex);
+        piles[topCardIndex] = piles[cardToReplace];
+        piles[cardToReplace] = replacedCard;
+        numPiles++;
+        modCount++;
     }
 
     /**
-     * Method to add a card to the arrayList.
-     * This overrides its super's method because it also has to add the card's filename string to an arrayList as well
+     * Method to add a card to the end of the table.
+     * The card is stored packed in the array rather than as a Card object
      * @param card holds the card to add
+     * @throws IllegalStateException if the table is already full
      */
-    @Override
     public void addCard(Card card) {
-        super.addCard(card);
-        tableCardString.add(card.toString() + ".gif");
+        addPackedCard(PackedCard.fromCard(card));
+    }
+
+    /**
+     * Method to add an already packed card to the end of the table
+     * @param code holds the packed card to add
+     * @throws IllegalStateException if the table is already full
+     */
+    public void addPackedCard(byte code) {
+        if (numPiles == MAX_PILES) {
+            throw new IllegalStateException("The table cannot hold more than " + MAX_PILES + " piles");
+        }
+        piles[numPiles++] = code;
+        modCount++;
+    }
+
+    /**
+     * Method to return the card at the specific given index
+     * @param cardIndex holds the index
+     * @return returns the card if the index given is within the range of piles, otherwise null
+     */
+    public Card getCard(int cardIndex) {
+        if (cardIndex >= numPiles || cardIndex < 0) {
+            return null;
+        }
+        return PackedCard.toCard(piles[cardIndex]);
+    }
+
+    /**
+     * Method to return the packed card at the specific given index, for code that doesn't need the Card object
+     * @param cardIndex holds the index (must be within the range of piles)
+     * @return returns the packed card
+     */
+    public byte getPackedCard(int cardIndex) {
+        return piles[cardIndex];
+    }
+
+    /**
+     * Method for "popping" a card from the table, closing up the gap it leaves
+     * @param cardIndex holds the card to pop
+     * @return returns the popped card
+     */
+    public Card popCard(int cardIndex) {
+        Card poppedCard = getCard(cardIndex);
+        System.arraycopy(piles, cardIndex + 1, piles, cardIndex, numPiles - cardIndex - 1);
+        numPiles--;
+        modCount++;
+        return poppedCard;
+    }
+
+    /**
+     * Method to return the number of piles on the table
+     * @return returns the number
+     */
+    public int numCards() {
+        return numPiles;
+    }
+
+    /**
+     * Method for returning all the cards on the table.
+     * Since the table doesn't keep an arrayList, this is a new copy, so changing it won't change the table
+     * @return returns the arrayList
+     */
+    public ArrayList<Card> getCards() {
+        ArrayList<Card> cards = new ArrayList<>(numPiles);
+        for (int i = 0; i < numPiles; i++) {
+            cards.add(PackedCard.toCard(piles[i]));
+        }
+        return cards;
+    }
+
+    /**
+     * Method to take a snapshot of the table, so that it can be put back later with restore()
+     * The snapshot is just the packed piles, so it is at most 52 bytes
+     * @return returns the snapshot
+     */
+    public byte[] snapshot() {
+        return Arrays.copyOf(piles, numPiles);
+    }
+
+    /**
+     * Method to copy the packed piles into an existing array, so that a snapshot can be taken without creating anything
+     * @param into holds the array to copy into (must have room for every pile)
+     * @return returns the number of piles copied
+     */
+    public int snapshotInto(byte[] into) {
+        System.arraycopy(piles, 0, into, 0, numPiles);
+        return numPiles;
+    }
+
+    /**
+     * Method to put the table back to a snapshot taken with snapshot()
+     * @param snapshot holds the snapshot
+     */
+    public void restore(byte[] snapshot) {
+        restore(snapshot, snapshot.length);
+    }
+
+    /**
+     * Method to put the table back to the first few packed piles of an array
+     * @param from holds the packed piles
+     * @param numPiles holds the number of piles to take from the array
+     * @throws IllegalArgumentException if there are too many piles for the table
+     */
+    public void restore(byte[] from, int numPiles) {
+        if (numPiles > MAX_PILES) {
+            throw new IllegalArgumentException("The table cannot hold more than " + MAX_PILES + " piles");
+        }
+        System.arraycopy(from, 0, piles, 0, numPiles);
+        this.numPiles = numPiles;
+        modCount++;
+    }
+
+    /**
+     * Method to make this table a copy of another table, without creating anything
+     * @param other holds the table to copy
+     */
+    public void copyFrom(TableDeck other) {
+        restore(other.piles, other.numPiles);
+    }
+
+    /**
+     * Method to return the number of times the table has been changed
+     * @return returns the count
+     */
+    public int getModCount() {
+        return modCount;
     }
 
     /**
@@ -56,8 +209,8 @@ public class TableDeck extends Deck{
             return "There are no current piles on the table.";
         } else {
             StringBuilder stringBuilder = new StringBuilder("Cards showing on the table:\n");
-            for (Card c : getCards()) {
-                stringBuilder.append(c);
+            for (int i = 0; i < numPiles; i++) {
+                stringBuilder.append(PackedCard.toString(piles[i]));
                 stringBuilder.append("  ");
             }
             stringBuilder.append("\n");
@@ -66,10 +219,15 @@ public class TableDeck extends Deck{
     }
 
     /**
-     * Method to return the arrayList of card string to the calling function
-     * @return returns the arrayList
+     * Method to return the GIF filenames of the cards on the table, for the CardTable to display.
+     * The filenames are only worked out here, when the table is about to be drawn, rather than every time a card is added
+     * @return returns the arrayList of filenames
      */
     public ArrayList<String> getCardStrings(){
-        return tableCardString;
+        ArrayList<String> cardStrings = new ArrayList<>(numPiles);
+        for (int i = 0; i < numPiles; i++) {
+            cardStrings.add(PackedCard.fileName(piles[i]));
+        }
+        return cardStrings;
     }
 }
@@ -0,0 +1,166 @@
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Class to read the pack from a text card file (like cards.txt), which has one letter per line:
+ * a card's value on one line (a, 2-9, t, j, q, k) and its suit on the next (s, h, c, d), in either case.
+ * Blank lines and spaces around the letters are ignored.
+ *
+ * The file is parsed straight from its bytes with lookup tables, rather than with a Scanner and maps of strings.
+ * Anything else in the file (an unknown letter, a value with no suit, a card that is in the pack twice, more than 52 cards)
+ * is reported with its line number in a DeckFormatException, rather than being skipped
+ *
+ * @author Owain Gibson
+ * @version 1.0
+ */
+public class TextDeckSource extends FileDeckSource {
+    /**
+     * The most problems listed in one DeckFormatException, so a file that isn't a card file at all doesn't make a huge message
+     */
+    private static final int MAX_PROBLEMS = 10;
+
+    /**
+     * These map a byte from the file to the ordinal of its value or suit, or -1 if the byte isn't one
+     */
+    private static final byte[] VALUE_LETTERS = new byte[256];
+    private static final byte[] SUIT_LETTERS = new byte[256];
+
+    static {
+        Arrays.fill(VALUE_LETTERS, (byte) -1);
+        Arrays.fill(SUIT_LETTERS, (byte) -1);
+        for (Value value : Value.values()) {
+            char letter = value.toString().charAt(0);
+            VALUE_LETTERS[Character.toLowerCase(letter)] = (byte) value.ordinal();
+            VALUE_LETTERS[Character.toUpperCase(letter)] = (byte) value.ordinal();
+        }
+        for (Suit suit : Suit.values()) {
+            char letter = suit.toString().charAt(0);
+            SUIT_LETTERS[Character.toLowerCase(letter)] = (byte) suit.ordinal();
+            SUIT_LETTERS[Character.toUpperCase(letter)] = (byte) suit.ordinal();
+        }
+    }
+
+    /**
+     * Constructor to set up a deck source reading the given text card file
+     * @param fileName holds the name of the file
+     */
+    public TextDeckSource(String fileName) {
+        super(fileName);
+    }
+
+    @Override
+    protected byte[] parse(byte[] bytes) throws DeckFormatException {
+        return parse(bytes, getName());
+    }
+
+    /**
+     * Method to parse the bytes of a text card file into a pack
+     * @param bytes holds the whole file
+     * @param source holds the name of the file, for the error message
+     * @return returns the packed cards, in the order they are dealt
+     * @throws DeckFormatException if the file isn't a valid pack
+     */
+    public static byte[] parse(byte[] bytes, String source) throws DeckFormatException {
+        byte[] pack = new byte[TableDeck.MAX_PILES];
+        int[] lineOfCard = new int[PackedCard.NUM_CODES]; //the line each card was read on, so a repeated card can say where the first one was
+        int numCards = 0;
+
+        List<String> problems = new ArrayList<>();
+        int firstProblemLine = 0;
+
+        int value = -1;
+        int valueLine = 0;
+        int line = 0;
+        int pos = bytes.length >= 3 && bytes[0] == (byte) 0xef && bytes[1] == (byte) 0xbb && bytes[2] == (byte) 0xbf ? 3 : 0; //skips a UTF-8 byte order mark
+        while (pos < bytes.length && problems.size() < MAX_PROBLEMS) {
+            //finds the next line, and trims the spaces off either end of it
+            line++;
+            int start = pos;
+            while (pos < bytes.length && bytes[pos] != '\n' && bytes[pos] != '\r') {
+                pos++;
+            }
+            int end = pos;
+            if (pos < bytes.length && bytes[pos] == '\r' && pos + 1 < bytes.length && bytes[pos + 1] == '\n') {
+                pos++;
+            }
+            pos++;
+            while (start < end && isSpace(bytes[start])) {
+                start++;
+            }
+            while (end > start && isSpace(bytes[end - 1])) {
+                end--;
+            }
+            if (start == end) {
+                continue;
+            }
+
+            String problem = null;
+            if (end - start != 1) {
+                problem = "\"" + new String(bytes, start, end - start, StandardCharsets.UTF_8) + "\" is not a "
+                        + (value == -1 ? "card value" : "suit");
+            } else if (value == -1) {
+                value = VALUE_LETTERS[bytes[start] & 0xff];
+                valueLine = line;
+                if (value == -1) {
+                    problem = "\"" + (char) (bytes[start] & 0xff) + "\" is not a card value";
+                }
+            } else {
+                int suit = SUIT_LETTERS[bytes[start] & 0xff];
+                if (suit == -1) {
+                    problem = "\"" + (char) (bytes[start] & 0xff) + "\" is not a suit";
+                } else {
+                    byte card = (byte) ((suit << 4) | value); //packed the same way as PackedCard.of()
+                    if (lineOfCard[card] != 0) {
+                        problem = PackedCard.toString(card) + " is already in the pack (line " + lineOfCard[card] + ")";
+                    } else if (numCards == TableDeck.MAX_PILES) {
+                        problem = "there are more than " + TableDeck.MAX_PILES + " cards";
+                    } else {
+                        lineOfCard[card] = valueLine;
+                        pack[numCards++] = card;
+                    }
+                }
+                value = -1;
+            }
+
+            if (problem != null) {
+                if (problems.isEmpty()) {
+                    firstProblemLine = line;
+                }
+                problems.add("line " + line + ": " + problem);
+                value = -1; //carries on from the next line as if it starts a new card, so one bad line is only reported once
+            }
+        }
+        if (value != -1 && problems.size() < MAX_PROBLEMS) {
+            if (problems.isEmpty()) {
+                firstProblemLine = valueLine;
+            }
+            problems.add("line " + valueLine + ": the last card has no suit");
+        }
+
+        if (!problems.isEmpty()) {
+            throw new DeckFormatException(source, problems, firstProblemLine);
+        }
+        return Arrays.copyOf(pack, numCards);
+    }
+
+    /**
+     * Method to turn a value letter and a suit letter (in either case) into a packed card
+     * @param valueLetter holds the value letter
+     * @param suitLetter holds the suit letter
+     * @return returns the packed card, or -1 if either letter is wrong
+     */
+    static int cardOf(byte valueLetter, byte suitLetter) {
+        int value = VALUE_LETTERS[valueLetter & 0xff];
+        int suit = SUIT_LETTERS[suitLetter & 0xff];
+        if (value == -1 || suit == -1) {
+            return -1;
+        }
+        return (suit << 4) | value;
+    }
+
+    static boolean isSpace(byte b) {
+        return b == ' ' || b == '\t';
+    }
+}
@@ -0,0 +1,397 @@
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Class to hold the positions a search has already looked at, by their Zobrist keys (see the Zobrist class), outside the heap.
+ * A deep search can look at hundreds of millions of positions, and a map of boxed keys would fill the heap and keep the GC busy long before that.
+ * Instead the table is a fixed number of entries in direct ByteBuffers, so it can be gigabytes big without the GC ever looking at it
+ * (the JVM needs -XX:MaxDirectMemorySize to be at least the size of the table, which is the same as -Xmx by default).
+ *
+ * Every entry is 16 bytes: the 64 bit key, then a packed value of [16 bit generation][8 bit draft][8 bit result].
+ * The draft is how much work the search below the position could take (e.g. the moves left in the game),
+ * and the result is whatever the search wants to keep about the position (e.g. the fewest piles it gets down to).
+ * The key's slot is found by open addressing into a bucket, and when the bucket is full an entry is replaced using the table's policy:
+ * - ALWAYS_REPLACE: a bucket is one entry, and the newest position always takes it
+ * - DEPTH_PREFERRED: a bucket is two entries, one kept for the position with the biggest draft (the most work to search again)
+ * and one that always takes the newest position
+ *
+ * Starting a new search just moves on the generation, so entries from earlier searches are treated as empty without clearing gigabytes of memory.
+ * A table can be shared between threads searching the same position (each entry is only ever read and written 8 bytes at a time,
+ * so the worst a race can do is lose an entry, which only means searching a position again), but then the counters are only approximate
+ *
+ * @author Owain Gibson
+ * @version 1.0
+ */
+public class TranspositionTable {
+    /**
+     * Enum to specify how a full bucket picks the entry to replace
+     */
+    public enum Policy {
+        ALWAYS_REPLACE(1), DEPTH_PREFERRED(2);
+
+        private final int ways;
+
+        Policy(int ways) {
+            this.ways = ways;
+        }
+    }
+
+    /**
+     * Returned by probe() for a position that isn't in the table
+     */
+    public static final int NOT_FOUND = -1;
+
+    private static final int ENTRY_BYTES = 16;
+
+    /**
+     * A single ByteBuffer can't be bigger than 2GB, so big tables are split into chunks of 1GB
+     */
+    private static final int CHUNK_SHIFT = 30;
+    private static final long CHUNK_MASK = (1L << CHUNK_SHIFT) - 1;
+
+    private static final int CACHE_LINE = 64;
+
+    private final ByteBuffer[] chunks;
+    private final Policy policy;
+    private final long numBuckets;
+    private final long bucketMask;
+    private final int bucketBytes;
+
+    private int generation;
+
+    private long hits;
+    private long misses;
+    private long collisions;
+    private long replacements;
+
+    /**
+     * Constructor to allocate a table
+     * @param bytes holds the most memory the table can use (it is rounded down to a power of 2 of buckets)
+     * @param policy holds the replacement policy
+     */
+    public TranspositionTable(long bytes, Policy policy) {
+        this.policy = policy;
+        bucketBytes = ENTRY_BYTES * policy.ways;
+        if (bytes < bucketBytes) {
+            throw new IllegalArgumentException("A transposition table needs at least " + bucketBytes + " bytes");
+        }
+        numBuckets = Long.highestOneBit(bytes / bucketBytes);
+        bucketMask = numBuckets - 1;
+
+        long size = numBuckets * bucketBytes;
+        chunks = new ByteBuffer[(int) ((size + CHUNK_MASK) >>> CHUNK_SHIFT)];
+        for (int i = 0; i < chunks.length; i++) {
+            chunks[i] = allocateAligned((int) Math.min(size - ((long) i << CHUNK_SHIFT), 1L << CHUNK_SHIFT));
+        }
+        generation = 1;
+    }
+
+    /**
+     * Method to allocate a direct buffer that starts on a cache line, so a bucket never spans two cache lines
+     * (malloc only lines things up to 16 bytes, which would put half of the 32 byte buckets across two lines)
+     * @param size holds the size of the buffer
+     * @return returns the buffer
+     */
+    private static ByteBuffer allocateAligned(int size) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(size + CACHE_LINE);
+        int offset;
+        try { //ByteBuffer.alignmentOffset() was only added in Java 9, so without it the buffer is used as it is
+            offset = (Integer) ByteBuffer.class.getMethod("alignmentOffset", int.class, int.class).invoke(buffer, 0, CACHE_LINE);
+        } catch (ReflectiveOperationException e) {
+            offset = 0;
+        }
+        buffer.position((CACHE_LINE - offset) & (CACHE_LINE - 1));
+        buffer.limit(buffer.position() + size);
+        return buffer.slice().order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Method to start a new search: every entry from an earlier search is treated as empty from now on
+     */
+    public void newSearch() {
+        generation++;
+        if (generation > 0xffff) { //the generation has wrapped around, so old entries could look new again and must really be cleared
+            for (ByteBuffer chunk : chunks) {
+                for (int i = 0; i < chunk.capacity(); i += 8) {
+                    chunk.putLong(i, 0L);
+                }
+            }
+            generation = 1;
+        }
+    }
+
+    /**
+     * Method to pack a value
+     * @param draft holds the draft (0 to 255), used by the DEPTH_PREFERRED policy to decide what to keep
+     * @param result holds the result (0 to 255)
+     * @return returns the packed value, without its generation
+     */
+    public static int packValue(int draft, int result) {
+        return (draft & 0xff) << 8 | (result & 0xff);
+    }
+
+    /**
+     * Method to return the draft from a value returned by probe()
+     * @param value holds the value
+     * @return returns the draft
+     */
+    public static int draftOf(int value) {
+        return (value >>> 8) & 0xff;
+    }
+
+    /**
+     * Method to return the result from a value returned by probe()
+     * @param value holds the value
+     * @return returns the result
+     */
+    public static int resultOf(int value) {
+        return value & 0xff;
+    }
+
+    /**
+     * Method to look a position up
+     * @param key holds the Zobrist key of the position
+     * @return returns the packed value stored for it (see draftOf() and resultOf()), or NOT_FOUND
+     */
+    public int probe(long key) {
+        key = nonZero(key);
+        long bucket = (mix(key) & bucketMask) * bucketBytes;
+        ByteBuffer chunk = chunks[(int) (bucket >>> CHUNK_SHIFT)]; //a bucket never crosses from one chunk into the next
+        int at = (int) (bucket & CHUNK_MASK);
+        boolean occupied = false;
+        for (int way = 0; way < policy.ways; way++, at += ENTRY_BYTES) {
+            long value = chunk.getLong(at + 8);
+            if (isCurrent(value)) {
+                if (chunk.getLong(at) == key) {
+                    hits++;
+                    return (int) value & 0xffff;
+                }
+                occupied = true;
+            }
+        }
+        misses++;
+        if (occupied) {
+            collisions++; //the bucket is holding other positions from this search
+        }
+        return NOT_FOUND;
+    }
+
+    /**
+     * Method to store a position, replacing an entry if its bucket is full
+     * @param key holds the Zobrist key of the position
+     * @param draft holds the draft (0 to 255)
+     * @param result holds the result (0 to 255)
+     */
+    public void store(long key, int draft, int result) {
+        key = nonZero(key);
+        long bucket = (mix(key) & bucketMask) * bucketBytes;
+        ByteBuffer chunk = chunks[(int) (bucket >>> CHUNK_SHIFT)];
+        int at = (int) (bucket & CHUNK_MASK);
+        long value = (long) generation << 16 | packValue(draft, result);
+        if (policy == Policy.DEPTH_PREFERRED && chunk.getLong(at + ENTRY_BYTES) == key) {
+            at += ENTRY_BYTES; //the position is already in the second entry, so it is updated there
+        } else if (chunk.getLong(at) != key) {
+            replace(chunk, at, key, value);
+            return;
+        }
+        chunk.putLong(at, key);
+        chunk.putLong(at + 8, value);
+    }
+
+    /**
+     * Method to mark a position as seen: looks it up, and stores it if it isn't there.
+     * This is all a search needs if it only wants to skip positions it has already searched,
+     * and it only finds the bucket once rather than once for probe() and again for store()
+     * @param key holds the Zobrist key of the position
+     * @param draft holds the draft (0 to 255)
+     * @return returns true if the position had not been seen yet in this search
+     */
+    public boolean markSeen(long key, int draft) {
+        key = nonZero(key);
+        long bucket = (mix(key) & bucketMask) * bucketBytes;
+        ByteBuffer chunk = chunks[(int) (bucket >>> CHUNK_SHIFT)];
+        int at = (int) (bucket & CHUNK_MASK);
+        long firstValue = chunk.getLong(at + 8);
+        boolean occupied = isCurrent(firstValue);
+        if (occupied && chunk.getLong(at) == key) {
+            hits++;
+            return false;
+        }
+        if (policy == Policy.DEPTH_PREFERRED) {
+            long secondValue = chunk.getLong(at + ENTRY_BYTES + 8);
+            if (isCurrent(secondValue)) {
+                if (chunk.getLong(at + ENTRY_BYTES) == key) {
+                    hits++;
+                    return false;
+                }
+                occupied = true;
+            }
+        }
+        misses++;
+        if (occupied) {
+            collisions++;
+        }
+        replace(chunk, at, key, (long) generation << 16 | packValue(draft, 0));
+        return true;
+    }
+
+    /**
+     * Method to put a position that isn't in its bucket into it, using the table's policy to pick the entry it replaces.
+     * With DEPTH_PREFERRED, the first entry is the position with the biggest draft and the second takes whatever the first doesn't keep
+     */
+    private void replace(ByteBuffer chunk, int at, long key, long value) {
+        long firstValue = chunk.getLong(at + 8);
+        boolean firstIsCurrent = isCurrent(firstValue);
+        if (policy == Policy.DEPTH_PREFERRED) {
+            if (firstIsCurrent && draftOf((int) value) < draftOf((int) firstValue)) {
+                at += ENTRY_BYTES; //the first entry is worth more, so the new position goes in the second
+                firstIsCurrent = isCurrent(chunk.getLong(at + 8));
+            } else if (firstIsCurrent) {
+                //the position being replaced still gets a chance in the second entry
+                if (isCurrent(chunk.getLong(at + ENTRY_BYTES + 8))) {
+                    replacements++;
+                }
+                chunk.putLong(at + ENTRY_BYTES, chunk.getLong(at));
+                chunk.putLong(at + ENTRY_BYTES + 8, firstValue);
+                firstIsCurrent = false;
+            }
+        }
+        if (firstIsCurrent) {
+            replacements++;
+        }
+        chunk.putLong(at, key);
+        chunk.putLong(at + 8, value);
+    }
+
+    private boolean isCurrent(long value) {
+        return (int) (value >>> 16) == generation;
+    }
+
+    private static long nonZero(long key) {
+        return key == 0 ? 1 : key; //0 marks an empty entry
+    }
+
+    /**
+     * Method to pick a bucket from a key. Zobrist keys are already random, so the high bits are just folded into the low ones
+     */
+    private static long mix(long key) {
+        return key ^ (key >>> 32);
+    }
+
+    /**
+     * Method to return the number of lookups that found their position
+     * @return returns the number
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * Method to return the number of lookups that didn't find their position
+     * @return returns the number
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Method to return the number of lookups that missed in a bucket already holding other positions from this search
+     * @return returns the number
+     */
+    public long getCollisions() {
+        return collisions;
+    }
+
+    /**
+     * Method to return the number of positions from this search that were pushed out of the table by another one
+     * @return returns the number
+     */
+    public long getReplacements() {
+        return replacements;
+    }
+
+    /**
+     * Method to set all the counters back to 0
+     */
+    public void resetCounters() {
+        hits = 0;
+        misses = 0;
+        collisions = 0;
+        replacements = 0;
+    }
+
+    /**
+     * Method to return the number of positions the table can hold
+     * @return returns the number
+     */
+    public long capacity() {
+        return numBuckets * policy.ways;
+    }
+
+    /**
+     * Method to return the memory the table uses
+     * @return returns the number of bytes
+     */
+    public long sizeBytes() {
+        return numBuckets * bucketBytes;
+    }
+
+    /**
+     * Method to return the table's replacement policy
+     * @return returns the policy
+     */
+    public Policy getPolicy() {
+        return policy;
+    }
+
+    @Override
+    public String toString() {
+        long lookups = hits + misses;
+        return String.format("%,d MB %s table of %,d positions: %,d hits (%.1f%%), %,d misses, %,d collisions, %,d replaced",
+                sizeBytes() >> 20, policy.name().toLowerCase().replace('_', '-'), capacity(), hits,
+                lookups == 0 ? 0 : 100.0 * hits / lookups, misses, collisions, replacements);
+    }
+
+    /**
+     * Method to time the table from the command line, filling it with random positions the way a search does
+     * (most positions are new, and some are seen again), and showing how much GC time it causes
+     * Usage: java TranspositionTable [table size in MB] [positions] [always-replace|depth-preferred]
+     * @param args holds the command line arguments
+     */
+    public static void main(String[] args) {
+        long bytes = (args.length > 0 ? Long.parseLong(args[0]) : 256) << 20;
+        long positions = args.length > 1 ? Long.parseLong(args[1]) : 100_000_000L;
+        Policy policy = args.length > 2 ? Policy.valueOf(args[2].toUpperCase().replace('-', '_')) : Policy.DEPTH_PREFERRED;
+
+        long gcBefore = gcMillis();
+        TranspositionTable table = new TranspositionTable(bytes, policy);
+        SplitMixRandom random = new SplitMixRandom(42);
+        long start = System.nanoTime();
+        long recent = 0;
+        for (long i = 0; i < positions; i++) {
+            long key;
+            if ((i & 3) == 0) {
+                key = recent; //a quarter of the lookups are for a position seen a little while ago, like a transposition
+            } else {
+                key = random.nextLong();
+                if ((i & 63) == 1) {
+                    recent = key;
+                }
+            }
+            table.markSeen(key, (int) (key >>> 56));
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.println(table);
+        System.out.printf("%,d lookups in %.2f s (%,.0f a second), %,d ms of GC%n", positions, seconds, positions / seconds, gcMillis() - gcBefore);
+    }
+
+    private static long gcMillis() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, gc.getCollectionTime());
+        }
+        return total;
+    }
+}
@@ -1,111 +1,60 @@
-import java.io.BufferedReader;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * Class to blueprint the turnover deck.
- * Since this is a form of deck (Collection of face up cards), it inherits attributes and methods from the deck class
+ * Since this is a form of deck (Collection of face up cards), it inherits attributes and methods from the deck class.
+ * The cards come from a deck source (see DeckSource), which only reads and parses the card file once,
+ * so making a new turnover deck for every game is quick
  *
  * @author Owain Gibson
  * @version 1.0
  */
 public class TurnoverDeck extends Deck {
     private String cardCover;
+    private boolean shuffled;
+    private long shuffleSeed;
 
     /**
-     * These maps are used to hold the different card suits and values.
-     * They are used to convert the singular letters read from the card file into enumerators.
-     * They are final so that they cannot be modified once instantiated
+     * Set if the cards are a pre-shuffled deal (e.g. from a tournament's deal file), which is played as it is and can't be shuffled
      */
-    private final HashMap<String, Value> valueMap;
-    private final HashMap<String, Suit> suitMap;
-    private boolean shuffled;
+    private final boolean fixedDeal;
 
     /**
-     * Constructor to instantiate the turnoverDeck object
+     * Constructor to instantiate the turnoverDeck object from the deck source the game uses (the card file by default)
      * The default card back cover is applied, which can then be changed later if need be
-     * @throws FileNotFoundException if the cards.txt file cannot be found
+     * @throws IOException if the card file cannot be found (a FileNotFoundException) or isn't a valid pack (a DeckFormatException)
      */
-    public TurnoverDeck() throws FileNotFoundException {
-        super();
-        this.cardCover = "b.gif";
-        valueMap = new HashMap<>();
-        suitMap = new HashMap<>();
-        shuffled = false;
-        initialiseCards();
-        populateCardDeck();
+    public TurnoverDeck() throws IOException {
+        this(DeckSource.open());
     }
 
     /**
-     * Method to fill the hashmaps with corresponding string-enumerator key-value pairs, to prepare for file reading
-     * The reason why the suits and values are kept in different maps is so that,
-     * for example, if a suit is meant to be read, it will only look in that specific map.
-     * This means that if a letter corresponding to a value is read instead, the program knows that the data must be corrupt, since the suit is missing
+     * Constructor to instantiate the turnoverDeck object from a given deck source
+     * @param source holds the deck source to take the cards from
+     * @throws IOException if the cards cannot be read, or aren't a valid pack (a DeckFormatException)
      */
-    private void initialiseCards(){
-        valueMap.put("a", Value.ACE);
-        valueMap.put("2", Value.TWO);
-        valueMap.put("3", Value.THREE);
-        valueMap.put("4", Value.FOUR);
-        valueMap.put("5", Value.FIVE);
-        valueMap.put("6", Value.SIX);
-        valueMap.put("7", Value.SEVEN);
-        valueMap.put("8", Value.EIGHT);
-        valueMap.put("9", Value.NINE);
-        valueMap.put("t", Value.TEN);
-        valueMap.put("j", Value.JACK);
-        valueMap.put("q", Value.QUEEN);
-        valueMap.put("k", Value.KING);
-
-        suitMap.put("s", Suit.SPADES);
-        suitMap.put("h",Suit.HEARTS);
-        suitMap.put("c", Suit.CLUBS);
-        suitMap.put("d", Suit.DIAMONDS);
-
+    public TurnoverDeck(DeckSource source) throws IOException {
+        super();
+        this.cardCover = "b.gif";
+        fixedDeal = source.isShuffled();
+        shuffled = fixedDeal;
+        populateCardDeck(source);
     }
 
     /**
-     * Method for populating the turnover deck
-     * @throws FileNotFoundException if neither the card file or its copy (in case the first one is missing) can be read
+     * Method for populating the turnover deck.
+     * The cards are the shared Card objects from PackedCard, since a card never changes
+     * @param source holds the deck source to take the cards from
+     * @throws IOException if the cards cannot be read, or aren't a valid pack (a DeckFormatException)
      */
-    private void populateCardDeck() throws FileNotFoundException {
-        Scanner infileTest;
-        try {
-            infileTest = new Scanner(new BufferedReader(new FileReader("../cards.txt")));
-        }
-        catch (FileNotFoundException e){
-            infileTest = new Scanner(new BufferedReader(new FileReader("../cardscopy.txt")));
-        }
-
-        try (Scanner infile = infileTest) {
-            infile.useDelimiter("\r?\n|\r");
-
-            String rawValue;
-            String rawSuit;
-
-            Suit cardSuit;
-            Value cardValue;
-
-            Card cardToAdd;
-
-
-            while (infile.hasNext()) {
-                rawValue = infile.next().toLowerCase();
-                cardValue = valueMap.get(rawValue);
-
-                if (cardValue==null){ continue; } //if the value isn't in the map, it means that specific piece of data is out of place
-                                                        //the program will wait until it finds a value first before assigning it to a card (robust)
-                                                            //otherwise, it may mix up all the reading orders
-
-                rawSuit = infile.next();
-                cardSuit = suitMap.get(rawSuit);
-
-                if (cardSuit==null){ continue; } //same applies for a null suit find. If it found a value but then no suit next,
-                                                        // it ignores the pair and looks for the next one that actually has its data in the right order
-                cardToAdd = new Card(cardValue, cardSuit);
-                addCard(cardToAdd);
-            }
+    private void populateCardDeck(DeckSource source) throws IOException {
+        byte[] pack = new byte[TableDeck.MAX_PILES];
+        int numCards = source.packInto(pack);
+        getCards().ensureCapacity(numCards);
+        for (int i = 0; i < numCards; i++) {
+            addCard(PackedCard.toCard(pack[i]));
         }
     }
 
@@ -143,11 +92,30 @@ public class TurnoverDeck extends Deck {
     }
 
     /**
-     * Method for shuffling the cards in the deck
+     * Method for shuffling the cards in the deck from a new random seed
      */
     public void shuffle() {
-        Collections.shuffle(getCards());
+        shuffle(ThreadLocalRandom.current().nextLong());
+    }
+
+    /**
+     * Method for shuffling the cards in the deck from a seed, so the same seed always gives the same order.
+     * The cards are packed into a byte array and shuffled in place (see Shuffler) with the generator picked by DeckRandom.RANDOM_PROPERTY,
+     * rather than with Collections.shuffle(), which shares one java.util.Random between every thread and can't be seeded
+     * @param seed holds the seed
+     */
+    public void shuffle(long seed) {
+        ArrayList<Card> cards = getCards();
+        byte[] pack = new byte[cards.size()];
+        for (int i = 0; i < pack.length; i++) {
+            pack[i] = PackedCard.fromCard(cards.get(i));
+        }
+        Shuffler.shuffle(pack, DeckRandom.create(seed));
+        for (int i = 0; i < pack.length; i++) {
+            cards.set(i, PackedCard.toCard(pack[i]));
+        }
         shuffled = true;
+        shuffleSeed = seed;
     }
 
     /**
@@ -166,6 +134,14 @@ public class TurnoverDeck extends Deck {
         return cardCover;
     }
 
+    /**
+     * Method for checking if the cards are a pre-shuffled deal that can't be shuffled
+     * @return returns the result
+     */
+    public boolean isFixedDeal() {
+        return fixedDeal;
+    }
+
     /**
      * Method for checking if the deck has been shuffled
      * @return returns the result
@@ -173,4 +149,12 @@ public class TurnoverDeck extends Deck {
     public boolean isShuffled() {
         return shuffled;
     }
+
+    /**
+     * Method for returning the seed of the last shuffle, so the deck can be shuffled the same way again
+     * @return returns the seed, or 0 if the deck hasn't been shuffled
+     */
+    public long getShuffleSeed() {
+        return shuffleSeed;
+    }
 }
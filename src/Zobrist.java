@@ -0,0 +1,254 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Class to give every position in a game a 64 bit key, using Zobrist hashing.
+ * Every (pile index, packed card) pair and every stock position has its own random 64 bit key, and a position's key is
+ * all the keys for its piles and its stock position XORed together. Because XOR undoes itself, the key can be updated
+ * as moves are made rather than worked out again from the whole table:
+ * - a deal only adds one pile and moves the stock on, so it is always O(1)
+ * - a merge changes the target pile and removes the moved pile, which is O(1), but every pile after the moved pile
+ *   moves down one place, so it costs one XOR for each of those (there are none when the last pile is moved,
+ *   which is nearly every move in a real game)
+ *
+ * Card.hashCode can't be used for this: Card.equals is the merge rule (same suit or same value), which isn't an equality,
+ * so no hash code can agree with it. The keys here are built from packed cards (see PackedCard) instead.
+ * The random keys come from a fixed seed, so a position has the same key every time the game is run.
+ *
+ * Running it from the command line checks the keys for collisions:
+ * java Zobrist [number of random positions]
+ *
+ * @author Owain Gibson
+ * @version 1.0
+ */
+public final class Zobrist {
+    private static final long SEED = 0x50415449454e4345L; //"PATIENCE"
+
+    private static final long[][] PILE_KEYS = new long[TableDeck.MAX_PILES][PackedCard.NUM_CODES];
+
+    /**
+     * SHIFT_KEYS[i][card] is the change in the key when the card moves from pile i down to pile i - 1,
+     * so shifting a pile during a merge is one XOR
+     */
+    private static final long[][] SHIFT_KEYS = new long[TableDeck.MAX_PILES][PackedCard.NUM_CODES];
+
+    private static final long[] STOCK_KEYS = new long[TableDeck.MAX_PILES + 1];
+
+    static {
+        long state = SEED;
+        for (int i = 0; i < TableDeck.MAX_PILES; i++) {
+            for (int card = 0; card < PackedCard.NUM_CODES; card++) {
+                state += 0x9e3779b97f4a7c15L;
+                PILE_KEYS[i][card] = mix(state);
+            }
+        }
+        for (int i = 0; i < STOCK_KEYS.length; i++) {
+            state += 0x9e3779b97f4a7c15L;
+            STOCK_KEYS[i] = mix(state);
+        }
+        for (int i = 1; i < TableDeck.MAX_PILES; i++) {
+            for (int card = 0; card < PackedCard.NUM_CODES; card++) {
+                SHIFT_KEYS[i][card] = PILE_KEYS[i][card] ^ PILE_KEYS[i - 1][card];
+            }
+        }
+    }
+
+    /**
+     * Private because this class is only used for its static methods
+     */
+    private Zobrist() {
+    }
+
+    /**
+     * Method to work out a position's key from scratch
+     * @param piles holds the packed piles on the table
+     * @param numPiles holds the number of piles
+     * @param stockPos holds the index of the next card to deal
+     * @return returns the key
+     */
+    public static long hash(byte[] piles, int numPiles, int stockPos) {
+        long key = STOCK_KEYS[stockPos];
+        for (int i = 0; i < numPiles; i++) {
+            key ^= PILE_KEYS[i][piles[i]];
+        }
+        return key;
+    }
+
+    /**
+     * Method to work out the key of the position on a table from scratch
+     * @param table holds the table
+     * @param stockPos holds the index of the next card to deal
+     * @return returns the key
+     */
+    public static long hash(TableDeck table, int stockPos) {
+        long key = STOCK_KEYS[stockPos];
+        for (int i = 0; i < table.numCards(); i++) {
+            key ^= PILE_KEYS[i][table.getPackedCard(i)];
+        }
+        return key;
+    }
+
+    /**
+     * Method to work out the change in the key when a card is dealt.
+     * XORing it into the key before the deal gives the key after it, and the other way round
+     * @param numPiles holds the number of piles before the deal
+     * @param card holds the packed card that is dealt
+     * @param stockPos holds the index of the card in the pack
+     * @return returns the change in the key
+     */
+    public static long dealDelta(int numPiles, byte card, int stockPos) {
+        return PILE_KEYS[numPiles][card] ^ STOCK_KEYS[stockPos] ^ STOCK_KEYS[stockPos + 1];
+    }
+
+    /**
+     * Method to work out the change in the key when a pile is merged onto another pile.
+     * XORing it into the key before the merge gives the key after it, and the other way round
+     * @param piles holds the packed piles before the merge
+     * @param numPiles holds the number of piles before the merge
+     * @param pileIndex holds the index of the pile that is moved
+     * @param targetIndex holds the index of the pile it is moved onto
+     * @return returns the change in the key
+     */
+    public static long mergeDelta(byte[] piles, int numPiles, int pileIndex, int targetIndex) {
+        byte moved = piles[pileIndex];
+        long delta = PILE_KEYS[targetIndex][piles[targetIndex]] ^ PILE_KEYS[targetIndex][moved] ^ PILE_KEYS[pileIndex][moved];
+        for (int i = pileIndex + 1; i < numPiles; i++) {
+            delta ^= SHIFT_KEYS[i][piles[i]];
+        }
+        return delta;
+    }
+
+    /**
+     * Method to work out the change in the key when a pile on a table is merged onto another pile
+     * (the same as mergeDelta above, for the engine's table rather than an array)
+     * @param table holds the table before the merge
+     * @param pileIndex holds the index of the pile that is moved
+     * @param targetIndex holds the index of the pile it is moved onto
+     * @return returns the change in the key
+     */
+    public static long mergeDelta(TableDeck table, int pileIndex, int targetIndex) {
+        byte moved = table.getPackedCard(pileIndex);
+        long delta = PILE_KEYS[targetIndex][table.getPackedCard(targetIndex)] ^ PILE_KEYS[targetIndex][moved]
+                ^ PILE_KEYS[pileIndex][moved];
+        for (int i = pileIndex + 1; i < table.numCards(); i++) {
+            delta ^= SHIFT_KEYS[i][table.getPackedCard(i)];
+        }
+        return delta;
+    }
+
+    /**
+     * Method to turn a counter into a well mixed random 64 bit number (the SplitMix64 finaliser)
+     * @param z holds the counter
+     * @return returns the random number
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Method to check the keys: first that updating a key move by move always gives the same key as working it out from scratch,
+     * then how many of a few million random positions share a key.
+     * The full 64 bit keys should never collide, and the low 32 bits (which is what a hash table's slot comes from)
+     * should collide about as often as truly random numbers would
+     * @param args holds the number of random positions to check (optional)
+     * @throws IllegalMoveException if a move in the check games is illegal
+     */
+    public static void main(String[] args) throws IllegalMoveException {
+        int numPositions = args.length > 0 ? Integer.parseInt(args[0]) : 4_000_000;
+
+        //plays random games, with undos, checking the engine's key after every move
+        Random random = new Random(SEED);
+        Engine engine = new Engine();
+        byte[] deck = newDeck();
+        int[] moves = new int[Engine.MAX_LEGAL_MOVES];
+        long movesChecked = 0;
+        for (int game = 0; game < 2000; game++) {
+            shuffle(deck, 52, random);
+            engine.newGame(deck, 52);
+            int n;
+            while ((n = engine.legalMoves(moves)) > 0) {
+                if (engine.canUndo() && random.nextInt(8) == 0) {
+                    engine.undo();
+                } else {
+                    engine.play(moves[random.nextInt(n)]);
+                }
+                if (engine.getPositionKey() != hash(engine.getTable(), 52 - engine.packSize())) {
+                    throw new IllegalStateException("The key was updated wrongly in game " + game);
+                }
+                movesChecked++;
+            }
+        }
+        System.out.println("Incremental keys matched the full hash after " + movesChecked + " moves");
+
+        //random positions: at least 8 distinct cards on the table (so the same position coming up twice is too unlikely to matter),
+        // and a random stock position that leaves room for them
+        long[] keys = new long[numPositions];
+        byte[] piles = new byte[TableDeck.MAX_PILES];
+        random = new Random(SEED + 1);
+        for (int p = 0; p < numPositions; p++) {
+            int numPiles = 8 + random.nextInt(TableDeck.MAX_PILES - 7);
+            shuffle(deck, numPiles, random);
+            System.arraycopy(deck, 0, piles, 0, numPiles);
+            int stockPos = numPiles + random.nextInt(TableDeck.MAX_PILES - numPiles + 1);
+            keys[p] = hash(piles, numPiles, stockPos);
+        }
+        long[] sorted = keys.clone();
+        Arrays.sort(sorted);
+        int fullCollisions = 0;
+        for (int i = 1; i < sorted.length; i++) {
+            if (sorted[i] == sorted[i - 1]) {
+                fullCollisions++;
+            }
+        }
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] &= 0xffffffffL;
+        }
+        Arrays.sort(keys);
+        int lowCollisions = 0;
+        for (int i = 1; i < keys.length; i++) {
+            if (keys[i] == keys[i - 1]) {
+                lowCollisions++;
+            }
+        }
+        double expectedLow = (double) numPositions * (numPositions - 1) / 2 / Math.pow(2, 32);
+
+        System.out.println("Random positions:         " + numPositions);
+        System.out.println("64 bit key collisions:    " + fullCollisions);
+        System.out.println("Low 32 bit collisions:    " + lowCollisions + " (random numbers would give about " + Math.round(expectedLow) + ")");
+        if (fullCollisions > 0) {
+            throw new IllegalStateException("Different positions shared a 64 bit key");
+        }
+    }
+
+    /**
+     * Method to make a full deck of packed cards, in order
+     * @return returns the deck
+     */
+    private static byte[] newDeck() {
+        byte[] deck = new byte[TableDeck.MAX_PILES];
+        int i = 0;
+        for (Suit suit : Suit.values()) {
+            for (Value value : Value.values()) {
+                deck[i++] = PackedCard.of(value, suit);
+            }
+        }
+        return deck;
+    }
+
+    /**
+     * Method to shuffle the first few cards of a deck into random cards from the whole deck (a partial Fisher-Yates shuffle)
+     * @param deck holds the deck
+     * @param count holds the number of cards wanted at the front
+     * @param random holds the generator to use
+     */
+    private static void shuffle(byte[] deck, int count, Random random) {
+        for (int i = 0; i < count; i++) {
+            int j = i + random.nextInt(deck.length - i);
+            byte temp = deck[i];
+            deck[i] = deck[j];
+            deck[j] = temp;
+        }
+    }
+}
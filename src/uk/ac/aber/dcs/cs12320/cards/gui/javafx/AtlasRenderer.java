@@ -0,0 +1,59 @@
+/**
+ * Draws the whole table onto one Canvas, copying each card out of the texture atlas,
+ * so there are no nodes per card and a long table is drawn in one pass
+ * @author Owain Gibson
+ * @version 1.0
+ */
+package uk.ac.aber.dcs.cs12320.cards.gui.javafx;
+
+import javafx.scene.Node;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+
+import java.util.ArrayList;
+import java.util.List;
+
+class AtlasRenderer implements CardRenderer {
+    private final CardAtlas atlas;
+    private final Canvas canvas;
+
+    /**
+     * The cards currently drawn on the canvas, so everything can be drawn again if the canvas changes size
+     */
+    private final List<String> drawn = new ArrayList<>();
+
+    AtlasRenderer() {
+        atlas = CardAtlas.get();
+        canvas = new Canvas(0, atlas.getCardHeight());
+    }
+
+    @Override
+    public Node getNode() {
+        return canvas;
+    }
+
+    @Override
+    public void draw(int from, List<String> cards) {
+        while (drawn.size() > from) {
+            drawn.remove(drawn.size() - 1);
+        }
+        drawn.addAll(cards);
+
+        int w = atlas.getCardWidth();
+        int h = atlas.getCardHeight();
+        double newWidth = (double) drawn.size() * w;
+        if (canvas.getWidth() != newWidth) {
+            canvas.setWidth(newWidth);
+            from = 0; //the canvas has been resized, so it is all drawn again
+        }
+
+        GraphicsContext gc = canvas.getGraphicsContext2D();
+        gc.clearRect((double) from * w, 0, newWidth - (double) from * w, h);
+        for (int i = from; i < drawn.size(); i++) {
+            int index = atlas.indexOf(drawn.get(i));
+            if (index != -1) {
+                gc.drawImage(atlas.getImage(), atlas.sourceX(index), atlas.sourceY(index), w, h, (double) i * w, 0, w, h);
+            }
+        }
+    }
+}
@@ -0,0 +1,121 @@
+/**
+ * Holds every card face and cover in one image (a texture atlas), already scaled to the size they are drawn at,
+ * so the whole table can be drawn from one texture without scaling anything while drawing.
+ * The atlas is built the first time it is needed and then shared
+ * @author Owain Gibson
+ * @version 1.0
+ */
+package uk.ac.aber.dcs.cs12320.cards.gui.javafx;
+
+import javafx.scene.image.Image;
+import javafx.scene.image.WritableImage;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+final class CardAtlas {
+    private static final String RANKS = "a23456789tjqk";
+    private static final String SUITS = "cdhs";
+    private static final String[] OTHERS = {"b.gif", "bbronze.gif", "bsilver.gif", "bgold.gif", "bultima.gif", "j.gif"};
+    private static final List<String> ALL_CARDS;
+    private static final int COLUMNS = 8;
+
+    private static CardAtlas instance;
+
+    static {
+        List<String> cards = new ArrayList<>();
+        for (int r = 0; r < RANKS.length(); r++) {
+            for (int s = 0; s < SUITS.length(); s++) {
+                cards.add("" + RANKS.charAt(r) + SUITS.charAt(s) + ".gif");
+            }
+        }
+        Collections.addAll(cards, OTHERS);
+        ALL_CARDS = Collections.unmodifiableList(cards);
+    }
+
+    private final WritableImage image;
+    private final Map<String, Integer> positions = new HashMap<>();
+    private final int cardWidth;
+    private final int cardHeight;
+
+    /**
+     * Loads every card at the width it is drawn at (smoothly scaled, keeping its shape) and copies it into the atlas
+     * @param cardWidth the width to draw the cards at
+     */
+    private CardAtlas(int cardWidth) {
+        List<Image> cards = new ArrayList<>(ALL_CARDS.size());
+        int height = 0;
+        for (String card : ALL_CARDS) {
+            String file = "cards/" + card;
+            Image scaled = new Image(CardAtlas.class.getClassLoader().getResource(file).toString(), cardWidth, 0, true, true, false);
+            if (scaled.isError()) {
+                throw new IllegalStateException("The card image " + file + " could not be loaded", scaled.getException());
+            }
+            cards.add(scaled);
+            height = Math.max(height, (int) Math.ceil(scaled.getHeight()));
+        }
+        this.cardWidth = cardWidth;
+        this.cardHeight = height;
+
+        int rows = (cards.size() + COLUMNS - 1) / COLUMNS;
+        image = new WritableImage(COLUMNS * cardWidth, rows * cardHeight);
+        for (int i = 0; i < cards.size(); i++) {
+            Image card = cards.get(i);
+            image.getPixelWriter().setPixels(sourceX(i), sourceY(i), (int) card.getWidth(), (int) card.getHeight(),
+                    card.getPixelReader(), 0, 0);
+            positions.put(ALL_CARDS.get(i), i);
+        }
+    }
+
+    /**
+     * Returns the shared atlas, building it the first time
+     * @return the atlas
+     */
+    static synchronized CardAtlas get() {
+        if (instance == null) {
+            instance = new CardAtlas(CardRenderer.CARD_WIDTH);
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the file names of every card face and cover
+     * @return the names
+     */
+    static List<String> allCards() {
+        return ALL_CARDS;
+    }
+
+    /**
+     * Returns the position of a card in the atlas
+     * @param card the file name of the card, e.g. "as.gif"
+     * @return the position, or -1 if the card isn't in the atlas
+     */
+    int indexOf(String card) {
+        Integer index = positions.get(card);
+        return index == null ? -1 : index;
+    }
+
+    int sourceX(int index) {
+        return (index % COLUMNS) * cardWidth;
+    }
+
+    int sourceY(int index) {
+        return (index / COLUMNS) * cardHeight;
+    }
+
+    Image getImage() {
+        return image;
+    }
+
+    int getCardWidth() {
+        return cardWidth;
+    }
+
+    int getCardHeight() {
+        return cardHeight;
+    }
+}
@@ -0,0 +1,32 @@
+/**
+ * Draws the cards for a CardTable. There is one kind that uses an ImageView per card and one that draws
+ * the whole table onto a single Canvas from a texture atlas
+ * @author Owain Gibson
+ * @version 1.0
+ */
+package uk.ac.aber.dcs.cs12320.cards.gui.javafx;
+
+import javafx.scene.Node;
+
+import java.util.List;
+
+interface CardRenderer {
+    /**
+     * The width every card is drawn at
+     */
+    int CARD_WIDTH = 100;
+
+    /**
+     * Returns the node that shows the cards, which goes inside the table's ScrollPane
+     * @return the node
+     */
+    Node getNode();
+
+    /**
+     * Draws the cards from the given position onwards (everything before it is unchanged since the last draw).
+     * Only called on the GUI thread
+     * @param from the position of the first card that may have changed
+     * @param cards the file names of the cards from that position to the end of the table, e.g. "as.gif"
+     */
+    void draw(int from, List<String> cards);
+}
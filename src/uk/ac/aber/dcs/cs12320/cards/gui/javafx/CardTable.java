@@ -1,101 +1,291 @@
 /**
  * Displays the card images on a table (the Javafx stage)
+ * By default each card is an ImageView, but running with -Dpatience.renderer=canvas draws the whole table
+ * onto one Canvas from a texture atlas instead
+ * While the computer is playing at speed, startAnimation() makes an AnimationTimer draw the table once per frame
+ * (however many moves were made in that frame) and shows the frames and moves per second in the corner
+ * A RedrawTimer can be given to the table to be told how long each redraw waited for the GUI thread and how long it took to draw
  * @author Faisal Rezwan, Chris Loftus and Lynda Thomas
  * @version 3.0
  */
 package uk.ac.aber.dcs.cs12320.cards.gui.javafx;
 
+import javafx.animation.AnimationTimer;
 import javafx.application.Platform;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
 import javafx.scene.Scene;
+import javafx.scene.control.Label;
 import javafx.scene.control.ScrollPane;
-import javafx.scene.image.Image;
-import javafx.scene.image.ImageView;
-import javafx.scene.layout.HBox;
+import javafx.scene.layout.StackPane;
 import javafx.scene.paint.Color;
 import javafx.stage.Stage;
 import java.util.ArrayList;
 import java.util.List;
 
 public class CardTable {
+    /**
+     * The system property used to pick how the cards are drawn ("nodes" or "canvas")
+     */
+    public static final String RENDERER_PROPERTY = "patience.renderer";
+
     private final Stage stage;
-    private String[] cards;
+    private final ScrollPane sp;
+    private final CardRenderer renderer;
+    private final List<String> toDraw = new ArrayList<>();
+
+    /**
+     * The cards that should be on the table. The game's thread changes these as events come in, and any changes
+     * are drawn together by one Platform.runLater, so lots of quick moves (e.g. during auto-play) only cause one redraw.
+     * Only the cards from dirtyFrom onwards can have changed since the last redraw
+     */
+    private final List<String> cards = new ArrayList<>();
+    private String cardCover;
+    private int dirtyFrom = Integer.MAX_VALUE;
+    private long dirtySince;
+    private boolean redrawScheduled;
+    private RedrawTimer redrawTimer;
+
     private boolean done;
     private int width;
 
+    /**
+     * Used while animating: the timer draws any changes once per frame instead of using Platform.runLater,
+     * and the label shows how fast the frames and moves are going
+     */
+    private final Label overlay;
+    private final Animator animator = new Animator();
+    private boolean animating;
+    private long moves;
+
     public CardTable(Stage stage) {
         this.stage = stage;
         stage.setTitle("The Cards");
+        renderer = System.getProperty(RENDERER_PROPERTY, "nodes").equalsIgnoreCase("canvas")
+                ? new AtlasRenderer() : new ImageViewRenderer();
+
+        // The scene is only built once, and each redraw just changes the cards that are different
+        sp = new ScrollPane();
+        sp.setContent(renderer.getNode());
+        sp.setVbarPolicy(ScrollPane.ScrollBarPolicy.NEVER);
+        overlay = new Label();
+        overlay.setTextFill(Color.WHITE);
+        overlay.setStyle("-fx-background-color: rgba(0, 0, 0, 0.6);");
+        overlay.setPadding(new Insets(2, 6, 2, 6));
+        overlay.setMouseTransparent(true);
+        overlay.setVisible(false);
+        StackPane root = new StackPane(sp, overlay);
+        StackPane.setAlignment(overlay, Pos.TOP_RIGHT);
+        Scene scene = new Scene(root);
+        scene.setFill(Color.BLACK);
+        stage.setScene(scene);
+    }
+
+    /**
+     * Called by anything that wants to time the table's redraws, e.g. to keep latency metrics
+     */
+    public interface RedrawTimer {
+        /**
+         * Called on the GUI thread after each redraw
+         * @param waitNanos the time from the first change being made to the redraw starting
+         * @param drawNanos the time the redraw took
+         * @param cardsDrawn the number of cards that were drawn
+         */
+        void redrawn(long waitNanos, long drawNanos, int cardsDrawn);
+    }
+
+    /**
+     * Sets the timer told about every redraw from now on
+     * @param redrawTimer the timer, or null to stop timing the redraws
+     */
+    public synchronized void setRedrawTimer(RedrawTimer redrawTimer) {
+        this.redrawTimer = redrawTimer;
     }
 
     /**
      * Called when the user quits the game. It results
      * in the face-down pack of cards not being displayed.
      */
-    public void allDone() {
+    public synchronized void allDone() {
         done = true;
+        markDirty(cards.size());
     }
 
     /**
      * Displays all the face-up cards (just the top showing cards)
      * and if the game is not over then also displays the face-down deck.
+     * This replaces the whole table (including the face-down deck, if allDone() was called before), so it is only needed
+     * when the game starts or the table is reset
      * @param c the list of face-up cards
      */
-    public void cardDisplay(List<String> c, String cardCover) {
-
-        // We need to do this within the GUI thread. We assume
-        // that the method is called by a non-GUI thread
-        Platform.runLater(() -> {
-            cards = new String[c.size()];
-            cards = c.toArray(cards);
-
-            ScrollPane sp = new ScrollPane();
-
-            //FLAIR COMMAND - Dynamic Stage Sizing
-            width = (c.size() < 9)? 125 + (100 * c.size()) : 1025; //changes the width of the window depending on the number of cards.
-                                                        // Width has a max size of 10 cards, before going to scroll
-            Scene scene = new Scene(sp, width, 155);
-
-            scene.setFill(Color.BLACK);
-            HBox box = new HBox();
-            Image image = null;
-
-            if (cards != null) {
-                for (String card : cards) {
-                    String file = "cards/" + card;
-                    image = new Image(getClass().getClassLoader().getResource(file).toString(), true);
-                    drawCards(box, image);
-                }
-            }
+    public synchronized void cardDisplay(List<String> c, String cardCover) {
+        done = false;
+        cards.clear();
+        cards.addAll(c);
+        this.cardCover = cardCover;
+        markDirty(0);
+    }
 
-            if (!done) {
-                // Draws the face-down top card of our pack of cards
-                String file = "cards/" + cardCover;
-                image = new Image(getClass().getClassLoader().getResource(file).toString(), true);
-                drawCards(box, image);
-            }
+    /**
+     * Called when a card is dealt onto the table
+     * @param index the index of the new pile
+     * @param card the file name of the card
+     */
+    public synchronized void cardDealt(int index, String card) {
+        cards.add(index, card);
+        moves++;
+        markDirty(index);
+    }
 
-            sp.setContent(box);
-            sp.setVbarPolicy(ScrollPane.ScrollBarPolicy.NEVER);
+    /**
+     * Called when one pile is moved onto another
+     * @param index the index the moved pile was at
+     * @param target the index of the pile it was moved onto
+     * @param card the file name of the card now on top of the target pile
+     */
+    public synchronized void pilesMerged(int index, int target, String card) {
+        cards.set(target, card);
+        cards.remove(index);
+        moves++;
+        markDirty(target);
+    }
 
-            stage.setScene(scene);
-            stage.show();
-        });
+    /**
+     * Notes that the views from the given index onwards need redrawing, and asks for a redraw if one isn't already waiting
+     * @param index the first index that changed
+     */
+    private void markDirty(int index) {
+        if (dirtyFrom == Integer.MAX_VALUE) {
+            dirtySince = System.nanoTime();
+        }
+        dirtyFrom = Math.min(dirtyFrom, index);
+        if (!redrawScheduled && !animating) { //while animating, the timer picks up the changes on the next frame
+            redrawScheduled = true;
+            // We need to do this within the GUI thread. We assume
+            // that the method is called by a non-GUI thread
+            Platform.runLater(this::redraw);
+        }
+    }
+
+    /**
+     * Starts drawing the table once per frame with an AnimationTimer, and shows the frames and moves per second.
+     * Moves can then be made far faster than the screen can show them, and the frames in between are just skipped
+     */
+    public synchronized void startAnimation() {
+        if (!animating) {
+            animating = true;
+            Platform.runLater(animator::start);
+        }
+    }
 
+    /**
+     * Stops the AnimationTimer, hides the overlay and goes back to drawing changes as they happen
+     */
+    public synchronized void stopAnimation() {
+        if (animating) {
+            animating = false;
+            Platform.runLater(animator::stop);
+            redrawScheduled = true;
+            Platform.runLater(this::redraw); //draws whatever the last frame didn't get to
+        }
     }
 
-    private void drawCards(HBox box, Image image) {
-        ImageView iv;
-        iv = new ImageView();
-        // resizes the image to have width of 100 while preserving the ratio and using
-        // higher quality filtering method; this ImageView is also cached to
-        // improve performance
-        iv.setImage(image);
-        iv.setFitWidth(100);
-        iv.setPreserveRatio(true);
-        iv.setSmooth(true);
-        iv.setCache(true);
-        box.getChildren().add(iv);
+    /**
+     * The AnimationTimer that draws the table while animating.
+     * The overlay is updated twice a second with the frames drawn and moves made since the last update.
+     * Every move that didn't get a frame of its own counts as a skipped frame
+     */
+    private class Animator extends AnimationTimer {
+        private static final long OVERLAY_INTERVAL = 500_000_000L;
+        private long lastUpdate;
+        private long lastMoves;
+        private int framesDrawn;
+
+        @Override
+        public void start() {
+            lastUpdate = 0;
+            framesDrawn = 0;
+            overlay.setText("FPS: -  Moves/s: -");
+            overlay.setVisible(true);
+            super.start();
+        }
+
+        @Override
+        public void stop() {
+            super.stop();
+            overlay.setVisible(false);
+        }
+
+        @Override
+        public void handle(long now) {
+            long movesNow;
+            synchronized (CardTable.this) {
+                movesNow = moves;
+            }
+            if (lastUpdate == 0) {
+                lastUpdate = now;
+                lastMoves = movesNow;
+            }
+            if (redraw()) {
+                framesDrawn++;
+            }
+
+            if (now - lastUpdate >= OVERLAY_INTERVAL) {
+                double seconds = (now - lastUpdate) / 1e9;
+                long movesMade = movesNow - lastMoves;
+                overlay.setText(String.format("FPS: %.0f  Moves/s: %.0f  Frames skipped: %d",
+                        framesDrawn / seconds, movesMade / seconds, Math.max(0, movesMade - framesDrawn)));
+                lastUpdate = now;
+                lastMoves = movesNow;
+                framesDrawn = 0;
+            }
+        }
     }
 
+    /**
+     * Draws every change since the last redraw, on the GUI thread
+     * @return true if anything needed drawing
+     */
+    private boolean redraw() {
+        long start = System.nanoTime();
+        int from;
+        int numCards;
+        long waitNanos;
+        RedrawTimer timer;
+        synchronized (this) {
+            redrawScheduled = false;
+            if (dirtyFrom == Integer.MAX_VALUE) {
+                return false;
+            }
+            from = Math.min(dirtyFrom, cards.size());
+            numCards = cards.size();
+            toDraw.clear();
+            toDraw.addAll(cards.subList(from, numCards));
+            if (!done && cardCover != null) {
+                // Draws the face-down top card of our pack of cards
+                toDraw.add(cardCover);
+            }
+            dirtyFrom = Integer.MAX_VALUE;
+            waitNanos = start - dirtySince;
+            timer = redrawTimer;
+        }
+        renderer.draw(from, toDraw);
+
+        //FLAIR COMMAND - Dynamic Stage Sizing
+        int newWidth = (numCards < 9)? 125 + (100 * numCards) : 1025; //changes the width of the window depending on the number of cards.
+                                                    // Width has a max size of 10 cards, before going to scroll
+        if (newWidth != width) {
+            width = newWidth;
+            sp.setPrefSize(width, 155);
+            stage.sizeToScene();
+        }
 
+        if (!stage.isShowing()) {
+            stage.show();
+        }
+        if (timer != null) {
+            timer.redrawn(waitNanos, System.nanoTime() - start, toDraw.size());
+        }
+        return true;
+    }
 }
@@ -0,0 +1,106 @@
+/**
+ * Draws the cards with one ImageView per card in an HBox, only swapping the images of the views that changed
+ * @author Owain Gibson
+ * @version 1.0
+ */
+package uk.ac.aber.dcs.cs12320.cards.gui.javafx;
+
+import javafx.scene.Node;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
+import javafx.scene.layout.HBox;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+class ImageViewRenderer implements CardRenderer {
+    /**
+     * Every card face and cover is loaded once and shared by every table, since the same 52 faces get drawn over and over
+     */
+    private static final Map<String, Image> IMAGES = new HashMap<>();
+
+    private final HBox box = new HBox();
+
+    /**
+     * Image views taken off the table are kept here so they can be put back later rather than making new ones
+     */
+    private final List<ImageView> spareViews = new ArrayList<>();
+
+    ImageViewRenderer() {
+        preloadImages();
+    }
+
+    /**
+     * Loads every card face and cover into the image cache (in the background, so the window isn't held up)
+     */
+    private static void preloadImages() {
+        synchronized (IMAGES) {
+            for (String card : CardAtlas.allCards()) {
+                getImage(card);
+            }
+        }
+    }
+
+    /**
+     * Returns the image for a card file, loading it the first time it is asked for
+     * @param card the file name of the card, e.g. "as.gif"
+     * @return the image
+     */
+    private static Image getImage(String card) {
+        synchronized (IMAGES) {
+            Image image = IMAGES.get(card);
+            if (image == null) {
+                String file = "cards/" + card;
+                image = new Image(ImageViewRenderer.class.getClassLoader().getResource(file).toString(), true);
+                IMAGES.put(card, image);
+            }
+            return image;
+        }
+    }
+
+    @Override
+    public Node getNode() {
+        return box;
+    }
+
+    /**
+     * Makes the table show the given cards from the given index onwards, only swapping the images of the views that changed
+     * and adding or removing views at the end when the number of cards changes
+     */
+    @Override
+    public void draw(int from, List<String> cards) {
+        List<Node> views = box.getChildren();
+        for (int i = 0; i < cards.size(); i++) {
+            int index = from + i;
+            Image image = getImage(cards.get(i));
+            if (index < views.size()) {
+                ImageView iv = (ImageView) views.get(index);
+                if (iv.getImage() != image) {
+                    iv.setImage(image);
+                }
+            } else {
+                ImageView iv = spareViews.isEmpty() ? newCardView() : spareViews.remove(spareViews.size() - 1);
+                iv.setImage(image);
+                views.add(iv);
+            }
+        }
+        while (views.size() > from + cards.size()) {
+            spareViews.add((ImageView) views.remove(views.size() - 1));
+        }
+    }
+
+    private ImageView newCardView() {
+        ImageView iv;
+        iv = new ImageView();
+        // resizes the image to have width of 100 while preserving the ratio and using
+        // higher quality filtering method; this ImageView is also cached to
+        // improve performance
+        iv.setFitWidth(CARD_WIDTH);
+        iv.setPreserveRatio(true);
+        iv.setSmooth(true);
+        iv.setCache(true);
+        return iv;
+    }
+}